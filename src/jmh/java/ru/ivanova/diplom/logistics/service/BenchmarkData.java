@@ -0,0 +1,102 @@
+package ru.ivanova.diplom.logistics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ru.ivanova.diplom.logistics.geometry.KMeans;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.utils.OptimizationRequestParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Синтетические запросы городского масштаба для бенчмарков и заглушки внешних зависимостей
+final class BenchmarkData {
+
+    private static final long SEED = 20240601L;
+    private static final int COURIERS = 6;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Запрос с начальной точкой и size пунктами выдачи в пределах города. Вместимость машин
+     * и ограничение времени подобраны так, чтобы обе модели находили допустимое решение.
+     */
+    static byte[] requestJson(int size) {
+        Random random = new Random(SEED + size);
+        StringBuilder json = new StringBuilder(size * 160 + 2048);
+        json.append("{\"geo_json\":{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int i = 0; i <= size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            double x = 37.40 + random.nextDouble() * 0.40;
+            double y = 55.60 + random.nextDouble() * 0.30;
+            json.append("{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[")
+                    .append(x).append(',').append(y).append("]},\"properties\":{}}");
+        }
+        json.append("]},\"orders\":[");
+        double totalVolume = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            double volume = Math.round((0.05 + random.nextDouble() * 1.95) * 100.0) / 100.0;
+            totalVolume += volume;
+            json.append("{\"id\":").append(i).append(",\"volume\":").append(volume).append('}');
+        }
+        double capacity = Math.ceil(totalVolume * 1.5 / COURIERS);
+        json.append("],\"parameters\":").append(String.format(Locale.ROOT,
+                "{\"fuel_rate_mob_storage\":0.2,\"fuel_rate_courier_car\":0.1,\"fuel_cost\":50,"
+                        + "\"mob_storage_rate\":1000,\"courier_car_rate\":500,\"driver_salary\":3000,"
+                        + "\"max_count_couriers\":%d,\"courier_salary\":2000,\"courier_scooter_rate\":1,"
+                        + "\"energy_consumption\":0.5,\"energy_consumption_cost\":5,"
+                        + "\"max_courier_car_capacity\":%.0f,\"max_delivery_capacity\":2,\"max_time\":%d,"
+                        + "\"order_processing_time\":0.001,\"courier_scooter_speed\":15,\"mob_storage_speed\":40}",
+                COURIERS, capacity, Math.max(24, size)));
+        json.append(",\"request_data\":{\"id\":1}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static OptimizationRequest request(byte[] json) throws IOException {
+        return OptimizationRequestParser.parse(new ByteArrayInputStream(json));
+    }
+
+    // Отправка в RabbitMQ в бенчмарках не выполняется
+    static RabbitMQSender noopSender() {
+        return new RabbitMQSender(null) {
+            @Override
+            public void send(String queueName, byte[] message, Map<String, Object> headers) {
+            }
+        };
+    }
+
+    // Метрики пишутся в локальный реестр, как без подключенного Prometheus
+    static OptimizationMetrics metrics() {
+        return new OptimizationMetrics(new SimpleMeterRegistry());
+    }
+
+    // Трассировка в бенчмарках выключена уровнем логгера
+    static OptimizationTracer tracer() {
+        return new OptimizationTracer(0, System.getProperty("java.io.tmpdir"));
+    }
+
+    // Кэш результатов отключен: каждый вызов выполняет полный расчет
+    static ResultCache resultCache() {
+        return new ResultCache(0, 0, new SimpleMeterRegistry());
+    }
+
+    // k-means с настройками по умолчанию из application.properties
+    static KMeans kMeans() {
+        return new KMeans(1000, 1e-9, 1);
+    }
+
+    static ExecutorService sweepExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,154 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.apache.commons.math3.ml.clustering.DoublePoint;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.ivanova.diplom.logistics.geometry.ClusterSplitter;
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.OptimizationResult;
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.routing.ImprovementBudget;
+import ru.ivanova.diplom.logistics.routing.TourImprover;
+import ru.ivanova.diplom.logistics.utils.GeoJsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Этапы динамической модели для одной конфигурации перебора и расчет целиком
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DynamicModelBenchmark {
+
+    private static final int CLUSTERS = 5;
+    private static final int COURIERS = 4;
+    private static final double CLUSTER_RADIUS = 0.5;
+
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private ExecutorService executor;
+    private OptimizationService service;
+    private OptimizationRequest request;
+    private Parameters params;
+    private PointSet points;
+    private List<DoublePoint> pointObjects;
+    private CourierAssigner assigner;
+    private List<ClusterSplitter.Node> clusters;
+    private PointSet stops;
+    private int[] route;
+    private double mobStorageDistance;
+    private int singleClusters;
+    private CourierAssigner.Assignment assignment;
+    private OptimizationResult result;
+
+    @Setup
+    public void setUp() throws IOException {
+        executor = BenchmarkData.sweepExecutor();
+        service = new OptimizationService(BenchmarkData.noopSender(), new SweepEngine(executor, 0, 0, 10),
+                BenchmarkData.metrics(), BenchmarkData.tracer(), BenchmarkData.resultCache(),
+                BenchmarkData.kMeans());
+        request = BenchmarkData.request(BenchmarkData.requestJson(size));
+        params = request.getParams();
+        PointSet pointSet = request.getPoints();
+        pointObjects = pointSet.toDoublePoints(1, pointSet.size());
+        points = PointSet.of(pointObjects);
+        assigner = newAssigner();
+
+        clusters = service.initialClustering(points, CLUSTERS).split(CLUSTER_RADIUS);
+        double[] xs = new double[clusters.size() + 1];
+        double[] ys = new double[clusters.size() + 1];
+        xs[0] = pointSet.getX(0);
+        ys[0] = pointSet.getY(0);
+        for (int i = 0; i < clusters.size(); i++) {
+            xs[i + 1] = clusters.get(i).getCenterX();
+            ys[i + 1] = clusters.get(i).getCenterY();
+            if (clusters.get(i).getMembers().length == 1) {
+                singleClusters++;
+            }
+        }
+        stops = new PointSet(xs, ys);
+        route = service.calculateRoute(stops);
+        mobStorageDistance = new DistanceMatrix(stops).routeLength(route);
+
+        assignment = assigner.assign(CLUSTERS, clusters, null, COURIERS);
+        CourierAssigner.Assignment withRoutes = assigner.assignWithRoutes(CLUSTERS, clusters, null, COURIERS);
+        result = new OptimizationResult(stops.toDoublePoints(route), withRoutes.getRoutes(),
+                withRoutes.totalExpenses(mobStorageDistance, params),
+                withRoutes.totalTime(mobStorageDistance, singleClusters, params), COURIERS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    // k-means++ и разбиение кластеров, превышающих радиус
+    @Benchmark
+    public List<ClusterSplitter.Node> clustering() {
+        return service.initialClustering(points, CLUSTERS).split(CLUSTER_RADIUS);
+    }
+
+    @Benchmark
+    public int[] calculateRoute() {
+        return service.calculateRoute(stops);
+    }
+
+    @Benchmark
+    public int[] tourImprovement() {
+        int[] improved = route.clone();
+        TourImprover.of(params.getTOUR_IMPROVEMENT()).improve(improved, new DistanceMatrix(stops), Long.MAX_VALUE);
+        return improved;
+    }
+
+    // Секторы и маршруты курьеров в кластерах с пустым кэшем - первая конфигурация с этими кластерами
+    @Benchmark
+    public CourierAssigner.Assignment routeSectors() {
+        return newAssigner().assign(CLUSTERS, clusters, null, COURIERS);
+    }
+
+    // Раздача готовых секторов курьерам - остальные конфигурации с этими кластерами
+    @Benchmark
+    public CourierAssigner.Assignment assignCouriers() {
+        return assigner.assign(CLUSTERS, clusters, null, COURIERS);
+    }
+
+    // То же с построением маршрутов - только для лучшей конфигурации
+    @Benchmark
+    public List<List<DoublePoint>> calculateCourierRoutes() {
+        return assigner.assignWithRoutes(CLUSTERS, clusters, null, COURIERS).getRoutes();
+    }
+
+    @Benchmark
+    public void costing(Blackhole blackhole) {
+        blackhole.consume(assignment.totalExpenses(mobStorageDistance, params));
+        blackhole.consume(assignment.totalTime(mobStorageDistance, singleClusters, params));
+    }
+
+    @Benchmark
+    public byte[] serialization() throws IOException {
+        return GeoJsonWriter.withRequestData(service.writeResultGeoJson(result, List.of()), request.getRequestData(),
+                "dynamic");
+    }
+
+    private CourierAssigner newAssigner() {
+        return new CourierAssigner(points, pointObjects, new ClusteringCache(),
+                TourImprover.of(params.getTOUR_IMPROVEMENT()), ImprovementBudget.unlimited(), null,
+                params.getCOURIER_SCOOTER_SPEED());
+    }
+
+    // Полный перебор конфигураций
+    @Benchmark
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public byte[] optimizeRoute() {
+        return service.optimizeRoute(request);
+    }
+}
@@ -0,0 +1,32 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Разбор запроса: GeoJSON точек, заказы и параметры
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestParsingBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() {
+        json = BenchmarkData.requestJson(size);
+    }
+
+    @Benchmark
+    public OptimizationRequest parse() throws IOException {
+        return BenchmarkData.request(json);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.geometry.DistanceStore;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.Order;
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.utils.GeoJsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Этапы статической модели и расчет целиком
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StaticModelBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private StaticModelService service;
+    private OptimizationRequest request;
+    private Parameters params;
+    private DistanceMatrix distances;
+    private List<int[]> courierRoutes;
+
+    @Setup
+    public void setUp() throws IOException {
+        service = new StaticModelService(BenchmarkData.noopSender(), BenchmarkData.metrics(),
+                BenchmarkData.tracer(), BenchmarkData.resultCache(), DistanceStore.disabled());
+        request = BenchmarkData.request(BenchmarkData.requestJson(size));
+        params = request.getParams();
+        for (Order order : request.getOrders()) {
+            order.setPickupPoint(request.getPoints().toDoublePoint(order.getPointIndex()));
+        }
+        distances = new DistanceMatrix(request.getPoints());
+        courierRoutes = service.splitRouteForCouriers(distances, request.getOrders(), params,
+                OptimizationTrace.DISABLED);
+    }
+
+    // Распределение заказов по курьерам и порядок обхода (матрица расстояний заполняется заново)
+    @Benchmark
+    public List<int[]> splitRouteForCouriers() {
+        return service.splitRouteForCouriers(new DistanceMatrix(request.getPoints()), request.getOrders(), params,
+                OptimizationTrace.DISABLED);
+    }
+
+    @Benchmark
+    public void costing(Blackhole blackhole) {
+        blackhole.consume(service.calculateTotalExpenses(courierRoutes, distances, params));
+        blackhole.consume(service.calculateTotalTime(courierRoutes, distances, params));
+    }
+
+    @Benchmark
+    public byte[] serialization() throws IOException {
+        double totalExpenses = service.calculateTotalExpenses(courierRoutes, distances, params);
+        double totalTime = service.calculateTotalTime(courierRoutes, distances, params);
+        return GeoJsonWriter.withRequestData(service.writeResultGeoJson(courierRoutes, request.getPoints(),
+                totalExpenses, totalTime, params), request.getRequestData(), "static");
+    }
+
+    @Benchmark
+    public byte[] optimizeCourierRoutes() {
+        return service.optimizeCourierRoutes(request);
+    }
+}
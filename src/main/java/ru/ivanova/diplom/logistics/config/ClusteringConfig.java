@@ -0,0 +1,19 @@
+package ru.ivanova.diplom.logistics.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.ivanova.diplom.logistics.geometry.KMeans;
+
+@Configuration
+public class ClusteringConfig {
+
+    // k-means динамической модели: предел итераций, порог смещения центров и число запусков
+    // с разными начальными центрами (лучший по сумме квадратов расстояний)
+    @Bean
+    public KMeans kMeans(@Value("${optimization.clustering.max-iterations:1000}") int maxIterations,
+                         @Value("${optimization.clustering.tolerance:1e-9}") double tolerance,
+                         @Value("${optimization.clustering.starts:1}") int starts) {
+        return new KMeans(maxIterations, tolerance, starts);
+    }
+}
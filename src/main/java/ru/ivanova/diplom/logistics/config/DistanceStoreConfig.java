@@ -0,0 +1,31 @@
+package ru.ivanova.diplom.logistics.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.ivanova.diplom.logistics.geometry.DistanceStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class DistanceStoreConfig {
+
+    // Хранилище расстояний между известными точками; пустой путь (по умолчанию) - хранилище
+    // выключено. Файл открывается одним экземпляром приложения, путь у каждого свой.
+    // Если задан файл расстояний по дорожной сети, он загружается при старте
+    @Bean(destroyMethod = "close")
+    public DistanceStore distanceStore(@Value("${optimization.distance-store.path:}") String path,
+                                       @Value("${optimization.distance-store.capacity:4096}") int capacity,
+                                       @Value("${optimization.distance-store.road-distances:}") String roadDistances)
+            throws IOException {
+        if (path.isBlank()) {
+            return DistanceStore.disabled();
+        }
+        DistanceStore store = DistanceStore.open(Path.of(path), capacity);
+        if (!roadDistances.isBlank()) {
+            store.loadRoadDistances(Path.of(roadDistances));
+        }
+        return store;
+    }
+}
@@ -0,0 +1,81 @@
+package ru.ivanova.diplom.logistics.config;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ExecutorConfig {
+
+    // Пул для перебора конфигураций динамической модели (ограничен по потокам и очереди)
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService sweepExecutor(@Value("${optimization.sweep.threads:0}") int threads,
+                                         @Value("${optimization.sweep.queue-capacity:64}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return boundedExecutor("sweep-", poolSize, queueCapacity, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Пулы синхронных запросов, отдельные для каждой модели: долгий расчет динамической модели
+    // не задерживает статическую. При заполненной очереди запрос отклоняется
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService staticModelExecutor(
+            @Value("${optimization.orchestration.static.threads:4}") int threads,
+            @Value("${optimization.orchestration.static.queue-capacity:32}") int queueCapacity) {
+        return boundedExecutor("static-model-", threads, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService dynamicModelExecutor(
+            @Value("${optimization.orchestration.dynamic.threads:2}") int threads,
+            @Value("${optimization.orchestration.dynamic.queue-capacity:8}") int queueCapacity) {
+        return boundedExecutor("dynamic-model-", threads, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Пул асинхронных задач оптимизации; при заполненной очереди новые задачи отклоняются
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService jobExecutor(@Value("${optimization.jobs.threads:2}") int threads,
+                                       @Value("${optimization.jobs.queue-capacity:16}") int queueCapacity) {
+        return boundedExecutor("job-", threads, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Пул пакетного расчета с перехватом работы: задачи пакета сильно различаются по размеру
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService batchExecutor(@Value("${optimization.batch.threads:0}") int threads) {
+        return Executors.newWorkStealingPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    // Метрики пулов: длина очереди, активные потоки, выполненные задачи (executor.*, тег name)
+    @Bean
+    public MeterBinder executorMetrics(@Qualifier("sweepExecutor") ExecutorService sweepExecutor,
+                                       @Qualifier("staticModelExecutor") ExecutorService staticModelExecutor,
+                                       @Qualifier("dynamicModelExecutor") ExecutorService dynamicModelExecutor,
+                                       @Qualifier("jobExecutor") ExecutorService jobExecutor,
+                                       @Qualifier("batchExecutor") ExecutorService batchExecutor) {
+        return registry -> {
+            new ExecutorServiceMetrics(sweepExecutor, "sweep", Tags.empty()).bindTo(registry);
+            new ExecutorServiceMetrics(staticModelExecutor, "static-model", Tags.empty()).bindTo(registry);
+            new ExecutorServiceMetrics(dynamicModelExecutor, "dynamic-model", Tags.empty()).bindTo(registry);
+            new ExecutorServiceMetrics(jobExecutor, "job", Tags.empty()).bindTo(registry);
+            new ExecutorServiceMetrics(batchExecutor, "batch", Tags.empty()).bindTo(registry);
+        };
+    }
+
+    private static ThreadPoolExecutor boundedExecutor(String threadPrefix, int threads, int queueCapacity,
+                                                      RejectedExecutionHandler rejectionHandler) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(threadPrefix),
+                rejectionHandler);
+    }
+}
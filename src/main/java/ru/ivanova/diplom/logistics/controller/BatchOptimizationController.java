@@ -0,0 +1,98 @@
+package ru.ivanova.diplom.logistics.controller;
+
+import io.micrometer.core.instrument.Timer;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.ivanova.diplom.logistics.model.BatchResult;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.PipelineStage;
+import ru.ivanova.diplom.logistics.service.BatchOptimizationService;
+import ru.ivanova.diplom.logistics.service.OptimizationMetrics;
+import ru.ivanova.diplom.logistics.utils.OptimizationRequestParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Пакетный расчет: массив независимых запросов, ответ - NDJSON, строка на задачу по мере готовности
+@RestController
+@RequestMapping("/api/optimize/batch")
+public class BatchOptimizationController {
+
+    @Autowired
+    private BatchOptimizationService batchService;
+
+    @Autowired
+    private OptimizationMetrics metrics;
+
+    @Value("${optimization.batch.max-requests:200}")
+    private int maxRequests;
+
+    // Тело ответа передается потоком, поэтому и сообщения об ошибках пишутся через StreamingResponseBody
+    @PostMapping
+    public ResponseEntity<StreamingResponseBody> optimize(InputStream body) {
+        List<OptimizationRequest> requests;
+        try {
+            Timer.Sample parsing = metrics.start();
+            requests = OptimizationRequestParser.parseBatch(body);
+            metrics.stop(parsing, OptimizationMetrics.REQUEST, PipelineStage.parse);
+        } catch (IOException | IllegalArgumentException e) {
+            return badRequest("Invalid JSON format.");
+        }
+        if (requests.isEmpty() || requests.size() > maxRequests) {
+            return badRequest("Batch must contain from 1 to " + maxRequests + " requests.");
+        }
+        requests.forEach(request -> metrics.requestParsed(request.getPoints().size()));
+
+        StreamingResponseBody stream = out -> {
+            try {
+                batchService.optimize(requests, result -> writeLine(out, result));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(stream);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> badRequest(String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(bytes));
+    }
+
+    // {"index": 0, "static": ..., "dynamic": ...}; вместо результата модели, завершившейся с ошибкой, -
+    // "static_error" или "dynamic_error"
+    private static void writeLine(OutputStream out, BatchResult result) {
+        try {
+            out.write(("{\"index\":" + result.getIndex()).getBytes(StandardCharsets.UTF_8));
+            writeModel(out, "static", result.getStaticResult(), result.getStaticError());
+            writeModel(out, "dynamic", result.getDynamicResult(), result.getDynamicError());
+            out.write("}\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeModel(OutputStream out, String model, byte[] result, String error) throws IOException {
+        if (result != null) {
+            out.write((",\"" + model + "\":").getBytes(StandardCharsets.UTF_8));
+            out.write(result);
+        } else {
+            out.write((",\"" + model + "_error\":" + JSONObject.quote(error)).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
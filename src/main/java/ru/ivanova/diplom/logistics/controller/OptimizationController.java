@@ -1,73 +1,90 @@
 package ru.ivanova.diplom.logistics.controller;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.PipelineStage;
+import ru.ivanova.diplom.logistics.service.OptimizationMetrics;
 import ru.ivanova.diplom.logistics.service.OptimizationService;
 import ru.ivanova.diplom.logistics.service.StaticModelService;
+import ru.ivanova.diplom.logistics.service.SweepState;
+import ru.ivanova.diplom.logistics.utils.OptimizationRequestParser;
 
-import java.util.concurrent.CompletableFuture;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/api/optimize")
 public class OptimizationController {
 
+    private static final Logger logger = LoggerFactory.getLogger(OptimizationController.class);
+    private static final byte[] EMPTY_RESULT = "{}".getBytes(StandardCharsets.UTF_8);
+    private static final String RETRY_AFTER_SECONDS = "5";
+
     @Autowired
     private OptimizationService optimizationService;
 
     @Autowired
     private StaticModelService staticModelService;
 
+    @Autowired
+    private OptimizationMetrics metrics;
+
+    @Autowired
+    @Qualifier("staticModelExecutor")
+    private ExecutorService staticModelExecutor;
+
+    @Autowired
+    @Qualifier("dynamicModelExecutor")
+    private ExecutorService dynamicModelExecutor;
+
     @PostMapping
-    public ResponseEntity<String> optimize(@RequestBody String geoJson) {
+    public ResponseEntity<?> optimize(InputStream body) {
         try {
-            // Преобразование строки в JSON объект
-            JSONObject jsonObject = new JSONObject(geoJson);
-
-            // Проверка наличия ключей geo_json и couriers
-            if (jsonObject.has("geo_json") && jsonObject.has("parameters") && jsonObject.has("orders")
-                    && jsonObject.has("request_data")) {
-                JSONObject requestDataJson = jsonObject.getJSONObject("request_data");
-                JSONObject geoJsonObject = jsonObject.getJSONObject("geo_json");
-                JSONObject paramsJson = jsonObject.getJSONObject("parameters");
-                Parameters params = new Parameters(
-                        paramsJson.getDouble("fuel_rate_mob_storage"),
-                        paramsJson.getDouble("fuel_rate_courier_car"),
-                        paramsJson.getDouble("fuel_cost"),
-                        paramsJson.getDouble("mob_storage_rate"),
-                        paramsJson.getDouble("courier_car_rate"),
-                        paramsJson.getDouble("driver_salary"),
-                        paramsJson.getInt("max_count_couriers"),
-                        paramsJson.getDouble("courier_salary"),
-                        paramsJson.getDouble("courier_scooter_rate"),
-                        paramsJson.getDouble("energy_consumption"),
-                        paramsJson.getDouble("energy_consumption_cost"),
-                        paramsJson.getDouble("max_courier_car_capacity"),
-                        paramsJson.getDouble("max_delivery_capacity"),
-                        paramsJson.getDouble("max_time"),
-                        paramsJson.getDouble("order_processing_time"),
-                        paramsJson.getDouble("courier_scooter_speed"),
-                        paramsJson.getDouble("mob_storage_speed")
-                );
-                JSONArray ordersArray = jsonObject.getJSONArray("orders");
-
-                JSONObject dynamicModelGeoJson = new JSONObject();
-                JSONObject staticModelGeoJson = new JSONObject();
-
-                // Обработка данных динамической модели
-                CompletableFuture<JSONObject> dynamicModelFuture = CompletableFuture.supplyAsync(
-                        () -> optimizationService.optimizeRoute(geoJsonObject, params, requestDataJson));
+            // Потоковый разбор тела запроса без построения дерева JSON
+            Timer.Sample parsing = metrics.start();
+            OptimizationRequest request = OptimizationRequestParser.parse(body);
+            metrics.stop(parsing, OptimizationMetrics.REQUEST, PipelineStage.parse);
+
+            // Проверка наличия ключей geo_json, parameters, orders и request_data
+            if (request != null) {
+                metrics.requestParsed(request.getPoints().size());
+                byte[] dynamicModelGeoJson = EMPTY_RESULT;
+                byte[] staticModelGeoJson = EMPTY_RESULT;
+
+                // Обработка данных динамической модели; состояние перебора нужно для его остановки
+                AtomicReference<SweepState> dynamicSweep = new AtomicReference<>();
+                Future<byte[]> dynamicModelFuture = dynamicModelExecutor.submit(
+                        () -> optimizationService.optimizeRoute(request, dynamicSweep::set));
 
                 // Обработка данных статической модели
-                CompletableFuture<JSONObject> staticModelFuture = CompletableFuture.supplyAsync(
-                        () -> staticModelService.optimizeCourierRoutes(
-                                geoJsonObject, params, ordersArray, requestDataJson));
+                Future<byte[]> staticModelFuture;
+                try {
+                    staticModelFuture = staticModelExecutor.submit(
+                            () -> staticModelService.optimizeCourierRoutes(request));
+                } catch (RejectedExecutionException e) {
+                    // Клиент получит 429: динамическая задача снимается вместе с исполнителями перебора
+                    dynamicModelFuture.cancel(true);
+                    SweepState state = dynamicSweep.get();
+                    if (state != null) {
+                        state.cancel();
+                    }
+                    throw e;
+                }
 
                 // Ожидание завершения обоих методов и получение результатов
                 try {
@@ -76,14 +93,20 @@ public class OptimizationController {
 
                     // Дальнейшая обработка результатов
                 } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
+                    logger.warn("Расчет модели завершился с ошибкой", e);
                 }
 
-                return ResponseEntity.ok(staticModelGeoJson.toString());
+                // Ответ - тот же массив байт, что отправлен в RabbitMQ
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(staticModelGeoJson);
             } else {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("One of keys is invalid.");
             }
-        } catch (JSONException e) {
+        } catch (RejectedExecutionException e) {
+            // Очередь пула модели заполнена
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .body("Too many optimization requests, try again later.");
+        } catch (IOException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid JSON format.");
         }
     }
@@ -0,0 +1,144 @@
+package ru.ivanova.diplom.logistics.controller;
+
+import io.micrometer.core.instrument.Timer;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.ivanova.diplom.logistics.model.JobStatus;
+import ru.ivanova.diplom.logistics.model.OptimizationJob;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.PipelineStage;
+import ru.ivanova.diplom.logistics.service.OptimizationJobService;
+import ru.ivanova.diplom.logistics.service.OptimizationMetrics;
+import ru.ivanova.diplom.logistics.service.SweepState;
+import ru.ivanova.diplom.logistics.utils.OptimizationRequestParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RejectedExecutionException;
+
+// Асинхронный режим: постановка задачи, опрос состояния и получение результатов
+@RestController
+@RequestMapping("/api/optimize/jobs")
+public class OptimizationJobController {
+
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    @Autowired
+    private OptimizationJobService jobService;
+
+    @Autowired
+    private OptimizationMetrics metrics;
+
+    @PostMapping
+    public ResponseEntity<String> submit(InputStream body) {
+        try {
+            Timer.Sample parsing = metrics.start();
+            OptimizationRequest request = OptimizationRequestParser.parse(body);
+            metrics.stop(parsing, OptimizationMetrics.REQUEST, PipelineStage.parse);
+            if (request == null) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("One of keys is invalid.");
+            }
+            metrics.requestParsed(request.getPoints().size());
+
+            OptimizationJob job = jobService.submit(request);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, "/api/optimize/jobs/" + job.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(statusJson(job).toString());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .body("Too many optimization jobs, try again later.");
+        } catch (IOException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid JSON format.");
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<String> status(@PathVariable String id) {
+        OptimizationJob job = jobService.get(id);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Job not found.");
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(statusJson(job).toString());
+    }
+
+    // Снятие задачи; ответ - ее состояние
+    @DeleteMapping("/{id}")
+    public ResponseEntity<String> cancel(@PathVariable String id) {
+        OptimizationJob job = jobService.cancel(id);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Job not found.");
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(statusJson(job).toString());
+    }
+
+    // Результаты моделей в одном объекте: {"static": ..., "dynamic": ...}; вместо результата
+    // модели, завершившейся с ошибкой, - "static_error" или "dynamic_error"
+    @GetMapping("/{id}/result")
+    public ResponseEntity<?> result(@PathVariable String id) throws IOException {
+        OptimizationJob job = jobService.get(id);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Job not found.");
+        }
+        if (job.getStatus() == JobStatus.cancelled) {
+            return ResponseEntity.status(HttpStatus.GONE).body("Job was cancelled.");
+        }
+        if (job.getStatus() != JobStatus.done && job.getStatus() != JobStatus.failed) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Job is not finished.");
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write('{');
+        writeModel(body, "static", job.getStaticResult(), job.getStaticError());
+        body.write(',');
+        writeModel(body, "dynamic", job.getDynamicResult(), job.getDynamicError());
+        body.write('}');
+        HttpStatus status = job.getStatus() == JobStatus.done ? HttpStatus.OK : HttpStatus.INTERNAL_SERVER_ERROR;
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body.toByteArray());
+    }
+
+    private static void writeModel(ByteArrayOutputStream body, String model, byte[] result, String error)
+            throws IOException {
+        if (result != null) {
+            body.write(("\"" + model + "\":").getBytes(StandardCharsets.UTF_8));
+            body.write(result);
+        } else {
+            body.write(("\"" + model + "_error\":" + JSONObject.quote(error)).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private JSONObject statusJson(OptimizationJob job) {
+        JSONObject json = new JSONObject();
+        json.put("job_id", job.getId());
+        json.put("status", job.getStatus().name());
+        json.put("static_status", job.getStaticStatus().name());
+        json.put("dynamic_status", job.getDynamicStatus().name());
+        json.put("static_ready", job.getStaticResult() != null);
+        json.put("dynamic_ready", job.getDynamicResult() != null);
+
+        // Ход перебора динамической модели
+        SweepState state = job.getSweepState();
+        if (state != null) {
+            json.put("total", state.getTotal());
+            json.put("evaluated", state.getEvaluated());
+            json.put("pruned", state.getPruned());
+            double bestCost = state.getIncumbentCost();
+            json.put("best_cost", Double.isInfinite(bestCost) ? JSONObject.NULL : bestCost);
+        }
+        if (job.getStaticError() != null) {
+            json.put("static_error", job.getStaticError());
+        }
+        if (job.getDynamicError() != null) {
+            json.put("dynamic_error", job.getDynamicError());
+        }
+        return json;
+    }
+}
@@ -0,0 +1,162 @@
+package ru.ivanova.diplom.logistics.controller;
+
+import io.micrometer.core.instrument.Timer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.Order;
+import ru.ivanova.diplom.logistics.model.PipelineStage;
+import ru.ivanova.diplom.logistics.model.PlanSession;
+import ru.ivanova.diplom.logistics.service.OptimizationMetrics;
+import ru.ivanova.diplom.logistics.service.PlanSessionService;
+import ru.ivanova.diplom.logistics.utils.OptimizationRequestParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+// Пошаговое изменение плана статической модели: создание плана и изменения по одному заказу
+@RestController
+@RequestMapping("/api/optimize/sessions")
+public class PlanSessionController {
+
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    @Autowired
+    private PlanSessionService sessionService;
+
+    @Autowired
+    private OptimizationMetrics metrics;
+
+    @Autowired
+    @Qualifier("staticModelExecutor")
+    private ExecutorService staticModelExecutor;
+
+    // Полный расчет в пуле статической модели; ответ - план и адрес сессии в Location
+    @PostMapping
+    public ResponseEntity<?> create(InputStream body) throws InterruptedException {
+        try {
+            Timer.Sample parsing = metrics.start();
+            OptimizationRequest request = OptimizationRequestParser.parse(body);
+            metrics.stop(parsing, OptimizationMetrics.REQUEST, PipelineStage.parse);
+            if (request == null) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("One of keys is invalid.");
+            }
+            metrics.requestParsed(request.getPoints().size());
+
+            PlanSession session = CompletableFuture.supplyAsync(() -> sessionService.create(request),
+                    staticModelExecutor).get();
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header(HttpHeaders.LOCATION, "/api/optimize/sessions/" + session.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(sessionService.result(session));
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests("Too many optimization requests, try again later.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                // Открыто максимальное число сессий
+                return tooManyRequests(e.getCause().getMessage());
+            }
+            return error(e.getCause());
+        } catch (IOException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid JSON format.");
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> plan(@PathVariable String id) {
+        return update(id, session -> { });
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> close(@PathVariable String id) {
+        sessionService.close(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Новый заказ: {"id": 101, "coordinates": [37.6, 55.7], "volume": 0.5}, необязательные поля
+    // time_window_start, time_window_end и service_time - как у заказов запроса
+    @PostMapping("/{id}/orders")
+    public ResponseEntity<?> addOrder(@PathVariable String id, @RequestBody String body) {
+        try {
+            JSONObject json = new JSONObject(body);
+            JSONArray coordinates = json.getJSONArray("coordinates");
+            Order order = new Order(json.getInt("id"), json.getDouble("volume"));
+            order.setTimeWindowStart(optionalDouble(json, "time_window_start"));
+            order.setTimeWindowEnd(optionalDouble(json, "time_window_end"));
+            order.setServiceTime(optionalDouble(json, "service_time"));
+            return update(id, session -> sessionService.addOrder(session, order,
+                    coordinates.getDouble(0), coordinates.getDouble(1)));
+        } catch (JSONException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid JSON format.");
+        }
+    }
+
+    // Новый объем заказа: {"volume": 0.7}
+    @PatchMapping("/{id}/orders/{orderId}")
+    public ResponseEntity<?> changeVolume(@PathVariable String id, @PathVariable int orderId,
+                                          @RequestBody String body) {
+        try {
+            double volume = new JSONObject(body).getDouble("volume");
+            return update(id, session -> sessionService.changeVolume(session, orderId, volume));
+        } catch (JSONException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid JSON format.");
+        }
+    }
+
+    @DeleteMapping("/{id}/orders/{orderId}")
+    public ResponseEntity<?> removeOrder(@PathVariable String id, @PathVariable int orderId) {
+        return update(id, session -> sessionService.removeOrder(session, orderId));
+    }
+
+    // Изменение плана и ответ с обновленным планом
+    private ResponseEntity<?> update(String id, Consumer<PlanSession> change) {
+        PlanSession session = sessionService.get(id);
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Session not found.");
+        }
+        try {
+            change.accept(session);
+        } catch (RuntimeException e) {
+            return error(e);
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(sessionService.result(session));
+    }
+
+    private static Double optionalDouble(JSONObject json, String key) {
+        return json.isNull(key) ? null : json.getDouble(key);
+    }
+
+    private static ResponseEntity<?> tooManyRequests(String message) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(message);
+    }
+
+    private static ResponseEntity<?> error(Throwable e) {
+        HttpStatus status;
+        if (e instanceof IllegalArgumentException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else if (e instanceof NoSuchElementException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (e instanceof IllegalStateException) {
+            status = HttpStatus.CONFLICT;
+        } else {
+            status = HttpStatus.UNPROCESSABLE_ENTITY;
+        }
+        return ResponseEntity.status(status).body(e.getMessage());
+    }
+}
@@ -0,0 +1,191 @@
+package ru.ivanova.diplom.logistics.geometry;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Разбиение кластеров до заданного радиуса. Кластер, радиус которого больше допустимого,
+ * делится пополам (2-means) и дальше рекурсивно, пока радиус каждой части не станет не больше
+ * допустимого; кластер из одной точки имеет радиус 0, поэтому ограничение выполняется всегда.
+ * <p>
+ * Разбиения образуют дерево, узлы которого хранят центр и радиус и строятся один раз: разбиение
+ * для меньшего радиуса продолжает разбиение для большего. Узлы можно запрашивать из нескольких
+ * потоков.
+ */
+public class ClusterSplitter {
+
+    // Итерации 2-means: центры двух половин сходятся за несколько шагов
+    private static final int MAX_BISECT_ITERATIONS = 20;
+
+    private final PointSet points;
+    private final List<Node> roots;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    // clusters - номера точек points по кластерам
+    public ClusterSplitter(PointSet points, List<int[]> clusters) {
+        this.points = points;
+        this.roots = new ArrayList<>(clusters.size());
+        for (int[] members : clusters) {
+            roots.add(node(members));
+        }
+    }
+
+    public List<Node> getRoots() {
+        return roots;
+    }
+
+    // Кластеры с радиусом не больше maxRadius в порядке исходных кластеров
+    public List<Node> split(double maxRadius) {
+        List<Node> result = new ArrayList<>();
+        for (Node root : roots) {
+            collect(root, maxRadius, result);
+        }
+        return result;
+    }
+
+    private void collect(Node node, double maxRadius, List<Node> result) {
+        if (node.radius <= maxRadius || node.members.length == 1) {
+            result.add(node);
+            return;
+        }
+        Node[] children = node.children();
+        collect(children[0], maxRadius, result);
+        collect(children[1], maxRadius, result);
+    }
+
+    private Node node(int[] members) {
+        double sumX = 0;
+        double sumY = 0;
+        for (int point : members) {
+            sumX += points.getX(point);
+            sumY += points.getY(point);
+        }
+        double centerX = sumX / members.length;
+        double centerY = sumY / members.length;
+        double radius = 0;
+        for (int point : members) {
+            radius = Math.max(radius, PointSet.distance(centerX, centerY, points.getX(point), points.getY(point)));
+        }
+        return new Node(nextId.getAndIncrement(), members, centerX, centerY, radius);
+    }
+
+    /**
+     * 2-means: начальные центры - самая далекая от центра кластера точка и самая далекая от нее,
+     * поэтому обе половины не пусты, если в кластере есть хотя бы две разные точки.
+     */
+    private Node[] bisect(Node node) {
+        int[] members = node.members;
+        int first = farthest(members, node.centerX, node.centerY);
+        int second = farthest(members, points.getX(first), points.getY(first));
+        double ax = points.getX(first);
+        double ay = points.getY(first);
+        double bx = points.getX(second);
+        double by = points.getY(second);
+
+        // Половина B - точки, которые ближе ко второму центру; итерация, оставившая половину
+        // пустой, не принимается
+        boolean[] toSecond = new boolean[members.length];
+        if (ax == bx && ay == by) {
+            // Все точки совпадают (радиус больше 0 из-за округления): отделяется одна точка
+            toSecond[members.length - 1] = true;
+            return halves(members, toSecond, 1);
+        }
+        boolean[] next = new boolean[members.length];
+        int countB = 0;
+        for (int iteration = 0; iteration < MAX_BISECT_ITERATIONS; iteration++) {
+            boolean changed = false;
+            double sumAx = 0;
+            double sumAy = 0;
+            double sumBx = 0;
+            double sumBy = 0;
+            int nextCountB = 0;
+            for (int i = 0; i < members.length; i++) {
+                double x = points.getX(members[i]);
+                double y = points.getY(members[i]);
+                double da = (x - ax) * (x - ax) + (y - ay) * (y - ay);
+                double db = (x - bx) * (x - bx) + (y - by) * (y - by);
+                next[i] = db < da;
+                changed |= next[i] != toSecond[i];
+                if (next[i]) {
+                    sumBx += x;
+                    sumBy += y;
+                    nextCountB++;
+                } else {
+                    sumAx += x;
+                    sumAy += y;
+                }
+            }
+            if (nextCountB == 0 || nextCountB == members.length || iteration > 0 && !changed) {
+                break;
+            }
+            System.arraycopy(next, 0, toSecond, 0, members.length);
+            countB = nextCountB;
+            int countA = members.length - countB;
+            ax = sumAx / countA;
+            ay = sumAy / countA;
+            bx = sumBx / countB;
+            by = sumBy / countB;
+        }
+        return halves(members, toSecond, countB);
+    }
+
+    private Node[] halves(int[] members, boolean[] toSecond, int countB) {
+        int[] a = new int[members.length - countB];
+        int[] b = new int[countB];
+        int ia = 0;
+        int ib = 0;
+        for (int i = 0; i < members.length; i++) {
+            if (toSecond[i]) {
+                b[ib++] = members[i];
+            } else {
+                a[ia++] = members[i];
+            }
+        }
+        return new Node[]{node(a), node(b)};
+    }
+
+    private int farthest(int[] members, double x, double y) {
+        int farthest = members[0];
+        double farthestDistance = -1;
+        for (int point : members) {
+            double distance = PointSet.distance(x, y, points.getX(point), points.getY(point));
+            if (distance > farthestDistance) {
+                farthestDistance = distance;
+                farthest = point;
+            }
+        }
+        return farthest;
+    }
+
+    // Кластер: номера точек, центр (среднее) и радиус - наибольшее расстояние от центра до точки
+    @Getter
+    public class Node {
+        // Номер узла, уникальный в пределах дерева
+        private final int id;
+        private final int[] members;
+        private final double centerX;
+        private final double centerY;
+        private final double radius;
+        @Getter(AccessLevel.NONE)
+        private Node[] children;
+
+        private Node(int id, int[] members, double centerX, double centerY, double radius) {
+            this.id = id;
+            this.members = members;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.radius = radius;
+        }
+
+        private synchronized Node[] children() {
+            if (children == null) {
+                children = bisect(this);
+            }
+            return children;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.ivanova.diplom.logistics.geometry;
+
+import java.util.Arrays;
+
+/**
+ * Матрица попарных расстояний набора точек, заполняемая по мере обращения. Строка матрицы
+ * выделяется при первом обращении к ней, поэтому память занимают только строки точек, которые
+ * участвуют в расчете. Для больших наборов матрица не хранится и расстояния считаются напрямую.
+ * Экземпляр не потокобезопасен: создается на одну задачу.
+ */
+public class DistanceMatrix {
+
+    // 2048 точек - до 32 МБ, если расчет обратится ко всем строкам
+    static final int MAX_CACHED_POINTS = 2048;
+
+    /**
+     * Заполнение новой строки известными расстояниями (например из DistanceStore). Строка
+     * заранее заполнена NaN; незаполненные элементы считаются по координатам.
+     */
+    interface RowLoader {
+        void load(int row, double[] distances);
+
+        // Загрузчик того же источника для набора с точкой (x, y), добавленной в конец
+        RowLoader append(double x, double y);
+    }
+
+    private final PointSet points;
+    private final int size;
+    private final double[][] rows;
+    private final RowLoader loader;
+
+    public DistanceMatrix(PointSet points) {
+        this(points, null);
+    }
+
+    DistanceMatrix(PointSet points, RowLoader loader) {
+        this(points, points.size() <= MAX_CACHED_POINTS ? new double[points.size()][] : null, loader);
+    }
+
+    private DistanceMatrix(PointSet points, double[][] rows, RowLoader loader) {
+        this.points = points;
+        this.size = points.size();
+        this.rows = rows;
+        this.loader = loader;
+    }
+
+    public PointSet getPoints() {
+        return points;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double get(int i, int j) {
+        if (rows == null) {
+            return points.distance(i, j);
+        }
+        double[] row = rows[i];
+        if (row == null) {
+            row = loadRow(i);
+        }
+        if (j >= row.length) {
+            // Строка создана до добавления точки j (append), расстояние есть в строке j
+            return get(j, i);
+        }
+        double distance = row[j];
+        if (Double.isNaN(distance)) {
+            distance = points.distance(i, j);
+            row[j] = distance;
+            double[] mirror = rows[j];
+            if (mirror != null && i < mirror.length) {
+                mirror[i] = distance;
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Матрица набора с точкой (x, y), добавленной в конец. Строки существующих точек общие
+     * с этой матрицей, считается только строка новой точки - O(n) вместо новой матрицы n x n.
+     * Строка новой точки берется из того же источника, что и остальные (расстояния по дорожной
+     * сети из хранилища остаются такими и для добавленной точки).
+     */
+    public DistanceMatrix append(double x, double y) {
+        PointSet extended = points.append(x, y);
+        RowLoader extendedLoader = loader == null ? null : loader.append(x, y);
+        if (rows == null || size + 1 > MAX_CACHED_POINTS) {
+            return new DistanceMatrix(extended, extendedLoader);
+        }
+        double[][] extendedRows = Arrays.copyOf(rows, size + 1);
+        DistanceMatrix matrix = new DistanceMatrix(extended, extendedRows, extendedLoader);
+        double[] row = matrix.loadRow(size);
+        for (int j = 0; j < size; j++) {
+            if (Double.isNaN(row[j])) {
+                row[j] = extended.distance(size, j);
+            }
+        }
+        return matrix;
+    }
+
+    // Длина маршрута, заданного индексами точек
+    public double routeLength(int[] route) {
+        double length = 0;
+        for (int i = 1; i < route.length; i++) {
+            length += get(route[i - 1], route[i]);
+        }
+        return length;
+    }
+
+    private double[] loadRow(int i) {
+        double[] row = new double[size];
+        Arrays.fill(row, Double.NaN);
+        if (loader != null) {
+            loader.load(i, row);
+        }
+        rows[i] = row;
+        return row;
+    }
+}
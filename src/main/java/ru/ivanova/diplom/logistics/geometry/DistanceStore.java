@@ -0,0 +1,285 @@
+package ru.ivanova.diplom.logistics.geometry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Постоянное хранилище попарных расстояний между известными точками (начальные точки и пункты
+ * выдачи), ключ точки - ее координаты. Новые точки добавляются по мере появления в запросах:
+ * для каждой считаются расстояния до всех уже известных. Данные лежат в файле, отображенном
+ * в память, и сохраняются между перезапусками. Файл принадлежит одному процессу: при открытии
+ * берется исключительная блокировка, второй процесс с тем же файлом не запускается.
+ * <p>
+ * Формат файла: заголовок (магическое число, емкость, число точек), координаты точек, затем
+ * нижний треугольник матрицы: расстояние между точками i > j хранится по индексу i(i-1)/2 + j.
+ * Вместо прямых расстояний можно загрузить расстояния по дорожной сети (loadRoadDistances).
+ * <p>
+ * Расчет читает не хранилище, а матрицу запроса (matrix), строки которой заполняются из него
+ * один раз при первом обращении, поэтому обращения к файлу не повторяются в циклах маршрутизации.
+ */
+public class DistanceStore implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistanceStore.class);
+
+    private static final int MAGIC = 0x44535431;
+    private static final int HEADER_BYTES = 16;
+    // Треугольник матрицы должен помещаться в одно отображение (меньше 2 ГБ)
+    static final int MAX_CAPACITY = 16384;
+
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final DoubleBuffer coordinates;
+    private final DoubleBuffer triangle;
+    private final Map<PointKey, Integer> index = new HashMap<>();
+    private volatile int count;
+
+    private DistanceStore(int capacity, FileChannel channel, MappedByteBuffer buffer) {
+        this.capacity = capacity;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.coordinates = buffer == null ? null
+                : buffer.slice(HEADER_BYTES, capacity * 16).asDoubleBuffer();
+        this.triangle = buffer == null ? null
+                : buffer.slice(HEADER_BYTES + capacity * 16, triangleBytes(capacity)).asDoubleBuffer();
+    }
+
+    // Хранилище без файла: матрицы запросов считаются заново каждый раз
+    public static DistanceStore disabled() {
+        return new DistanceStore(0, null, null);
+    }
+
+    // Открывает файл хранилища или создает новый; файл другой емкости пересоздается
+    public static DistanceStore open(Path file, int capacity) throws IOException {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Distance store capacity must be in [1, " + MAX_CAPACITY + "]");
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        // Число точек и индекс хранятся в памяти процесса, поэтому файл открывается только одним
+        // процессом; блокировка снимается при закрытии канала
+        if (!lock(channel)) {
+            channel.close();
+            throw new IOException("Distance store " + file + " is already used by another process, "
+                    + "every instance needs its own optimization.distance-store.path");
+        }
+        long size = HEADER_BYTES + capacity * 16L + triangleBytes(capacity);
+        boolean compatible = channel.size() == size;
+        if (!compatible) {
+            // Файл другой емкости не используется; новый файл разреженный и растет по мере записи
+            channel.truncate(0);
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        DistanceStore store = new DistanceStore(capacity, channel, buffer);
+
+        if (compatible && buffer.getInt(0) == MAGIC && buffer.getInt(4) == capacity) {
+            store.count = Math.min(buffer.getInt(8), capacity);
+            for (int i = 0; i < store.count; i++) {
+                store.index.put(new PointKey(store.coordinates.get(2 * i), store.coordinates.get(2 * i + 1)), i);
+            }
+        } else {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, capacity);
+            buffer.putInt(8, 0);
+        }
+        logger.info("Хранилище расстояний {}: точек {}, емкость {}", file, store.count, capacity);
+        return store;
+    }
+
+    private static boolean lock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock() != null;
+        } catch (OverlappingFileLockException e) {
+            // Файл уже открыт в этом же процессе
+            return false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return buffer != null;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Матрица расстояний для набора точек запроса, заполняемая из хранилища. Если хранилище
+     * выключено, заполнено или набор слишком велик для матрицы, расстояния считаются
+     * напрямую по координатам.
+     */
+    public DistanceMatrix matrix(PointSet points) {
+        int n = points.size();
+        if (!isEnabled() || n > DistanceMatrix.MAX_CACHED_POINTS) {
+            return new DistanceMatrix(points);
+        }
+        int[] ids = register(points);
+        if (ids == null) {
+            return new DistanceMatrix(points);
+        }
+        // Строки матрицы читаются из хранилища при первом обращении к ним
+        return new DistanceMatrix(points, new StoredRows(ids));
+    }
+
+    /**
+     * Загружает расстояния по дорожной сети из CSV: строки "x1,y1,x2,y2,расстояние", # - комментарий.
+     * Расстояния задаются в тех же единицах, что и координатные, и считаются симметричными.
+     * Точки из файла добавляются в хранилище.
+     */
+    public synchronized int loadRoadDistances(Path file) throws IOException {
+        if (!isEnabled()) {
+            return 0;
+        }
+        int loaded = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (fields.length != 5) {
+                    throw new IOException("Invalid road distance line: " + line);
+                }
+                int a = register(Double.parseDouble(fields[0].trim()), Double.parseDouble(fields[1].trim()));
+                int b = register(Double.parseDouble(fields[2].trim()), Double.parseDouble(fields[3].trim()));
+                if (a < 0 || b < 0) {
+                    logger.warn("Хранилище расстояний заполнено, загрузка {} остановлена", file);
+                    break;
+                }
+                if (a != b) {
+                    triangle.put(offset(a, b), Double.parseDouble(fields[4].trim()));
+                    loaded++;
+                }
+            }
+        }
+        buffer.putInt(8, count);
+        logger.info("Загружено расстояний по дорожной сети: {}", loaded);
+        return loaded;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (isEnabled()) {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    // Идентификаторы точек набора в хранилище; null, если новые точки не помещаются
+    private synchronized int[] register(PointSet points) {
+        int[] ids = new int[points.size()];
+        int before = count;
+        boolean complete = true;
+        for (int i = 0; i < ids.length && complete; i++) {
+            ids[i] = register(points.getX(i), points.getY(i));
+            complete = ids[i] >= 0;
+        }
+        if (count != before) {
+            buffer.putInt(8, count);
+        }
+        return complete ? ids : null;
+    }
+
+    // Идентификатор точки; новая точка получает расстояния до всех известных, -1 - нет места
+    private int register(double x, double y) {
+        PointKey key = new PointKey(x, y);
+        Integer id = index.get(key);
+        if (id != null) {
+            return id;
+        }
+        int next = count;
+        if (next == capacity) {
+            return -1;
+        }
+        coordinates.put(2 * next, x);
+        coordinates.put(2 * next + 1, y);
+        long rowStart = (long) next * (next - 1) / 2;
+        for (int j = 0; j < next; j++) {
+            triangle.put((int) (rowStart + j),
+                    PointSet.distance(x, y, coordinates.get(2 * j), coordinates.get(2 * j + 1)));
+        }
+        index.put(key, next);
+        count = next + 1;
+        return next;
+    }
+
+    // Идентификатор известной точки без добавления новой, -1 - точки нет в хранилище
+    private synchronized int find(double x, double y) {
+        Integer id = index.get(new PointKey(x, y));
+        return id == null ? -1 : id;
+    }
+
+    private double get(int a, int b) {
+        return a == b ? 0 : triangle.get(offset(a, b));
+    }
+
+    private static int offset(int a, int b) {
+        int i = Math.max(a, b);
+        int j = Math.min(a, b);
+        return (int) ((long) i * (i - 1) / 2 + j);
+    }
+
+    private static int triangleBytes(int capacity) {
+        return (int) ((long) capacity * (capacity - 1) / 2 * Double.BYTES);
+    }
+
+    /**
+     * Строки матрицы запроса из хранилища; ids - идентификаторы точек набора. Точка, добавленная
+     * к матрице (append) и отсутствующая в хранилище, в нем не регистрируется и получает -1:
+     * ее расстояния считаются по координатам, как их посчитал бы и register.
+     */
+    private final class StoredRows implements DistanceMatrix.RowLoader {
+        private final int[] ids;
+
+        private StoredRows(int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public void load(int row, double[] distances) {
+            if (ids[row] < 0) {
+                return;
+            }
+            for (int j = 0; j < ids.length; j++) {
+                if (ids[j] >= 0) {
+                    distances[j] = get(ids[row], ids[j]);
+                }
+            }
+        }
+
+        @Override
+        public DistanceMatrix.RowLoader append(double x, double y) {
+            int[] extended = Arrays.copyOf(ids, ids.length + 1);
+            extended[ids.length] = find(x, y);
+            return new StoredRows(extended);
+        }
+    }
+
+    // Точное совпадение координат, -0.0 и 0.0 считаются одной точкой
+    private record PointKey(double x, double y) {
+        PointKey {
+            x += 0.0;
+            y += 0.0;
+        }
+    }
+}
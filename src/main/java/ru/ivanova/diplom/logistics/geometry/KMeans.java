@@ -0,0 +1,301 @@
+package ru.ivanova.diplom.logistics.geometry;
+
+import lombok.Getter;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * k-means на плоскости по массивам координат: начальные центры k-means++, шаги Ллойда
+ * с отсечениями Хамерли. Для каждой точки хранятся верхняя граница расстояния до своего
+ * центра и нижняя - до ближайшего чужого; если граница показывает, что центр не сменится,
+ * расстояния до остальных центров не считаются. Расчет останавливается, когда назначения
+ * не меняются или центры смещаются меньше чем на tolerance.
+ * <p>
+ * При starts > 1 выполняется несколько запусков с разными начальными центрами (параллельно)
+ * и выбирается решение с наименьшей суммой квадратов расстояний. Результат определяется
+ * seed и не зависит от числа потоков.
+ */
+public class KMeans {
+
+    private final int maxIterations;
+    private final double tolerance;
+    private final int starts;
+
+    public KMeans(int maxIterations, double tolerance, int starts) {
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.starts = Math.max(1, starts);
+    }
+
+    /**
+     * Разбивает точки members набора points на k кластеров.
+     *
+     * @throws IllegalArgumentException если точек меньше k
+     */
+    public Clustering cluster(PointSet points, int[] members, int k, long seed) {
+        if (k < 1 || members.length < k) {
+            throw new IllegalArgumentException("Cannot split " + members.length + " points into " + k + " clusters");
+        }
+        double[] xs = new double[members.length];
+        double[] ys = new double[members.length];
+        for (int i = 0; i < members.length; i++) {
+            xs[i] = points.getX(members[i]);
+            ys[i] = points.getY(members[i]);
+        }
+        if (starts == 1) {
+            return new Run(xs, ys, k, seed).solve();
+        }
+        return IntStream.range(0, starts).parallel()
+                .mapToObj(start -> new Run(xs, ys, k, seed + start).solve())
+                .reduce((a, b) -> b.inertia < a.inertia ? b : a)
+                .orElseThrow();
+    }
+
+    // Результат: номер кластера для каждой точки (в порядке members) и центры кластеров
+    @Getter
+    public static class Clustering {
+        private final int k;
+        private final int[] assignment;
+        private final double[] centerX;
+        private final double[] centerY;
+        private final double inertia;
+
+        Clustering(int k, int[] assignment, double[] centerX, double[] centerY, double inertia) {
+            this.k = k;
+            this.assignment = assignment;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.inertia = inertia;
+        }
+    }
+
+    private class Run {
+        private final double[] xs;
+        private final double[] ys;
+        private final int n;
+        private final int k;
+        private final SplittableRandom random;
+        private final double[] cx;
+        private final double[] cy;
+        private final int[] assignment;
+        private final double[] upper;
+        private final double[] lower;
+        private final double[] sumX;
+        private final double[] sumY;
+        private final int[] count;
+        private final double[] halfGap;
+        private final double[] moved;
+
+        Run(double[] xs, double[] ys, int k, long seed) {
+            this.xs = xs;
+            this.ys = ys;
+            this.n = xs.length;
+            this.k = k;
+            this.random = new SplittableRandom(seed);
+            this.cx = new double[k];
+            this.cy = new double[k];
+            this.assignment = new int[n];
+            this.upper = new double[n];
+            this.lower = new double[n];
+            this.sumX = new double[k];
+            this.sumY = new double[k];
+            this.count = new int[k];
+            this.halfGap = new double[k];
+            this.moved = new double[k];
+        }
+
+        Clustering solve() {
+            seedCenters();
+            for (int i = 0; i < n; i++) {
+                assignFully(i);
+                add(i, assignment[i]);
+            }
+            for (int iteration = 0; iteration < maxIterations; iteration++) {
+                double maxMove = moveCenters();
+                if (iteration > 0 && maxMove <= tolerance) {
+                    break;
+                }
+                updateBounds();
+                if (reassign() == 0 && maxMove <= tolerance) {
+                    break;
+                }
+            }
+
+            double inertia = 0;
+            for (int i = 0; i < n; i++) {
+                double dx = xs[i] - cx[assignment[i]];
+                double dy = ys[i] - cy[assignment[i]];
+                inertia += dx * dx + dy * dy;
+            }
+            return new Clustering(k, assignment, cx, cy, inertia);
+        }
+
+        // k-means++: каждый следующий центр выбирается с вероятностью, пропорциональной квадрату
+        // расстояния до ближайшего уже выбранного
+        private void seedCenters() {
+            double[] nearest = new double[n];
+            int first = random.nextInt(n);
+            cx[0] = xs[first];
+            cy[0] = ys[first];
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                nearest[i] = squared(i, 0);
+                total += nearest[i];
+            }
+            for (int c = 1; c < k; c++) {
+                int chosen = n - 1;
+                if (total > 0) {
+                    double target = random.nextDouble() * total;
+                    for (int i = 0; i < n; i++) {
+                        target -= nearest[i];
+                        if (target <= 0) {
+                            chosen = i;
+                            break;
+                        }
+                    }
+                } else {
+                    chosen = random.nextInt(n);
+                }
+                cx[c] = xs[chosen];
+                cy[c] = ys[chosen];
+                total = 0;
+                for (int i = 0; i < n; i++) {
+                    nearest[i] = Math.min(nearest[i], squared(i, c));
+                    total += nearest[i];
+                }
+            }
+        }
+
+        // Полный перебор центров: ближайший и расстояние до второго ближайшего
+        private void assignFully(int i) {
+            double best = Double.POSITIVE_INFINITY;
+            double second = Double.POSITIVE_INFINITY;
+            int bestCenter = 0;
+            for (int c = 0; c < k; c++) {
+                double d = Math.sqrt(squared(i, c));
+                if (d < best) {
+                    second = best;
+                    best = d;
+                    bestCenter = c;
+                } else if (d < second) {
+                    second = d;
+                }
+            }
+            assignment[i] = bestCenter;
+            upper[i] = best;
+            lower[i] = second;
+        }
+
+        private int reassign() {
+            for (int c = 0; c < k; c++) {
+                double gap = Double.POSITIVE_INFINITY;
+                for (int other = 0; other < k; other++) {
+                    if (other != c) {
+                        gap = Math.min(gap, PointSet.distance(cx[c], cy[c], cx[other], cy[other]));
+                    }
+                }
+                halfGap[c] = gap / 2;
+            }
+
+            int changed = 0;
+            for (int i = 0; i < n; i++) {
+                int current = assignment[i];
+                double bound = Math.max(halfGap[current], lower[i]);
+                if (upper[i] <= bound) {
+                    continue;
+                }
+                upper[i] = Math.sqrt(squared(i, current));
+                if (upper[i] <= bound) {
+                    continue;
+                }
+                assignFully(i);
+                if (assignment[i] != current) {
+                    remove(i, current);
+                    add(i, assignment[i]);
+                    changed++;
+                }
+            }
+            return changed;
+        }
+
+        // Новые центры по суммам координат; пустой кластер получает самую далекую от своего центра точку
+        private double moveCenters() {
+            for (int c = 0; c < k; c++) {
+                if (count[c] == 0) {
+                    reseed(c);
+                }
+            }
+            double maxMove = 0;
+            for (int c = 0; c < k; c++) {
+                double x = sumX[c] / count[c];
+                double y = sumY[c] / count[c];
+                moved[c] = PointSet.distance(cx[c], cy[c], x, y);
+                maxMove = Math.max(maxMove, moved[c]);
+                cx[c] = x;
+                cy[c] = y;
+            }
+            return maxMove;
+        }
+
+        private void reseed(int empty) {
+            int farthest = -1;
+            double farthestDistance = -1;
+            for (int i = 0; i < n; i++) {
+                if (count[assignment[i]] > 1) {
+                    double d = squared(i, assignment[i]);
+                    if (d > farthestDistance) {
+                        farthestDistance = d;
+                        farthest = i;
+                    }
+                }
+            }
+            remove(farthest, assignment[farthest]);
+            assignment[farthest] = empty;
+            add(farthest, empty);
+            cx[empty] = xs[farthest];
+            cy[empty] = ys[farthest];
+            upper[farthest] = 0;
+            lower[farthest] = 0;
+        }
+
+        // Смещение центров ослабляет границы: верхняя растет на сдвиг своего центра,
+        // нижняя уменьшается на наибольший сдвиг чужого центра
+        private void updateBounds() {
+            int largest = 0;
+            for (int c = 1; c < k; c++) {
+                if (moved[c] > moved[largest]) {
+                    largest = c;
+                }
+            }
+            double secondLargest = 0;
+            for (int c = 0; c < k; c++) {
+                if (c != largest) {
+                    secondLargest = Math.max(secondLargest, moved[c]);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                upper[i] += moved[assignment[i]];
+                lower[i] -= assignment[i] == largest ? secondLargest : moved[largest];
+            }
+        }
+
+        private void add(int i, int c) {
+            sumX[c] += xs[i];
+            sumY[c] += ys[i];
+            count[c]++;
+        }
+
+        private void remove(int i, int c) {
+            sumX[c] -= xs[i];
+            sumY[c] -= ys[i];
+            count[c]--;
+        }
+
+        private double squared(int i, int c) {
+            double dx = xs[i] - cx[c];
+            double dy = ys[i] - cy[c];
+            return dx * dx + dy * dy;
+        }
+    }
+}
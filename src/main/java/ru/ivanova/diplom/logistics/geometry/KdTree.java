@@ -0,0 +1,249 @@
+package ru.ivanova.diplom.logistics.geometry;
+
+/**
+ * Двумерное k-d дерево с удалением для запросов ближайшего соседа.
+ * Дерево неявное: узел диапазона [lo, hi) лежит в середине, оси чередуются по глубине.
+ * Элементы нумеруются по порядку входного массива; при равных расстояниях возвращается
+ * элемент с меньшим номером, как при линейном просмотре. Экземпляр не потокобезопасен.
+ */
+public class KdTree {
+
+    private final int size;
+    private final double[] nodeX;
+    private final double[] nodeY;
+    private final int[] nodeElement;
+    private final int[] position;
+    private final int[] alive;
+    private final boolean[] removed;
+
+    private double bestDistance;
+    private int bestElement;
+
+    // Буферы запроса k ближайших: max-куча по расстоянию
+    private double[] heapDistance = new double[0];
+    private int[] heapElement = new int[0];
+    private int heapSize;
+    private int heapCapacity;
+
+    public KdTree(PointSet points, int[] elements) {
+        this.size = elements.length;
+        this.nodeX = new double[size];
+        this.nodeY = new double[size];
+        this.nodeElement = new int[size];
+        this.position = new int[size];
+        this.alive = new int[size];
+        this.removed = new boolean[size];
+        for (int e = 0; e < size; e++) {
+            nodeX[e] = points.getX(elements[e]);
+            nodeY[e] = points.getY(elements[e]);
+            nodeElement[e] = e;
+        }
+        build(0, size, 0);
+        for (int p = 0; p < size; p++) {
+            position[nodeElement[p]] = p;
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0 || alive[size >>> 1] == 0;
+    }
+
+    public void remove(int element) {
+        int p = position[element];
+        if (removed[p]) {
+            return;
+        }
+        removed[p] = true;
+        int lo = 0;
+        int hi = size;
+        while (true) {
+            int mid = (lo + hi) >>> 1;
+            alive[mid]--;
+            if (mid == p) {
+                return;
+            }
+            if (p < mid) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+    }
+
+    // Ближайший неудаленный элемент к точке (x, y) или -1, если дерево пусто
+    public int nearest(double x, double y) {
+        bestDistance = Double.MAX_VALUE;
+        bestElement = -1;
+        nearest(0, size, 0, x, y);
+        return bestElement;
+    }
+
+    /**
+     * До k ближайших неудаленных элементов к точке (x, y), кроме элемента exclude,
+     * в порядке возрастания расстояния. Возвращает число найденных элементов.
+     */
+    public int nearest(double x, double y, int k, int exclude, int[] result) {
+        if (heapDistance.length < k) {
+            heapDistance = new double[k];
+            heapElement = new int[k];
+        }
+        heapSize = 0;
+        heapCapacity = k;
+        nearestK(0, size, 0, x, y, exclude);
+        int found = heapSize;
+        // Извлечение из max-кучи дает элементы от дальнего к ближнему
+        for (int i = found - 1; i >= 0; i--) {
+            result[i] = heapElement[0];
+            heapPop();
+        }
+        return found;
+    }
+
+    private void nearestK(int lo, int hi, int depth, double x, double y, int exclude) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (alive[mid] == 0) {
+            return;
+        }
+        if (!removed[mid] && nodeElement[mid] != exclude) {
+            double distance = PointSet.distance(x, y, nodeX[mid], nodeY[mid]);
+            if (heapSize < heapCapacity) {
+                heapPush(distance, nodeElement[mid]);
+            } else if (distance < heapDistance[0]) {
+                heapPop();
+                heapPush(distance, nodeElement[mid]);
+            }
+        }
+        double diff = (depth & 1) == 0 ? x - nodeX[mid] : y - nodeY[mid];
+        int nearLo = diff < 0 ? lo : mid + 1;
+        int nearHi = diff < 0 ? mid : hi;
+        nearestK(nearLo, nearHi, depth + 1, x, y, exclude);
+        if (heapSize < heapCapacity || Math.abs(diff) < heapDistance[0]) {
+            nearestK(diff < 0 ? mid + 1 : lo, diff < 0 ? hi : mid, depth + 1, x, y, exclude);
+        }
+    }
+
+    private void heapPush(double distance, int element) {
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapDistance[parent] >= distance) {
+                break;
+            }
+            heapDistance[i] = heapDistance[parent];
+            heapElement[i] = heapElement[parent];
+            i = parent;
+        }
+        heapDistance[i] = distance;
+        heapElement[i] = element;
+    }
+
+    private void heapPop() {
+        double distance = heapDistance[--heapSize];
+        int element = heapElement[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapDistance[child + 1] > heapDistance[child]) {
+                child++;
+            }
+            if (heapDistance[child] <= distance) {
+                break;
+            }
+            heapDistance[i] = heapDistance[child];
+            heapElement[i] = heapElement[child];
+            i = child;
+        }
+        heapDistance[i] = distance;
+        heapElement[i] = element;
+    }
+
+    private void nearest(int lo, int hi, int depth, double x, double y) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (alive[mid] == 0) {
+            return;
+        }
+        if (!removed[mid]) {
+            double distance = PointSet.distance(x, y, nodeX[mid], nodeY[mid]);
+            int element = nodeElement[mid];
+            if (distance < bestDistance || (distance == bestDistance && element < bestElement)) {
+                bestDistance = distance;
+                bestElement = element;
+            }
+        }
+        double diff = (depth & 1) == 0 ? x - nodeX[mid] : y - nodeY[mid];
+        if (diff < 0) {
+            nearest(lo, mid, depth + 1, x, y);
+            if (-diff <= bestDistance) {
+                nearest(mid + 1, hi, depth + 1, x, y);
+            }
+        } else {
+            nearest(mid + 1, hi, depth + 1, x, y);
+            if (diff <= bestDistance) {
+                nearest(lo, mid, depth + 1, x, y);
+            }
+        }
+    }
+
+    private void build(int lo, int hi, int depth) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, depth & 1);
+        alive[mid] = hi - lo;
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    // Частичная сортировка (алгоритм Вирта): слева от k не больше, справа не меньше
+    private void select(int lo, int hi, int k, int axis) {
+        while (lo < hi) {
+            double pivot = key((lo + hi) >>> 1, axis);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (key(i, axis) < pivot) {
+                    i++;
+                }
+                while (key(j, axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double key(int p, int axis) {
+        return axis == 0 ? nodeX[p] : nodeY[p];
+    }
+
+    private void swap(int a, int b) {
+        double x = nodeX[a];
+        nodeX[a] = nodeX[b];
+        nodeX[b] = x;
+        double y = nodeY[a];
+        nodeY[a] = nodeY[b];
+        nodeY[b] = y;
+        int element = nodeElement[a];
+        nodeElement[a] = nodeElement[b];
+        nodeElement[b] = element;
+    }
+}
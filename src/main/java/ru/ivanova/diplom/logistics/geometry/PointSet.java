@@ -0,0 +1,90 @@
+package ru.ivanova.diplom.logistics.geometry;
+
+import org.apache.commons.math3.ml.clustering.DoublePoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Набор точек в плоских массивах координат; точка задается своим индексом
+public class PointSet {
+
+    private final double[] xs;
+    private final double[] ys;
+
+    public PointSet(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("Coordinate arrays must have the same length");
+        }
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    public static PointSet of(List<DoublePoint> points) {
+        double[] xs = new double[points.size()];
+        double[] ys = new double[points.size()];
+        for (int i = 0; i < xs.length; i++) {
+            double[] point = points.get(i).getPoint();
+            xs[i] = point[0];
+            ys[i] = point[1];
+        }
+        return new PointSet(xs, ys);
+    }
+
+    public static double distance(double x1, double y1, double x2, double y2) {
+        double dx = x1 - x2;
+        double dy = y1 - y2;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // Новый набор с добавленной точкой; индекс новой точки - size() исходного набора
+    public PointSet append(double x, double y) {
+        double[] newXs = Arrays.copyOf(xs, xs.length + 1);
+        double[] newYs = Arrays.copyOf(ys, ys.length + 1);
+        newXs[xs.length] = x;
+        newYs[ys.length] = y;
+        return new PointSet(newXs, newYs);
+    }
+
+    public int size() {
+        return xs.length;
+    }
+
+    public double getX(int i) {
+        return xs[i];
+    }
+
+    public double getY(int i) {
+        return ys[i];
+    }
+
+    public double distance(int i, int j) {
+        return distance(xs[i], ys[i], xs[j], ys[j]);
+    }
+
+    public double distance(int i, double x, double y) {
+        return distance(xs[i], ys[i], x, y);
+    }
+
+    // Перевод маршрута из индексов в точки - только для формирования результата
+    public List<DoublePoint> toDoublePoints(int[] route) {
+        List<DoublePoint> points = new ArrayList<>(route.length);
+        for (int i : route) {
+            points.add(new DoublePoint(new double[]{xs[i], ys[i]}));
+        }
+        return points;
+    }
+
+    public DoublePoint toDoublePoint(int i) {
+        return new DoublePoint(new double[]{xs[i], ys[i]});
+    }
+
+    // Точки с индексами [from, to) в виде DoublePoint - для кластеризации
+    public List<DoublePoint> toDoublePoints(int from, int to) {
+        List<DoublePoint> points = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            points.add(new DoublePoint(new double[]{xs[i], ys[i]}));
+        }
+        return points;
+    }
+}
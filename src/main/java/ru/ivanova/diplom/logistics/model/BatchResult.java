@@ -0,0 +1,15 @@
+package ru.ivanova.diplom.logistics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Результат одной задачи пакета: номер задачи в пакете и для каждой модели результат либо ошибка
+@Getter
+@AllArgsConstructor
+public class BatchResult {
+    private final int index;
+    private final byte[] staticResult;
+    private final byte[] dynamicResult;
+    private final String staticError;
+    private final String dynamicError;
+}
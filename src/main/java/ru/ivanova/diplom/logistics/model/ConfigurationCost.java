@@ -0,0 +1,15 @@
+package ru.ivanova.diplom.logistics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+// Оценка конфигурации перебора: только расходы и время, маршруты строятся для лучшей конфигурации
+@Getter
+@ToString
+@AllArgsConstructor
+public class ConfigurationCost {
+    private final SweepConfiguration configuration;
+    private final double totalExpenses;
+    private final double totalTime;
+}
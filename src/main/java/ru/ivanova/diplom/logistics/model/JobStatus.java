@@ -0,0 +1,10 @@
+package ru.ivanova.diplom.logistics.model;
+
+// Состояние асинхронной задачи оптимизации
+public enum JobStatus {
+    queued,
+    running,
+    done,
+    failed,
+    cancelled
+}
@@ -0,0 +1,34 @@
+package ru.ivanova.diplom.logistics.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import ru.ivanova.diplom.logistics.service.SweepState;
+
+import java.util.concurrent.Future;
+
+// Асинхронная задача оптимизации: состояние, ход перебора и результаты моделей. Модели считаются
+// независимо: у каждой свое состояние и либо результат, либо ошибка
+@Getter
+@Setter
+public class OptimizationJob {
+    private final String id;
+    private final long submittedAt;
+    // done - хотя бы одна модель рассчитана, failed - обе завершились с ошибкой
+    private volatile JobStatus status = JobStatus.queued;
+    private volatile long finishedAt;
+    // Задача в пуле, через нее задача снимается
+    private volatile Future<?> task;
+    // Состояние перебора динамической модели, появляется после начала расчета
+    private volatile SweepState sweepState;
+    private volatile JobStatus staticStatus = JobStatus.queued;
+    private volatile byte[] staticResult;
+    private volatile String staticError;
+    private volatile JobStatus dynamicStatus = JobStatus.queued;
+    private volatile byte[] dynamicResult;
+    private volatile String dynamicError;
+
+    public OptimizationJob(String id, long submittedAt) {
+        this.id = id;
+        this.submittedAt = submittedAt;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.ivanova.diplom.logistics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+
+import java.util.List;
+
+// Разобранный запрос на оптимизацию: точки (индекс 0 - начальная точка), заказы и параметры
+@Getter
+@AllArgsConstructor
+public class OptimizationRequest {
+    private final PointSet points;
+    private final List<Order> orders;
+    private final Parameters params;
+    // Исходный JSON request_data, возвращается в ответе без изменений
+    private final String requestData;
+    // Канонический хэш точек, заказов и параметров - ключ кэша результатов
+    private final String fingerprint;
+}
@@ -9,6 +9,13 @@ public class Order {
     private int id;
     private double volume;
     private DoublePoint pickupPoint;
+    // Индекс пункта выдачи в наборе точек запроса (0 - начальная точка)
+    private int pointIndex;
+    // Окно времени пункта выдачи (часы от начала смены); null - без ограничения
+    private Double timeWindowStart;
+    private Double timeWindowEnd;
+    // Время обслуживания заказа (часы); null - ORDER_PROCESSING_TIME
+    private Double serviceTime;
 
     public Order(int id, double volume) {
         this.id = id;
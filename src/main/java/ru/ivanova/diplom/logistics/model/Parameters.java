@@ -3,6 +3,8 @@ package ru.ivanova.diplom.logistics.model;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.List;
+
 // Параметры модели
 @Data
 @AllArgsConstructor
@@ -41,4 +43,15 @@ public class Parameters {
     private double COURIER_SCOOTER_SPEED;
     // Средняя скорость мобильного склада / машины курьера (км/ч)
     private double MOB_STORAGE_SPEED;
+    // Улучшение маршрутов после жадного построения
+    private TourImprovement TOUR_IMPROVEMENT;
+    // Ограничение общего времени улучшения маршрутов запроса (мс); в статической модели - отдельно
+    // для распределения заказов и для маршрутов. Результат, улучшение которого прервано по времени,
+    // не кэшируется
+    private long TOUR_IMPROVEMENT_TIME_LIMIT;
+    // Число лучших вариантов динамической модели в результате
+    private int ALTERNATIVES;
+    // Типы машин статической модели; пустой список - MAX_COUNT_COURIERS машин с параметрами выше.
+    // Динамическая модель парк не использует: ее курьеры на самокатах с параметрами COURIER_*
+    private List<VehicleType> FLEET;
 }
@@ -0,0 +1,12 @@
+package ru.ivanova.diplom.logistics.model;
+
+// Этапы расчета, по которым собираются метрики времени
+public enum PipelineStage {
+    parse,
+    cluster,
+    route,
+    assign,
+    cost,
+    serialize,
+    publish
+}
@@ -0,0 +1,43 @@
+package ru.ivanova.diplom.logistics.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.routing.TimeWindows;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сохраненный план статической модели, который меняется по одному заказу: маршруты курьеров
+ * (индексы точек, пустой массив - курьер не задействован), загрузка машин и заказы по id.
+ * Изменяется только под блокировкой самого объекта.
+ */
+@Getter
+@Setter
+public class PlanSession {
+    private final String id;
+    private final Parameters params;
+    private final String requestData;
+    private final Map<Integer, Order> orders;
+    private final List<int[]> routes;
+    private final double[] loads;
+    // Матрица заменяется расширенной на строку при добавлении новой точки
+    private DistanceMatrix distances;
+    // Окна времени по номерам точек, null - без окон; растут вместе с матрицей
+    private TimeWindows windows;
+    private volatile long lastAccess;
+
+    public PlanSession(String id, Parameters params, String requestData, Map<Integer, Order> orders,
+                       List<int[]> routes, double[] loads, DistanceMatrix distances, TimeWindows windows) {
+        this.id = id;
+        this.params = params;
+        this.requestData = requestData;
+        this.orders = orders;
+        this.routes = routes;
+        this.loads = loads;
+        this.distances = distances;
+        this.windows = windows;
+        this.lastAccess = System.currentTimeMillis();
+    }
+}
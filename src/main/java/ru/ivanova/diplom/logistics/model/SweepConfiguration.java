@@ -0,0 +1,17 @@
+package ru.ivanova.diplom.logistics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+// Одна конфигурация перебора параметров динамической модели
+@Getter
+@ToString
+@AllArgsConstructor
+public class SweepConfiguration {
+    // Порядковый номер в исходном порядке перебора (решает равенство расходов)
+    private final int index;
+    private final int clusterCount;
+    private final int couriers;
+    private final double clusterRadius;
+}
@@ -21,12 +21,7 @@ public class Time {
         map.put("minutes", minutes);
         map.put("seconds", seconds);
 
-        JSONObject json = new JSONObject(map);
-
-        // Логгирование для отладки
-        System.out.println("JSON объект времени: " + json.toString());
-
-        return json;
+        return new JSONObject(map);
     }
 
     // Функция для конвертации double времени в объект Time
@@ -49,9 +44,6 @@ public class Time {
             hours += 1;
         }
 
-        // Логгирование для отладки
-        System.out.println("Часы: " + hours + ", Минуты: " + minutes + ", Секунды: " + seconds);
-
         return new Time(hours, minutes, seconds); // Возвращаем новый объект Time
     }
 }
@@ -0,0 +1,8 @@
+package ru.ivanova.diplom.logistics.model;
+
+// Способ улучшения маршрута после жадного построения
+public enum TourImprovement {
+    none,
+    two_opt,
+    two_opt_or_opt
+}
@@ -0,0 +1,23 @@
+package ru.ivanova.diplom.logistics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+// Тип машины курьера статической модели
+@Getter
+@ToString
+@AllArgsConstructor
+public class VehicleType {
+    private final String name;
+    // Число машин этого типа
+    private final int count;
+    // Вместимость (в кубометрах)
+    private final double capacity;
+    // Средняя скорость (км/ч)
+    private final double speed;
+    // Расходы в день на задействованную машину: зарплата водителя и обслуживание
+    private final double fixedCost;
+    // Расходы на км пробега
+    private final double costPerKm;
+}
@@ -0,0 +1,126 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+
+/**
+ * Маршруты курьеров внутри кластера. Точки упорядочиваются по углу вокруг центра и делятся
+ * на смежные секторы с равным (с точностью до одной) числом точек; развертка начинается после
+ * наибольшего углового промежутка, чтобы не разрезать плотную группу точек. Каждый сектор
+ * объезжается одним замкнутым маршрутом из центра: ближайший сосед и улучшение маршрута.
+ * Точки, совпадающие с центром, в маршруты не попадают.
+ * <p>
+ * С окнами времени для сектора считается самое позднее время выезда из центра, при котором
+ * курьер успевает во все окна сектора.
+ */
+public final class ClusterRouter {
+
+    private ClusterRouter() {
+    }
+
+    // Сектор: номера точек в порядке объезда (без центра), длина маршрута центр - точки - центр
+    // и самое позднее время выезда из центра (без окон - бесконечность)
+    public record Sector(int[] points, double length, double latestStart) {
+    }
+
+    /**
+     * Делит точки members набора points на не более чем sectors секторов вокруг центра (cx, cy).
+     * Секторы возвращаются в порядке обхода по углу. Время улучшения маршрутов секторов
+     * учитывается в budget.
+     */
+    public static Sector[] route(PointSet points, int[] members, double cx, double cy, int sectors,
+                                 TourImprover improver, ImprovementBudget budget) {
+        return route(points, members, cx, cy, sectors, improver, budget, null, 0);
+    }
+
+    /**
+     * То же с окнами времени точек (windows может быть null): speed - скорость курьера
+     * для расчета самого позднего выезда.
+     */
+    public static Sector[] route(PointSet points, int[] members, double cx, double cy, int sectors,
+                                 TourImprover improver, ImprovementBudget budget, TimeWindows windows,
+                                 double speed) {
+        int[] candidates = new int[members.length];
+        int count = 0;
+        for (int point : members) {
+            if (points.getX(point) != cx || points.getY(point) != cy) {
+                candidates[count++] = point;
+            }
+        }
+        int sectorCount = Math.min(sectors, count);
+        if (sectorCount == 0) {
+            return new Sector[0];
+        }
+
+        // Сортировка по убыванию отрицательного угла - по возрастанию угла
+        double[] keys = new double[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = -Math.atan2(points.getY(candidates[i]) - cy, points.getX(candidates[i]) - cx);
+        }
+        int[] order = IndexSort.descending(keys);
+        int start = 0;
+        double largestGap = -1;
+        for (int i = 0; i < count; i++) {
+            double from = -keys[order[i]];
+            double to = i + 1 < count ? -keys[order[i + 1]] : -keys[order[0]] + 2 * Math.PI;
+            if (to - from > largestGap) {
+                largestGap = to - from;
+                start = (i + 1) % count;
+            }
+        }
+
+        Sector[] result = new Sector[sectorCount];
+        int position = start;
+        for (int s = 0; s < sectorCount; s++) {
+            int size = count / sectorCount + (s < count % sectorCount ? 1 : 0);
+            int[] sector = new int[size];
+            for (int i = 0; i < size; i++) {
+                sector[i] = candidates[order[position]];
+                position = (position + 1) % count;
+            }
+            result[s] = tour(points, sector, cx, cy, improver, budget, windows, speed);
+        }
+        return result;
+    }
+
+    // Те же секторы от самого длинного к самому короткому, равные по длине - в порядке обхода
+    public static Sector[] longestFirst(Sector[] sectors) {
+        double[] lengths = new double[sectors.length];
+        for (int i = 0; i < sectors.length; i++) {
+            lengths[i] = sectors[i].length();
+        }
+        int[] order = IndexSort.descending(lengths);
+        Sector[] result = new Sector[sectors.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = sectors[order[i]];
+        }
+        return result;
+    }
+
+    // Маршрут по локальному набору точек: индекс 0 - центр, i + 1 - точка sector[i]
+    private static Sector tour(PointSet points, int[] sector, double cx, double cy, TourImprover improver,
+                               ImprovementBudget budget, TimeWindows windows, double speed) {
+        double[] xs = new double[sector.length + 1];
+        double[] ys = new double[sector.length + 1];
+        xs[0] = cx;
+        ys[0] = cy;
+        int[] candidates = new int[sector.length];
+        for (int i = 0; i < sector.length; i++) {
+            xs[i + 1] = points.getX(sector[i]);
+            ys[i + 1] = points.getY(sector[i]);
+            candidates[i] = i + 1;
+        }
+        PointSet local = new PointSet(xs, ys);
+        DistanceMatrix distances = new DistanceMatrix(local);
+        int[] tour = NearestNeighbourTour.build(local, 0, candidates);
+        budget.improve(improver, tour, distances);
+
+        int[] visits = new int[sector.length];
+        for (int i = 0; i < visits.length; i++) {
+            visits[i] = sector[tour[i + 1] - 1];
+        }
+        double latestStart = windows == null ? Double.POSITIVE_INFINITY
+                : RouteSchedule.latestDeparture(points, cx, cy, visits, speed, windows);
+        return new Sector(visits, distances.routeLength(tour), latestStart);
+    }
+}
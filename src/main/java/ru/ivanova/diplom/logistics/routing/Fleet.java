@@ -0,0 +1,209 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.model.VehicleType;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Парк машин статической модели в виде массивов коэффициентов по номеру типа: число машин,
+ * вместимость, скорость, постоянные расходы и расходы на км. Выбор типа для маршрута - проход
+ * по этим массивам без создания объектов. Машины пронумерованы подряд по типам: машины типа t
+ * занимают номера [firstVehicle(t), firstVehicle(t) + count(t)).
+ */
+public class Fleet {
+
+    private final String[] name;
+    private final int[] count;
+    private final double[] capacity;
+    private final double[] speed;
+    private final double[] fixedCost;
+    private final double[] costPerKm;
+    private final int[] firstVehicle;
+    private final int vehicles;
+    private final double maxCapacity;
+    private final double minSpeed;
+
+    private Fleet(List<VehicleType> types) {
+        int size = types.size();
+        this.name = new String[size];
+        this.count = new int[size];
+        this.capacity = new double[size];
+        this.speed = new double[size];
+        this.fixedCost = new double[size];
+        this.costPerKm = new double[size];
+        this.firstVehicle = new int[size];
+        int total = 0;
+        double largest = 0;
+        double slowest = Double.POSITIVE_INFINITY;
+        for (int t = 0; t < size; t++) {
+            VehicleType type = types.get(t);
+            name[t] = type.getName();
+            count[t] = type.getCount();
+            capacity[t] = type.getCapacity();
+            speed[t] = type.getSpeed();
+            fixedCost[t] = type.getFixedCost();
+            costPerKm[t] = type.getCostPerKm();
+            firstVehicle[t] = total;
+            total += count[t];
+            if (count[t] > 0) {
+                largest = Math.max(largest, capacity[t]);
+                slowest = Math.min(slowest, speed[t]);
+            }
+        }
+        this.vehicles = total;
+        this.maxCapacity = largest;
+        this.minSpeed = slowest;
+    }
+
+    /**
+     * Парк из параметров запроса. Без списка FLEET - MAX_COUNT_COURIERS одинаковых машин курьеров:
+     * скорость мобильного склада, зарплата водителя и обслуживание машины в постоянных расходах,
+     * топливо в расходах на км.
+     */
+    public static Fleet of(Parameters params) {
+        if (params.getFLEET() != null && !params.getFLEET().isEmpty()) {
+            return new Fleet(params.getFLEET());
+        }
+        return new Fleet(List.of(new VehicleType("courier_car", params.getMAX_COUNT_COURIERS(),
+                params.getMAX_COURIER_CAR_CAPACITY(), params.getMOB_STORAGE_SPEED(),
+                params.getDRIVER_SALARY() + params.getCOURIER_CAR_RATE(),
+                params.getFUEL_RATE_COURIER_CAR() * params.getFUEL_COST())));
+    }
+
+    /**
+     * Самый дешевый тип, который вмещает load и проходит маршрут длиной length с stops заказами
+     * не дольше maxTime (обработка каждой точки, включая склад в начале и в конце, - serviceTime).
+     * Число машин не учитывается; -1 - подходящего типа нет.
+     */
+    public int cheapest(double load, double length, int stops, double serviceTime, double maxTime) {
+        return cheapestFree(count, load, length, stops, serviceTime, maxTime);
+    }
+
+    /**
+     * Типы машин для готовых маршрутов с учетом числа машин каждого типа. Маршруты выбирают
+     * от самого загруженного: самый дешевый свободный тип, укладывающийся во время, иначе любой
+     * свободный по вместимости. Возвращает null, если маршруту не хватает машины нужной вместимости.
+     */
+    public int[] assign(double[] loads, double[] lengths, int[] stops, double serviceTime, double maxTime) {
+        int[] remaining = count.clone();
+        int[] result = new int[loads.length];
+        for (int r : IndexSort.descending(loads)) {
+            int type = cheapestFree(remaining, loads[r], lengths[r], stops[r], serviceTime, maxTime);
+            if (type < 0) {
+                type = cheapestFree(remaining, loads[r], lengths[r], stops[r], serviceTime,
+                        Double.POSITIVE_INFINITY);
+            }
+            if (type < 0) {
+                return null;
+            }
+            remaining[type]--;
+            result[r] = type;
+        }
+        return result;
+    }
+
+    private int cheapestFree(int[] remaining, double load, double length, int stops, double serviceTime,
+                             double maxTime) {
+        int best = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int t = 0; t < remaining.length; t++) {
+            if (remaining[t] == 0 || load > capacity[t] || time(t, length, stops, serviceTime) > maxTime) {
+                continue;
+            }
+            double cost = cost(t, length);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    // Время маршрута без окон: проезд и обработка каждой позиции, включая склад
+    public double time(int type, double length, int stops, double serviceTime) {
+        return length / speed[type] + (stops + 2) * serviceTime;
+    }
+
+    // Расходы на задействованную машину типа type с пробегом length
+    public double cost(int type, double length) {
+        return fixedCost[type] + costPerKm[type] * length;
+    }
+
+    // Различные вместимости типов, у которых есть машины, по возрастанию
+    public double[] capacities() {
+        double[] result = new double[count.length];
+        int size = 0;
+        for (int t = 0; t < count.length; t++) {
+            if (count[t] > 0) {
+                result[size++] = capacity[t];
+            }
+        }
+        return Arrays.stream(result, 0, size).sorted().distinct().toArray();
+    }
+
+    // Суммарная вместимость всех машин
+    public double totalCapacity() {
+        double total = 0;
+        for (int t = 0; t < count.length; t++) {
+            total += count[t] * capacity[t];
+        }
+        return total;
+    }
+
+    // Тип машины с номером vehicle
+    public int typeOf(int vehicle) {
+        for (int t = 0; t < count.length; t++) {
+            if (vehicle < firstVehicle[t] + count[t]) {
+                return t;
+            }
+        }
+        throw new IllegalArgumentException("Vehicle " + vehicle + " is not in the fleet");
+    }
+
+    public int firstVehicle(int type) {
+        return firstVehicle[type];
+    }
+
+    public int types() {
+        return count.length;
+    }
+
+    public int vehicles() {
+        return vehicles;
+    }
+
+    public String name(int type) {
+        return name[type];
+    }
+
+    public int count(int type) {
+        return count[type];
+    }
+
+    public double capacity(int type) {
+        return capacity[type];
+    }
+
+    public double speed(int type) {
+        return speed[type];
+    }
+
+    public double costPerKm(int type) {
+        return costPerKm[type];
+    }
+
+    public double fixedCost(int type) {
+        return fixedCost[type];
+    }
+
+    // Наибольшая вместимость и наименьшая скорость среди типов, у которых есть машины
+    public double maxCapacity() {
+        return maxCapacity;
+    }
+
+    public double minSpeed() {
+        return minSpeed;
+    }
+}
@@ -0,0 +1,49 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общее время улучшения маршрутов одного этапа запроса, делится между всеми маршрутами и потоками.
+ * Работа над одним маршрутом ограничена числом проверок и от времени не зависит; бюджет только
+ * ограничивает время всего запроса. Если улучшение остановлено по времени, результат зависит
+ * от скорости расчета ({@link #isExhausted()}) и кэшироваться не должен.
+ */
+public class ImprovementBudget {
+
+    private final long limitNanos;
+    private final AtomicLong spentNanos = new AtomicLong();
+    private volatile boolean exhausted;
+
+    public ImprovementBudget(long limitMillis) {
+        this.limitNanos = limitMillis > Long.MAX_VALUE / 1_000_000L ? Long.MAX_VALUE : limitMillis * 1_000_000L;
+    }
+
+    public static ImprovementBudget unlimited() {
+        return new ImprovementBudget(Long.MAX_VALUE);
+    }
+
+    // Срок для одной из parts оставшихся частей работы, отсчитанный от текущего момента
+    public long deadline(int parts) {
+        long remaining = Math.max(0, limitNanos - spentNanos.get());
+        return TourImprover.deadline(remaining == Long.MAX_VALUE ? remaining : remaining / parts);
+    }
+
+    // Учет работы, начатой в start (System.nanoTime()); completed = false - работу прервал срок
+    public void spend(long start, boolean completed) {
+        spentNanos.addAndGet(System.nanoTime() - start);
+        if (!completed) {
+            exhausted = true;
+        }
+    }
+
+    public void improve(TourImprover improver, int[] tour, DistanceMatrix distances) {
+        long start = System.nanoTime();
+        spend(start, improver.improve(tour, distances, deadline(1)));
+    }
+
+    public boolean isExhausted() {
+        return exhausted;
+    }
+}
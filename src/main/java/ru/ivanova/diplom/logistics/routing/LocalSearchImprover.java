@@ -0,0 +1,282 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+
+/**
+ * Локальный поиск 2-opt и Or-opt по спискам ближайших соседей с битами "не смотреть".
+ * Маршрут рассматривается как путь с закрепленными концами. Узел - позиция в исходном
+ * маршруте, поэтому повторяющиеся точки (например, склад) обрабатываются корректно.
+ */
+public class LocalSearchImprover implements TourImprover {
+
+    static final LocalSearchImprover TWO_OPT = new LocalSearchImprover(false);
+    static final LocalSearchImprover TWO_OPT_OR_OPT = new LocalSearchImprover(true);
+
+    private static final int NEIGHBOURS = 8;
+    private static final int MAX_SEGMENT = 3;
+    // Предел проверок узлов на узел маршрута: обычно локальный оптимум достигается намного раньше
+    private static final int MAX_CHECKS_PER_NODE = 100;
+    private static final double EPSILON = 1e-12;
+
+    private final boolean orOpt;
+
+    public LocalSearchImprover(boolean orOpt) {
+        this.orOpt = orOpt;
+    }
+
+    @Override
+    public boolean improve(int[] tour, DistanceMatrix distances, long deadline) {
+        if (tour.length < 5) {
+            return true;
+        }
+        return new Search(tour, distances).run(deadline);
+    }
+
+    private class Search {
+        private final int n;
+        private final DistanceMatrix distances;
+        private final int[] tour;
+        private final int[] point;
+        private final int[] order;
+        private final int[] pos;
+        private final int[][] neighbours;
+        private final int[] queue;
+        private final boolean[] queued;
+        private int head;
+        private int queueSize;
+
+        Search(int[] tour, DistanceMatrix distances) {
+            this.n = tour.length;
+            this.distances = distances;
+            this.tour = tour;
+            this.point = tour.clone();
+            this.order = new int[n];
+            this.pos = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+                pos[i] = i;
+            }
+            this.neighbours = NeighbourLists.build(distances.getPoints(), point, NEIGHBOURS);
+            this.queue = new int[n];
+            this.queued = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                push(i);
+            }
+        }
+
+        boolean run(long deadline) {
+            long checks = (long) MAX_CHECKS_PER_NODE * n;
+            boolean completed = true;
+            while (queueSize > 0 && checks-- > 0) {
+                if (System.nanoTime() >= deadline) {
+                    completed = false;
+                    break;
+                }
+                int node = pop();
+                if (twoOpt(node) || (orOpt && orOpt(node))) {
+                    push(node);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                tour[i] = point[order[i]];
+            }
+            return completed;
+        }
+
+        private boolean twoOpt(int a) {
+            int i = pos[a];
+            // Ребро к следующему узлу
+            if (i < n - 1) {
+                int aNext = order[i + 1];
+                double dAB = distance(a, aNext);
+                for (int c : neighbours[a]) {
+                    double dAC = distance(a, c);
+                    if (dAC >= dAB) {
+                        break;
+                    }
+                    int j = pos[c];
+                    if (j >= n - 1) {
+                        continue;
+                    }
+                    int cNext = order[j + 1];
+                    if (c == aNext || cNext == a) {
+                        continue;
+                    }
+                    double gain = dAB + distance(c, cNext) - dAC - distance(aNext, cNext);
+                    if (gain > EPSILON) {
+                        if (i < j) {
+                            reverse(i + 1, j);
+                        } else {
+                            reverse(j + 1, i);
+                        }
+                        push(aNext, c, cNext);
+                        return true;
+                    }
+                }
+            }
+            // Ребро к предыдущему узлу
+            if (i > 0) {
+                int aPrev = order[i - 1];
+                double dAB = distance(a, aPrev);
+                for (int c : neighbours[a]) {
+                    double dAC = distance(a, c);
+                    if (dAC >= dAB) {
+                        break;
+                    }
+                    int j = pos[c];
+                    if (j == 0) {
+                        continue;
+                    }
+                    int cPrev = order[j - 1];
+                    if (c == aPrev || cPrev == a) {
+                        continue;
+                    }
+                    double gain = dAB + distance(c, cPrev) - dAC - distance(aPrev, cPrev);
+                    if (gain > EPSILON) {
+                        if (i < j) {
+                            reverse(i, j - 1);
+                        } else {
+                            reverse(j, i - 1);
+                        }
+                        push(aPrev, c, cPrev);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        // Перенос отрезка длиной до MAX_SEGMENT, начинающегося или заканчивающегося в узле a
+        private boolean orOpt(int a) {
+            int p = pos[a];
+            for (int length = 1; length <= MAX_SEGMENT; length++) {
+                for (int variant = 0; variant < (length == 1 ? 1 : 2); variant++) {
+                    int start = variant == 0 ? p : p - length + 1;
+                    int end = start + length - 1;
+                    if (start < 1 || end > n - 2) {
+                        continue;
+                    }
+                    if (moveSegment(start, end)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean moveSegment(int start, int end) {
+            int first = order[start];
+            int last = order[end];
+            int prev = order[start - 1];
+            int next = order[end + 1];
+            double removeGain = distance(prev, first) + distance(last, next) - distance(prev, next);
+            if (removeGain <= EPSILON) {
+                return false;
+            }
+
+            double bestGain = EPSILON;
+            int bestEdge = -1;
+            boolean bestReversed = false;
+            for (int side = 0; side < 2; side++) {
+                int endpoint = side == 0 ? first : last;
+                for (int c : neighbours[endpoint]) {
+                    if (distance(endpoint, c) >= removeGain) {
+                        break;
+                    }
+                    int j = pos[c];
+                    // Ребра (c, следующий) и (предыдущий, c)
+                    for (int edge = j - 1; edge <= j; edge++) {
+                        if (edge < 0 || edge > n - 2 || (edge >= start - 1 && edge <= end)) {
+                            continue;
+                        }
+                        int left = order[edge];
+                        int right = order[edge + 1];
+                        double base = distance(left, right);
+                        double forward = removeGain - (distance(left, first) + distance(last, right) - base);
+                        double reversed = removeGain - (distance(left, last) + distance(first, right) - base);
+                        if (forward > bestGain) {
+                            bestGain = forward;
+                            bestEdge = edge;
+                            bestReversed = false;
+                        }
+                        if (reversed > bestGain) {
+                            bestGain = reversed;
+                            bestEdge = edge;
+                            bestReversed = true;
+                        }
+                    }
+                }
+            }
+            if (bestEdge < 0) {
+                return false;
+            }
+
+            int left = order[bestEdge];
+            int right = order[bestEdge + 1];
+            relocate(start, end, bestEdge, bestReversed);
+            push(prev, next, first, last);
+            push(left, right);
+            return true;
+        }
+
+        // Вставка отрезка [start, end] между позициями edge и edge + 1
+        private void relocate(int start, int end, int edge, boolean reversed) {
+            int length = end - start + 1;
+            int[] segment = new int[length];
+            System.arraycopy(order, start, segment, 0, length);
+            int target;
+            if (edge < start) {
+                System.arraycopy(order, edge + 1, order, edge + 1 + length, start - edge - 1);
+                target = edge + 1;
+            } else {
+                System.arraycopy(order, end + 1, order, start, edge - end);
+                target = edge - length + 1;
+            }
+            for (int k = 0; k < length; k++) {
+                order[target + k] = reversed ? segment[length - 1 - k] : segment[k];
+            }
+            int from = Math.min(start, target);
+            int to = Math.max(end, target + length - 1);
+            for (int k = from; k <= to; k++) {
+                pos[order[k]] = k;
+            }
+        }
+
+        private void reverse(int from, int to) {
+            while (from < to) {
+                int node = order[from];
+                order[from] = order[to];
+                order[to] = node;
+                pos[order[from]] = from;
+                pos[order[to]] = to;
+                from++;
+                to--;
+            }
+        }
+
+        private double distance(int a, int b) {
+            return distances.get(point[a], point[b]);
+        }
+
+        private void push(int node) {
+            if (!queued[node]) {
+                queued[node] = true;
+                queue[(head + queueSize++) % n] = node;
+            }
+        }
+
+        private void push(int... nodes) {
+            for (int node : nodes) {
+                push(node);
+            }
+        }
+
+        private int pop() {
+            int node = queue[head];
+            head = (head + 1) % n;
+            queueSize--;
+            queued[node] = false;
+            return node;
+        }
+    }
+}
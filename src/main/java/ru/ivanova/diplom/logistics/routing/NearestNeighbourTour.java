@@ -0,0 +1,29 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import ru.ivanova.diplom.logistics.geometry.KdTree;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+
+// Жадный маршрут ближайшего соседа на k-d дереве
+public final class NearestNeighbourTour {
+
+    private NearestNeighbourTour() {
+    }
+
+    /**
+     * Замкнутый маршрут из точки start по всем кандидатам: [start, ..., start].
+     * При равных расстояниях выбирается кандидат, стоящий раньше в массиве.
+     */
+    public static int[] build(PointSet points, int start, int[] candidates) {
+        KdTree tree = new KdTree(points, candidates);
+        int[] tour = new int[candidates.length + 2];
+        tour[0] = start;
+        for (int step = 1; step <= candidates.length; step++) {
+            int last = tour[step - 1];
+            int nearest = tree.nearest(points.getX(last), points.getY(last));
+            tree.remove(nearest);
+            tour[step] = candidates[nearest];
+        }
+        tour[tour.length - 1] = start;
+        return tour;
+    }
+}
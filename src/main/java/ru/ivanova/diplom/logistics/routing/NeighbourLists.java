@@ -0,0 +1,32 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import ru.ivanova.diplom.logistics.geometry.KdTree;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+
+import java.util.Arrays;
+
+// Списки ближайших соседей для локального поиска
+public final class NeighbourLists {
+
+    private NeighbourLists() {
+    }
+
+    // Для каждого элемента (индекс в массиве nodePoints) - до k ближайших других элементов по возрастанию
+    public static int[][] build(PointSet points, int[] nodePoints, int k) {
+        int count = nodePoints.length;
+        int limit = Math.min(k, count - 1);
+        int[][] neighbours = new int[count][];
+        if (limit <= 0) {
+            Arrays.fill(neighbours, new int[0]);
+            return neighbours;
+        }
+        KdTree tree = new KdTree(points, nodePoints);
+        int[] buffer = new int[limit];
+        for (int node = 0; node < count; node++) {
+            int point = nodePoints[node];
+            int found = tree.nearest(points.getX(point), points.getY(point), limit, node, buffer);
+            neighbours[node] = Arrays.copyOf(buffer, found);
+        }
+        return neighbours;
+    }
+}
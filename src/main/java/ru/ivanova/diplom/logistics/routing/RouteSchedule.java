@@ -0,0 +1,66 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+
+/**
+ * Расписание готового маршрута с окнами времени: прямой проход дает время начала обслуживания
+ * каждой точки с учетом ожидания, обратный - самое позднее время, при котором окна оставшейся
+ * части маршрута еще соблюдаются. Проверки вставки за O(1) по этим величинам выполняет
+ * {@link SavingsVrpSolver}.
+ */
+public final class RouteSchedule {
+
+    // Допуск сравнения времени (часы): накопленная ошибка округления не делает маршрут недопустимым
+    public static final double EPSILON = 1e-9;
+
+    private RouteSchedule() {
+    }
+
+    /**
+     * Время завершения маршрута [склад, ..., склад]: проезд со скоростью speed, ожидание открытия
+     * окон и обслуживание каждой позиции, включая склад в начале и в конце.
+     *
+     * @return время завершения или Double.POSITIVE_INFINITY, если окно одной из точек пропущено
+     */
+    public static double finishTime(int[] route, DistanceMatrix distances, double speed, TimeWindows windows) {
+        double time = 0;
+        for (int k = 0; k < route.length; k++) {
+            if (k > 0) {
+                time += distances.get(route[k - 1], route[k]) / speed;
+            }
+            time = Math.max(time, windows.open(route[k]));
+            if (time > windows.close(route[k]) + EPSILON) {
+                return Double.POSITIVE_INFINITY;
+            }
+            time += windows.service(route[k]);
+        }
+        return time;
+    }
+
+    /**
+     * Самое позднее время выезда из (x, y) по точкам visits, при котором все окна соблюдаются
+     * (Double.NEGATIVE_INFINITY - ни при каком). Возврат после последней точки не ограничен.
+     */
+    public static double latestDeparture(PointSet points, double x, double y, int[] visits, double speed,
+                                         TimeWindows windows) {
+        double latest = Double.POSITIVE_INFINITY;
+        for (int k = visits.length - 1; k >= 0; k--) {
+            int point = visits[k];
+            if (k < visits.length - 1) {
+                int next = visits[k + 1];
+                latest -= PointSet.distance(points.getX(point), points.getY(point),
+                        points.getX(next), points.getY(next)) / speed + windows.service(point);
+            }
+            latest = Math.min(latest, windows.close(point));
+            // Окно открывается позже допустимого начала: ожидание не поможет при любом выезде
+            if (latest + EPSILON < windows.open(point)) {
+                return Double.NEGATIVE_INFINITY;
+            }
+        }
+        if (visits.length == 0) {
+            return latest;
+        }
+        return latest - PointSet.distance(x, y, points.getX(visits[0]), points.getY(visits[0])) / speed;
+    }
+}
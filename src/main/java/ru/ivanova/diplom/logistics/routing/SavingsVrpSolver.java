@@ -0,0 +1,893 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Маршрутизация с ограничением вместимости (CVRP) для статической модели.
+ * Начальное решение строится методом сбережений Кларка-Райта по спискам ближайших соседей,
+ * затем улучшается межмаршрутными перемещениями relocate и exchange. Время маршрута
+ * (проезд + обработка каждой точки, включая выезд и возврат на склад) не должно превышать maxTime.
+ * Экземпляр рассчитан на одно решение.
+ * <p>
+ * Парк машин ({@link Fleet}) может состоять из разных типов. Построение повторяется для каждой
+ * вместимости парка как предела загрузки маршрута; после построения маршрутам распределяются типы
+ * с учетом числа машин, и локальный поиск сравнивает перемещения по расходам: пробег по цене км
+ * каждого маршрута и постоянные расходы освобожденной машины. Из вариантов выбирается самый дешевый
+ * из укладывающихся во время. При одном типе машин вариант один.
+ * <p>
+ * С окнами времени ({@link TimeWindows}) допустимость проверяется по расписанию. При построении
+ * для каждого маршрута хранятся в обоих направлениях обхода самое раннее время выезда с последней
+ * точки и самое позднее начало обслуживания первой, поэтому соединение двух маршрутов проверяется
+ * за O(1). При локальном поиске для каждой точки хранятся начало обслуживания (прямой проход)
+ * и самое позднее допустимое начало (обратный проход): вставка и удаление точки тоже проверяются
+ * за O(1), расписание пересчитывается только для измененных маршрутов.
+ */
+public class SavingsVrpSolver {
+
+    private static final int NEIGHBOURS = 12;
+    // Предел проверок заказов при локальном поиске на один заказ
+    private static final int MAX_CHECKS_PER_CUSTOMER = 100;
+    private static final double EPSILON = 1e-12;
+    private static final int DEPOT = -1;
+
+    private final DistanceMatrix distances;
+    private final int depotPoint;
+    private final int[] customerPoint;
+    private final double[] demand;
+    private final Fleet fleet;
+    // Наибольшая вместимость и наименьшая скорость парка: ограничения до распределения типов
+    private final double capacity;
+    private final double speed;
+    private final double maxTime;
+    private final double serviceTime;
+    private final int size;
+
+    // Неориентированные связи маршрута на этапе построения: два соседа, DEPOT - склад
+    private final int[] linkA;
+    private final int[] linkB;
+    // Ориентированные связи на этапе локального поиска
+    private final int[] prev;
+    private final int[] next;
+    private final int[] routeOf;
+    private final int[] first;
+    private final int[] last;
+    private final int[] count;
+    private final double[] load;
+    private final double[] length;
+    // Тип машины маршрута
+    private final int[] type;
+    private int routes;
+    private int[] routeTypes;
+
+    private int[][] neighbours;
+
+    // Окна времени по номерам точек; null - ограничение только по maxTime
+    private final TimeWindows windows;
+    // Расписание маршрутов при построении: прямое (first -> last) и обратное направление
+    private final double[] departForward;
+    private final double[] latestForward;
+    private final double[] departBackward;
+    private final double[] latestBackward;
+    private final int[] chain;
+    // Расписание точек при локальном поиске: начало обслуживания и самое позднее начало
+    private final double[] earliest;
+    private final double[] latest;
+
+    public SavingsVrpSolver(DistanceMatrix distances, int depotPoint, int[] customerPoint, double[] demand,
+                            Fleet fleet, double maxTime, double serviceTime, TimeWindows windows) {
+        this.distances = distances;
+        this.depotPoint = depotPoint;
+        this.customerPoint = customerPoint;
+        this.demand = demand;
+        this.fleet = fleet;
+        this.capacity = fleet.maxCapacity();
+        this.speed = fleet.minSpeed();
+        this.maxTime = maxTime;
+        this.serviceTime = serviceTime;
+        this.size = customerPoint.length;
+        this.linkA = new int[size];
+        this.linkB = new int[size];
+        this.prev = new int[size];
+        this.next = new int[size];
+        this.routeOf = new int[size];
+        this.first = new int[size];
+        this.last = new int[size];
+        this.count = new int[size];
+        this.load = new double[size];
+        this.length = new double[size];
+        this.type = new int[size];
+        this.windows = windows;
+        boolean scheduled = windows != null;
+        this.departForward = scheduled ? new double[size] : null;
+        this.latestForward = scheduled ? new double[size] : null;
+        this.departBackward = scheduled ? new double[size] : null;
+        this.latestBackward = scheduled ? new double[size] : null;
+        this.chain = scheduled ? new int[size] : null;
+        this.earliest = scheduled ? new double[size] : null;
+        this.latest = scheduled ? new double[size] : null;
+    }
+
+    /**
+     * Возвращает маршруты в виде индексов точек [склад, ..., склад], типы машин маршрутов - в
+     * {@link #getRouteTypes()}. Если заказы не помещаются в машины парка по вместимости или ни один
+     * вариант не укладывается во время и окна, выбрасывается исключение - недопустимый план
+     * не возвращается и заказы не теряются молча. Время локального поиска ограничено budget.
+     */
+    public List<int[]> solve(ImprovementBudget budget) {
+        routeTypes = new int[0];
+        if (size == 0) {
+            return new ArrayList<>();
+        }
+        int maxRoutes = fleet.vehicles();
+        double totalDemand = 0;
+        for (int c = 0; c < size; c++) {
+            if (demand[c] > capacity) {
+                throw new RuntimeException("Order volume exceeds courier car capacity");
+            }
+            totalDemand += demand[c];
+        }
+        if (totalDemand > fleet.totalCapacity()) {
+            throw new RuntimeException("Orders do not fit into couriers' capacity");
+        }
+        if (windows != null) {
+            for (int c = 0; c < size; c++) {
+                if (!fitsBetween(c, DEPOT, DEPOT)) {
+                    throw new RuntimeException("Time window of point " + customerPoint[c] + " cannot be met");
+                }
+            }
+        }
+        neighbours = NeighbourLists.build(distances.getPoints(), customerPoint, NEIGHBOURS);
+
+        double[] limits = fleet.capacities();
+        List<int[]> best = null;
+        int[] bestTypes = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        boolean assigned = false;
+        for (int s = 0; s < limits.length; s++) {
+            buildSavings(maxRoutes, limits[s]);
+            reduceRoutes(maxRoutes);
+            if (!assignVehicles()) {
+                continue;
+            }
+            assigned = true;
+            orient();
+            // Оставшееся время улучшения делится поровну между оставшимися вариантами
+            long start = System.nanoTime();
+            budget.spend(start, improve(budget.deadline(limits.length - s)));
+            List<int[]> result = collectRoutes();
+
+            // Номер маршрута после локального поиска может не совпадать с его заказами
+            double cost = 0;
+            boolean onTime = true;
+            boolean[] counted = new boolean[size];
+            for (int c = 0; c < size; c++) {
+                int r = routeOf[c];
+                if (!counted[r]) {
+                    counted[r] = true;
+                    cost += fleet.cost(type[r], length[r]);
+                    onTime &= isOnTime(r);
+                }
+            }
+            if (onTime && cost < bestCost - EPSILON) {
+                best = result;
+                bestTypes = routeTypes;
+                bestCost = cost;
+            }
+        }
+        if (!assigned) {
+            throw new RuntimeException("Orders do not fit into the fleet");
+        }
+        if (best == null) {
+            throw new RuntimeException("Orders cannot be delivered by the fleet within the time limit");
+        }
+        routeTypes = bestTypes;
+        return best;
+    }
+
+    // loadLimit - предел загрузки маршрута при соединении с учетом времени
+    private void buildSavings(int maxRoutes, double loadLimit) {
+        for (int c = 0; c < size; c++) {
+            linkA[c] = DEPOT;
+            linkB[c] = DEPOT;
+            routeOf[c] = c;
+            first[c] = c;
+            last[c] = c;
+            count[c] = 1;
+            load[c] = demand[c];
+            length[c] = 2 * distance(DEPOT, c);
+            if (windows != null) {
+                scheduleChain(c);
+            }
+        }
+        routes = size;
+
+        int pairs = 0;
+        for (int[] list : neighbours) {
+            pairs += list.length;
+        }
+        int[] from = new int[pairs];
+        int[] to = new int[pairs];
+        double[] savings = new double[pairs];
+        int k = 0;
+        for (int c = 0; c < size; c++) {
+            for (int j : neighbours[c]) {
+                from[k] = c;
+                to[k] = j;
+                savings[k] = distance(DEPOT, c) + distance(DEPOT, j) - distance(c, j);
+                k++;
+            }
+        }
+
+        int[] order = IndexSort.descending(savings);
+        mergeBySavings(order, from, to, savings, true, 1, loadLimit);
+        // Если из-за ограничения времени маршрутов больше, чем машин, повторяем без него
+        if (routes > maxRoutes) {
+            mergeBySavings(order, from, to, savings, false, maxRoutes, capacity);
+        }
+    }
+
+    private void mergeBySavings(int[] order, int[] from, int[] to, double[] savings, boolean respectTime,
+                                int minRoutes, double loadLimit) {
+        for (int pair : order) {
+            if (routes <= minRoutes) {
+                return;
+            }
+            int i = from[pair];
+            int j = to[pair];
+            int ri = routeOf[i];
+            int rj = routeOf[j];
+            if (ri == rj || !isEndpoint(i) || !isEndpoint(j) || load[ri] + load[rj] > loadLimit) {
+                continue;
+            }
+            double mergedLength = length[ri] + length[rj] - savings[pair];
+            if (respectTime && (savings[pair] <= EPSILON || !canMerge(i, j, mergedLength))) {
+                continue;
+            }
+            merge(i, j, mergedLength);
+        }
+    }
+
+    // Если маршрутов больше, чем машин, объединяем самые дешевые пары без учета времени. Пары хранятся
+    // в очереди; после слияния добавляются только пары с новым маршрутом, записи об изменившихся
+    // маршрутах отбрасываются по версии маршрута
+    private void reduceRoutes(int maxRoutes) {
+        if (routes <= maxRoutes) {
+            return;
+        }
+        int[] version = new int[size];
+        PriorityQueue<MergeCandidate> queue = new PriorityQueue<>();
+        offerAll(queue, version);
+        while (routes > maxRoutes) {
+            MergeCandidate best = queue.poll();
+            if (best == null) {
+                // Ни одна пара не помещается в машину; после расформирования очередь строится заново
+                dissolve(lightest());
+                offerAll(queue, version);
+                continue;
+            }
+            if (routeOf[best.a()] != best.a() || routeOf[best.b()] != best.b()
+                    || version[best.a()] != best.versionA() || version[best.b()] != best.versionB()) {
+                continue;
+            }
+            merge(best.x(), best.y(), length[best.a()] + length[best.b()] + best.cost());
+            int target = routeOf[best.x()];
+            version[target]++;
+            for (int r = 0; r < size; r++) {
+                if (r != target && routeOf[r] == r) {
+                    offer(queue, version, Math.min(r, target), Math.max(r, target));
+                }
+            }
+        }
+    }
+
+    private void offerAll(PriorityQueue<MergeCandidate> queue, int[] version) {
+        for (int a = 0; a < size; a++) {
+            if (routeOf[a] != a) {
+                continue;
+            }
+            for (int b = a + 1; b < size; b++) {
+                if (routeOf[b] == b) {
+                    offer(queue, version, a, b);
+                }
+            }
+        }
+    }
+
+    // Самое дешевое соединение концов маршрутов a < b, если их общий объем помещается в машину
+    private void offer(PriorityQueue<MergeCandidate> queue, int[] version, int a, int b) {
+        if (load[a] + load[b] > capacity) {
+            return;
+        }
+        int bestX = -1;
+        int bestY = -1;
+        double bestCost = Double.MAX_VALUE;
+        for (int ends = 0; ends < 4; ends++) {
+            int x = (ends & 1) == 0 ? first[a] : last[a];
+            int y = (ends & 2) == 0 ? first[b] : last[b];
+            double cost = distance(x, y) - distance(DEPOT, x) - distance(DEPOT, y);
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestX = x;
+                bestY = y;
+            }
+        }
+        queue.add(new MergeCandidate(bestCost, a, b, bestX, bestY, version[a], version[b]));
+    }
+
+    private int lightest() {
+        int lightest = -1;
+        for (int r = 0; r < size; r++) {
+            if (routeOf[r] == r && (lightest < 0 || load[r] < load[lightest])) {
+                lightest = r;
+            }
+        }
+        return lightest;
+    }
+
+    // Расформирование маршрута: каждый заказ вставляется в самое дешевое место других маршрутов
+    private void dissolve(int route) {
+        int[] members = new int[count[route]];
+        int node = first[route];
+        int previous = DEPOT;
+        for (int k = 0; k < members.length; k++) {
+            members[k] = node;
+            int following = linkA[node] == previous ? linkB[node] : linkA[node];
+            previous = node;
+            node = following;
+        }
+        routes--;
+
+        for (int c : members) {
+            int bestRoute = -1;
+            int bestA = DEPOT;
+            int bestB = DEPOT;
+            double bestCost = Double.MAX_VALUE;
+            for (int r = 0; r < size; r++) {
+                if (r == route || routeOf[r] != r || load[r] + demand[c] > capacity) {
+                    continue;
+                }
+                int a = DEPOT;
+                int b = first[r];
+                for (int k = 0; k <= count[r]; k++) {
+                    double cost = distance(a, c) + distance(c, b) - distance(a, b);
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestRoute = r;
+                        bestA = a;
+                        bestB = b;
+                    }
+                    if (b == DEPOT) {
+                        break;
+                    }
+                    int following = linkA[b] == a ? linkB[b] : linkA[b];
+                    a = b;
+                    b = following;
+                }
+            }
+            if (bestRoute < 0) {
+                throw new RuntimeException("Orders do not fit into couriers' capacity");
+            }
+            insertBetween(c, bestA, bestB, bestRoute, bestCost);
+        }
+    }
+
+    private void insertBetween(int c, int a, int b, int r, double cost) {
+        linkA[c] = a;
+        linkB[c] = b;
+        if (a == DEPOT) {
+            first[r] = c;
+        } else {
+            replaceLink(a, b, c);
+        }
+        if (b == DEPOT) {
+            last[r] = c;
+        } else {
+            replaceLink(b, a, c);
+        }
+        routeOf[c] = r;
+        count[r]++;
+        load[r] += demand[c];
+        length[r] += cost;
+    }
+
+    private void replaceLink(int node, int from, int to) {
+        if (linkA[node] == from) {
+            linkA[node] = to;
+        } else {
+            linkB[node] = to;
+        }
+    }
+
+    private boolean isEndpoint(int c) {
+        return linkA[c] == DEPOT || linkB[c] == DEPOT;
+    }
+
+    // Соединение концов i и j разных маршрутов; меньший маршрут переходит в больший
+    private void merge(int i, int j, double mergedLength) {
+        int ri = routeOf[i];
+        int rj = routeOf[j];
+        int otherI = first[ri] == i ? last[ri] : first[ri];
+        int otherJ = first[rj] == j ? last[rj] : first[rj];
+        if (linkA[i] == DEPOT) {
+            linkA[i] = j;
+        } else {
+            linkB[i] = j;
+        }
+        if (linkA[j] == DEPOT) {
+            linkA[j] = i;
+        } else {
+            linkB[j] = i;
+        }
+
+        int target = count[ri] >= count[rj] ? ri : rj;
+        int source = target == ri ? rj : ri;
+        // Обход с свободного конца меньшего маршрута
+        int node = source == ri ? otherI : otherJ;
+        int previous = DEPOT;
+        for (int k = 0; k < count[source]; k++) {
+            routeOf[node] = target;
+            int following = linkA[node] == previous ? linkB[node] : linkA[node];
+            previous = node;
+            node = following;
+        }
+
+        first[target] = otherI;
+        last[target] = otherJ;
+        count[target] = count[ri] + count[rj];
+        load[target] = load[ri] + load[rj];
+        length[target] = mergedLength;
+        routes--;
+        if (windows != null) {
+            scheduleChain(target);
+        }
+    }
+
+    // С окнами время проверяется расписанием, без них - по длине маршрута и скорости типа
+    private double timeLimit() {
+        return windows == null ? maxTime : Double.POSITIVE_INFINITY;
+    }
+
+    // Типы машин с учетом их числа для маршрутов после построения; false - машин нужной вместимости не хватает
+    private boolean assignVehicles() {
+        int[] live = new int[routes];
+        int liveCount = 0;
+        for (int c = 0; c < size; c++) {
+            if (routeOf[c] == c) {
+                live[liveCount++] = c;
+            }
+        }
+        double[] loads = new double[liveCount];
+        double[] lengths = new double[liveCount];
+        int[] stops = new int[liveCount];
+        for (int u = 0; u < liveCount; u++) {
+            loads[u] = load[live[u]];
+            lengths[u] = length[live[u]];
+            stops[u] = count[live[u]];
+        }
+        int[] types = fleet.assign(loads, lengths, stops, serviceTime, timeLimit());
+        if (types == null) {
+            return false;
+        }
+        for (int u = 0; u < liveCount; u++) {
+            type[live[u]] = types[u];
+        }
+        return true;
+    }
+
+    // Маршрут, заканчивающийся в i, продолжается маршрутом, начинающимся в j
+    private boolean canMerge(int i, int j, double mergedLength) {
+        int ri = routeOf[i];
+        int rj = routeOf[j];
+        if (windows != null) {
+            double departure = last[ri] == i ? departForward[ri] : departBackward[ri];
+            double latestStart = first[rj] == j ? latestForward[rj] : latestBackward[rj];
+            if (departure + travel(i, j) > latestStart + RouteSchedule.EPSILON) {
+                return false;
+            }
+        }
+        // Маршрут должна пройти хотя бы одна машина парка
+        return fleet.cheapest(load[ri] + load[rj], mergedLength, count[ri] + count[rj], serviceTime,
+                timeLimit()) >= 0;
+    }
+
+    // Маршрут r после локального поиска укладывается во время своей машины или в окна
+    private boolean isOnTime(int r) {
+        if (windows == null) {
+            return time(r, length[r], count[r]) <= maxTime;
+        }
+        double time = depotDeparture();
+        int previous = DEPOT;
+        for (int node = first[r]; node != DEPOT; node = next[node]) {
+            time = Math.max(time + travel(previous, node), open(node));
+            if (time > close(node) + RouteSchedule.EPSILON) {
+                return false;
+            }
+            time += service(node);
+            previous = node;
+        }
+        return time + travel(previous, DEPOT) <= latestReturn() + RouteSchedule.EPSILON;
+    }
+
+    // Расписание неориентированного маршрута r в обоих направлениях; недопустимое направление
+    // получает бесконечное время выезда и не продолжается
+    private void scheduleChain(int r) {
+        int n = count[r];
+        int node = first[r];
+        int previous = DEPOT;
+        for (int k = 0; k < n; k++) {
+            chain[k] = node;
+            int following = linkA[node] == previous ? linkB[node] : linkA[node];
+            previous = node;
+            node = following;
+        }
+        departForward[r] = chainDeparture(n, false);
+        latestForward[r] = chainLatestStart(n, false);
+        departBackward[r] = chainDeparture(n, true);
+        latestBackward[r] = chainLatestStart(n, true);
+    }
+
+    private double chainDeparture(int n, boolean reverse) {
+        double time = depotDeparture();
+        int previous = DEPOT;
+        for (int k = 0; k < n; k++) {
+            int node = chain[reverse ? n - 1 - k : k];
+            double start = Math.max(time + travel(previous, node), open(node));
+            if (start > close(node) + RouteSchedule.EPSILON) {
+                return Double.POSITIVE_INFINITY;
+            }
+            time = start + service(node);
+            previous = node;
+        }
+        return time;
+    }
+
+    private double chainLatestStart(int n, boolean reverse) {
+        double latestStart = latestReturn();
+        int following = DEPOT;
+        for (int k = n - 1; k >= 0; k--) {
+            int node = chain[reverse ? n - 1 - k : k];
+            latestStart = Math.min(close(node), latestStart - travel(node, following) - service(node));
+            if (latestStart + RouteSchedule.EPSILON < open(node)) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            following = node;
+        }
+        return latestStart;
+    }
+
+    // Перевод неориентированных маршрутов в списки prev/next
+    private void orient() {
+        boolean[] done = new boolean[size];
+        for (int c = 0; c < size; c++) {
+            int r = routeOf[c];
+            if (done[r]) {
+                continue;
+            }
+            done[r] = true;
+            int node = first[r];
+            int previous = DEPOT;
+            while (node != DEPOT) {
+                int following = linkA[node] == previous ? linkB[node] : linkA[node];
+                prev[node] = previous;
+                next[node] = following;
+                previous = node;
+                node = following;
+            }
+        }
+    }
+
+    // false - поиск прерван по сроку deadline
+    private boolean improve(long deadline) {
+        if (windows != null) {
+            boolean[] done = new boolean[size];
+            for (int c = 0; c < size; c++) {
+                if (!done[routeOf[c]]) {
+                    done[routeOf[c]] = true;
+                    schedule(routeOf[c]);
+                }
+            }
+        }
+        int[] queue = new int[size];
+        boolean[] queued = new boolean[size];
+        for (int c = 0; c < size; c++) {
+            queue[c] = c;
+            queued[c] = true;
+        }
+        int head = 0;
+        int queueSize = size;
+        int[] touched = new int[6];
+        long checks = (long) MAX_CHECKS_PER_CUSTOMER * size;
+        while (queueSize > 0 && checks-- > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            int c = queue[head];
+            head = (head + 1) % size;
+            queueSize--;
+            queued[c] = false;
+
+            int changed = relocate(c, touched);
+            if (changed == 0) {
+                changed = exchange(c, touched);
+            }
+            for (int t = 0; t < changed; t++) {
+                int node = touched[t];
+                if (node != DEPOT && !queued[node]) {
+                    queued[node] = true;
+                    queue[(head + queueSize++) % size] = node;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Перенос заказа c в другой маршрут рядом с ближайшим соседом; возвращает число затронутых узлов
+    private int relocate(int c, int[] touched) {
+        int r1 = routeOf[c];
+        int p = prev[c];
+        int n = next[c];
+        double removeGain = distance(p, c) + distance(c, n) - distance(p, n);
+        for (int j : neighbours[c]) {
+            int r2 = routeOf[j];
+            if (r2 == r1 || load[r2] + demand[c] > fleet.capacity(type[r2])) {
+                continue;
+            }
+            // Последний заказ маршрута освобождает машину
+            double released = count[r1] == 1 ? fleet.fixedCost(type[r1]) : 0;
+            for (int side = 0; side < 2; side++) {
+                int a = side == 0 ? j : prev[j];
+                int b = side == 0 ? next[j] : j;
+                double add = distance(a, c) + distance(c, b) - distance(a, b);
+                double saving = fleet.costPerKm(type[r1]) * removeGain - fleet.costPerKm(type[r2]) * add
+                        + released;
+                if (improves(saving, removeGain - add) && canRelocate(c, p, n, a, b, r2, add)) {
+                    unlink(c);
+                    length[r1] -= removeGain;
+                    load[r1] -= demand[c];
+                    count[r1]--;
+                    linkBetween(c, a, b, r2);
+                    length[r2] += add;
+                    load[r2] += demand[c];
+                    count[r2]++;
+                    if (windows != null) {
+                        schedule(r1);
+                        schedule(r2);
+                    }
+                    touched[0] = c;
+                    touched[1] = p;
+                    touched[2] = n;
+                    touched[3] = a;
+                    touched[4] = b;
+                    touched[5] = j;
+                    return 6;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Обмен заказа c с соседом по маршруту ближайшего к нему заказа из другого маршрута
+    private int exchange(int c, int[] touched) {
+        int r1 = routeOf[c];
+        int p = prev[c];
+        int n = next[c];
+        for (int j : neighbours[c]) {
+            int r2 = routeOf[j];
+            if (r2 == r1) {
+                continue;
+            }
+            for (int side = 0; side < 2; side++) {
+                int k = side == 0 ? next[j] : prev[j];
+                if (k == DEPOT) {
+                    continue;
+                }
+                double loadR1 = load[r1] - demand[c] + demand[k];
+                double loadR2 = load[r2] - demand[k] + demand[c];
+                if (loadR1 > fleet.capacity(type[r1]) || loadR2 > fleet.capacity(type[r2])) {
+                    continue;
+                }
+                int kp = prev[k];
+                int kn = next[k];
+                double delta1 = distance(p, k) + distance(k, n) - distance(p, c) - distance(c, n);
+                double delta2 = distance(kp, c) + distance(c, kn) - distance(kp, k) - distance(k, kn);
+                double saving = -(fleet.costPerKm(type[r1]) * delta1 + fleet.costPerKm(type[r2]) * delta2);
+                if (improves(saving, -(delta1 + delta2)) && canExchange(c, k, p, n, kp, kn, delta1, delta2)) {
+                    unlink(c);
+                    unlink(k);
+                    linkBetween(k, p, n, r1);
+                    linkBetween(c, kp, kn, r2);
+                    length[r1] += delta1;
+                    length[r2] += delta2;
+                    load[r1] = loadR1;
+                    load[r2] = loadR2;
+                    if (windows != null) {
+                        schedule(r1);
+                        schedule(r2);
+                    }
+                    touched[0] = c;
+                    touched[1] = k;
+                    touched[2] = p;
+                    touched[3] = n;
+                    touched[4] = kp;
+                    touched[5] = kn;
+                    return 6;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Перемещение снижает расходы; при равных расходах (например, без цены км) - пробег
+    private static boolean improves(double saving, double distanceGain) {
+        return saving > EPSILON || saving > -EPSILON && distanceGain > EPSILON;
+    }
+
+    private boolean canRelocate(int c, int p, int n, int a, int b, int r2, double add) {
+        if (windows == null) {
+            return time(r2, length[r2] + add, count[r2] + 1) <= maxTime;
+        }
+        return fitsWithout(p, n) && fitsBetween(c, a, b);
+    }
+
+    // c (между p и n) и k (между kp и kn) меняются местами
+    private boolean canExchange(int c, int k, int p, int n, int kp, int kn, double delta1, double delta2) {
+        if (windows == null) {
+            return time(routeOf[c], length[routeOf[c]] + delta1, count[routeOf[c]]) <= maxTime
+                    && time(routeOf[k], length[routeOf[k]] + delta2, count[routeOf[k]]) <= maxTime;
+        }
+        return fitsBetween(k, p, n) && fitsBetween(c, kp, kn);
+    }
+
+    // Вставка c между соседними a и b: окно c и запас времени оставшейся части маршрута
+    private boolean fitsBetween(int c, int a, int b) {
+        double start = Math.max(departureFrom(a) + travel(a, c), open(c));
+        return start <= close(c) + RouteSchedule.EPSILON
+                && start + service(c) + travel(c, b) <= latestAt(b) + RouteSchedule.EPSILON;
+    }
+
+    // Удаление точки между p и n
+    private boolean fitsWithout(int p, int n) {
+        return departureFrom(p) + travel(p, n) <= latestAt(n) + RouteSchedule.EPSILON;
+    }
+
+    // Прямой и обратный проход по ориентированному маршруту r
+    private void schedule(int r) {
+        double time = depotDeparture();
+        int previous = DEPOT;
+        for (int node = first[r]; node != DEPOT; node = next[node]) {
+            earliest[node] = Math.max(time + travel(previous, node), open(node));
+            time = earliest[node] + service(node);
+            previous = node;
+        }
+        double latestStart = latestReturn();
+        int following = DEPOT;
+        for (int node = last[r]; node != DEPOT; node = prev[node]) {
+            latest[node] = Math.min(close(node), latestStart - travel(node, following) - service(node));
+            latestStart = latest[node];
+            following = node;
+        }
+    }
+
+    private double departureFrom(int node) {
+        return node == DEPOT ? depotDeparture() : earliest[node] + service(node);
+    }
+
+    private double latestAt(int node) {
+        return node == DEPOT ? latestReturn() : latest[node];
+    }
+
+    // Выезд со склада после обработки и самое позднее возвращение, чтобы успеть к maxTime
+    private double depotDeparture() {
+        return windows.open(depotPoint) + windows.service(depotPoint);
+    }
+
+    private double latestReturn() {
+        return maxTime - windows.service(depotPoint);
+    }
+
+    private double open(int c) {
+        return windows.open(customerPoint[c]);
+    }
+
+    private double close(int c) {
+        return windows.close(customerPoint[c]);
+    }
+
+    private double service(int c) {
+        return windows.service(customerPoint[c]);
+    }
+
+    private double travel(int a, int b) {
+        return distance(a, b) / speed;
+    }
+
+    private void unlink(int c) {
+        int r = routeOf[c];
+        int p = prev[c];
+        int n = next[c];
+        if (p == DEPOT) {
+            first[r] = n;
+        } else {
+            next[p] = n;
+        }
+        if (n == DEPOT) {
+            last[r] = p;
+        } else {
+            prev[n] = p;
+        }
+    }
+
+    // Вставка c между соседними узлами a и b маршрута r (DEPOT - склад)
+    private void linkBetween(int c, int a, int b, int r) {
+        routeOf[c] = r;
+        prev[c] = a;
+        next[c] = b;
+        if (a == DEPOT) {
+            first[r] = c;
+        } else {
+            next[a] = c;
+        }
+        if (b == DEPOT) {
+            last[r] = c;
+        } else {
+            prev[b] = c;
+        }
+    }
+
+    private List<int[]> collectRoutes() {
+        List<int[]> result = new ArrayList<>();
+        int[] types = new int[size];
+        boolean[] done = new boolean[size];
+        for (int c = 0; c < size; c++) {
+            int r = routeOf[c];
+            if (done[r]) {
+                continue;
+            }
+            done[r] = true;
+            int[] route = new int[count[r] + 2];
+            int k = 0;
+            route[k++] = depotPoint;
+            for (int node = first[r]; node != DEPOT; node = next[node]) {
+                route[k++] = customerPoint[node];
+            }
+            route[k] = depotPoint;
+            types[result.size()] = type[r];
+            result.add(route);
+        }
+        routeTypes = Arrays.copyOf(types, result.size());
+        return result;
+    }
+
+    private double time(int r, double routeLength, int stops) {
+        return fleet.time(type[r], routeLength, stops, serviceTime);
+    }
+
+    // Типы машин маршрутов последнего решения в порядке solve
+    public int[] getRouteTypes() {
+        return routeTypes;
+    }
+
+    private double distance(int a, int b) {
+        return distances.get(a == DEPOT ? depotPoint : customerPoint[a],
+                b == DEPOT ? depotPoint : customerPoint[b]);
+    }
+
+    // Соединение концов x и y маршрутов a < b; при равной стоимости - пара с меньшими номерами маршрутов
+    private record MergeCandidate(double cost, int a, int b, int x, int y, int versionA, int versionB)
+            implements Comparable<MergeCandidate> {
+
+        @Override
+        public int compareTo(MergeCandidate other) {
+            int byCost = Double.compare(cost, other.cost);
+            if (byCost != 0) {
+                return byCost;
+            }
+            return a != other.a ? Integer.compare(a, other.a) : Integer.compare(b, other.b);
+        }
+    }
+}
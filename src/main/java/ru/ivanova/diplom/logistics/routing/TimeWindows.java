@@ -0,0 +1,91 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import ru.ivanova.diplom.logistics.model.Order;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Окна времени и время обслуживания точек (часы от начала смены). Точка без окна доступна
+ * всю смену, точка без собственного времени обслуживания обслуживается за время по умолчанию.
+ * Курьер, приехавший до начала окна, ждет его открытия; приезд после конца окна недопустим.
+ */
+public class TimeWindows {
+
+    private final double[] open;
+    private final double[] close;
+    private final double[] service;
+
+    private TimeWindows(double[] open, double[] close, double[] service) {
+        this.open = open;
+        this.close = close;
+        this.service = service;
+    }
+
+    /**
+     * Окна для точек 0..size-1, заказ относится к точке pointIndex - offset.
+     * Возвращает null, если ни у одного заказа нет окна и времени обслуживания: расчет
+     * тогда идет без расписания, как и раньше.
+     */
+    public static TimeWindows of(List<Order> orders, int size, int offset, double defaultService) {
+        boolean scheduled = false;
+        for (Order order : orders) {
+            scheduled |= order.getTimeWindowStart() != null || order.getTimeWindowEnd() != null
+                    || order.getServiceTime() != null;
+        }
+        if (!scheduled) {
+            return null;
+        }
+        double[] open = new double[size];
+        double[] close = new double[size];
+        double[] service = new double[size];
+        Arrays.fill(close, Double.POSITIVE_INFINITY);
+        Arrays.fill(service, defaultService);
+        for (Order order : orders) {
+            int point = order.getPointIndex() - offset;
+            if (point < 0 || point >= size) {
+                continue;
+            }
+            if (order.getTimeWindowStart() != null) {
+                open[point] = order.getTimeWindowStart();
+            }
+            if (order.getTimeWindowEnd() != null) {
+                close[point] = order.getTimeWindowEnd();
+            }
+            if (order.getServiceTime() != null) {
+                service[point] = order.getServiceTime();
+            }
+        }
+        return new TimeWindows(open, close, service);
+    }
+
+    /**
+     * Окна набора из size точек с точкой заказа order (pointIndex == size), добавленной в конец.
+     * Если окон еще нет (windows == null), они создаются, только когда у заказа есть окно
+     * или время обслуживания; иначе - null.
+     */
+    public static TimeWindows append(TimeWindows windows, int size, Order order, double defaultService) {
+        if (windows == null) {
+            return of(List.of(order), size + 1, 0, defaultService);
+        }
+        double[] extendedOpen = Arrays.copyOf(windows.open, size + 1);
+        double[] extendedClose = Arrays.copyOf(windows.close, size + 1);
+        double[] extendedService = Arrays.copyOf(windows.service, size + 1);
+        extendedOpen[size] = order.getTimeWindowStart() != null ? order.getTimeWindowStart() : 0;
+        extendedClose[size] = order.getTimeWindowEnd() != null ? order.getTimeWindowEnd() : Double.POSITIVE_INFINITY;
+        extendedService[size] = order.getServiceTime() != null ? order.getServiceTime() : defaultService;
+        return new TimeWindows(extendedOpen, extendedClose, extendedService);
+    }
+
+    public double open(int point) {
+        return open[point];
+    }
+
+    public double close(int point) {
+        return close[point];
+    }
+
+    public double service(int point) {
+        return service[point];
+    }
+}
@@ -0,0 +1,31 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.model.TourImprovement;
+
+/**
+ * Улучшение готового маршрута [start, ..., finish] на месте. Первая и последняя позиции
+ * не меняются. Число проверок ограничено размером маршрута, поэтому результат от времени
+ * не зависит, если работу не прервал deadline (значение System.nanoTime()).
+ */
+public interface TourImprover {
+
+    TourImprover NONE = (tour, distances, deadline) -> true;
+
+    // false - улучшение прервано по сроку deadline
+    boolean improve(int[] tour, DistanceMatrix distances, long deadline);
+
+    // Срок для бюджета budgetNanos от текущего момента; Long.MAX_VALUE - без ограничения
+    static long deadline(long budgetNanos) {
+        long now = System.nanoTime();
+        return budgetNanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + budgetNanos;
+    }
+
+    static TourImprover of(TourImprovement mode) {
+        return switch (mode) {
+            case none -> NONE;
+            case two_opt -> LocalSearchImprover.TWO_OPT;
+            case two_opt_or_opt -> LocalSearchImprover.TWO_OPT_OR_OPT;
+        };
+    }
+}
@@ -0,0 +1,153 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.ivanova.diplom.logistics.config.RabbitConfig;
+import ru.ivanova.diplom.logistics.model.BatchResult;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.PipelineStage;
+import ru.ivanova.diplom.logistics.service.RabbitMQSender.OutgoingMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Пакетный расчет независимых задач (например, всех складов на следующий день) за один вызов.
+ * Расчеты обеих моделей всех задач выполняются в общем пуле с перехватом работы, поэтому
+ * потоки, закончившие короткие задачи, забирают оставшиеся. Результаты отдаются по мере
+ * готовности и ставятся в очередь отправки RabbitMQ окнами.
+ */
+@Service
+public class BatchOptimizationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchOptimizationService.class);
+
+    private final OptimizationService optimizationService;
+    private final StaticModelService staticModelService;
+    private final RabbitMQSender rabbitMQSender;
+    private final OptimizationMetrics metrics;
+    private final ExecutorService executor;
+    private final int publishWindow;
+
+    public BatchOptimizationService(OptimizationService optimizationService, StaticModelService staticModelService,
+                                    RabbitMQSender rabbitMQSender, OptimizationMetrics metrics,
+                                    @Qualifier("batchExecutor") ExecutorService executor,
+                                    @Value("${optimization.batch.publish-window:16}") int publishWindow) {
+        this.optimizationService = optimizationService;
+        this.staticModelService = staticModelService;
+        this.rabbitMQSender = rabbitMQSender;
+        this.metrics = metrics;
+        this.executor = executor;
+        this.publishWindow = Math.max(1, publishWindow);
+    }
+
+    /**
+     * Рассчитывает задачи пакета и передает результат каждой в onResult сразу после ее завершения,
+     * то есть в порядке готовности, а не в порядке пакета. У каждой модели задачи свой результат
+     * или ошибка, в RabbitMQ отправляются только рассчитанные модели. onResult вызывается в потоке
+     * вызывающего.
+     * Если onResult бросает исключение, еще не начатые расчеты отменяются, а у начатых
+     * останавливается перебор динамической модели.
+     */
+    public void optimize(List<OptimizationRequest> requests, Consumer<BatchResult> onResult)
+            throws InterruptedException {
+        BlockingQueue<BatchResult> completed = new LinkedBlockingQueue<>();
+        List<CompletableFuture<?>> tasks = new ArrayList<>(requests.size() * 2);
+        // CompletableFuture.cancel не прерывает расчет, поэтому перебор останавливается через состояние
+        Queue<SweepState> sweeps = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            OptimizationRequest request = requests.get(i);
+            CompletableFuture<byte[]> staticModel = CompletableFuture.supplyAsync(
+                    () -> model(OptimizationMetrics.STATIC, () -> staticModelService.buildResult(request)), executor);
+            CompletableFuture<byte[]> dynamicModel = CompletableFuture.supplyAsync(
+                    () -> model(OptimizationMetrics.DYNAMIC,
+                            () -> optimizationService.buildResult(request, sweeps::add)),
+                    executor);
+            tasks.add(staticModel);
+            tasks.add(dynamicModel);
+            // Ошибка одной модели не отменяет результат другой
+            CompletableFuture<Outcome> staticOutcome = staticModel.handle((result, e) ->
+                    outcome(index, OptimizationMetrics.STATIC, result, e));
+            CompletableFuture<Outcome> dynamicOutcome = dynamicModel.handle((result, e) ->
+                    outcome(index, OptimizationMetrics.DYNAMIC, result, e));
+            staticOutcome.thenCombine(dynamicOutcome, (staticResult, dynamicResult) -> new BatchResult(index,
+                            staticResult.result(), dynamicResult.result(), staticResult.error(), dynamicResult.error()))
+                    .thenAccept(completed::add);
+        }
+
+        List<OutgoingMessage> window = new ArrayList<>(publishWindow);
+        try {
+            for (int received = 0; received < requests.size(); received++) {
+                BatchResult result = completed.take();
+                onResult.accept(result);
+                // Отправляются только рассчитанные модели
+                if (result.getStaticResult() != null) {
+                    window.add(new OutgoingMessage(RabbitConfig.QUEUE_NAME, result.getStaticResult(),
+                            StaticModelService.headers()));
+                }
+                if (result.getDynamicResult() != null) {
+                    window.add(new OutgoingMessage(RabbitConfig.QUEUE_NAME, result.getDynamicResult(),
+                            OptimizationService.headers()));
+                }
+                if (window.size() >= publishWindow) {
+                    publish(window);
+                }
+            }
+            publish(window);
+        } finally {
+            tasks.forEach(task -> task.cancel(false));
+            sweeps.forEach(SweepState::cancel);
+        }
+    }
+
+    // Расчет модели с учетом результата в метрике исхода
+    private byte[] model(String model, Supplier<byte[]> calculation) {
+        boolean success = false;
+        try {
+            byte[] result = calculation.get();
+            success = true;
+            return result;
+        } finally {
+            metrics.outcome(model, success);
+        }
+    }
+
+    // Ошибка отправки не прерывает пакет: результаты уже переданы клиенту
+    private void publish(List<OutgoingMessage> window) {
+        if (window.isEmpty()) {
+            return;
+        }
+        try {
+            metrics.record(OptimizationMetrics.REQUEST, PipelineStage.publish, () -> rabbitMQSender.sendBatch(window));
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось отправить пакет из {} результатов", window.size(), e);
+        }
+        window.clear();
+    }
+
+    private static Outcome outcome(int index, String model, byte[] result, Throwable e) {
+        if (e == null) {
+            return new Outcome(result, null);
+        }
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        logger.warn("Модель {} задачи {} пакета завершилась с ошибкой", model, index, cause);
+        return new Outcome(null, String.valueOf(cause.getMessage()));
+    }
+
+    // Результат одной модели задачи пакета либо ошибка
+    private record Outcome(byte[] result, String error) {
+    }
+}
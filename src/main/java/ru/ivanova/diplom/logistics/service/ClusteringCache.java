@@ -0,0 +1,93 @@
+package ru.ivanova.diplom.logistics.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.commons.math3.ml.clustering.DoublePoint;
+import ru.ivanova.diplom.logistics.geometry.ClusterSplitter;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.routing.ClusterRouter;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+// Кэш кластеризации в пределах одного запроса. Кластеры зависят только от числа кластеров и того,
+// как их пришлось разбить по радиусу, поэтому для разных чисел курьеров и радиусов с одинаковым
+// разбиением считаются один раз. Секторы курьеров внутри кластера зависят только от кластера и числа
+// секторов и тоже строятся один раз
+class ClusteringCache {
+
+    private final ConcurrentHashMap<Integer, FutureTask<ClusterSplitter>> initial = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<StageKey, FutureTask<ClusteringStage>> stages = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<SectorKey, FutureTask<ClusterRouter.Sector[]>> sectors = new ConcurrentHashMap<>();
+
+    // Результат k-means до проверки радиуса - дерево разбиения его кластеров
+    ClusterSplitter initial(int clusterCount, Callable<ClusterSplitter> loader) {
+        return memoize(initial, clusterCount, loader);
+    }
+
+    // Ключ - число кластеров и узлы дерева разбиения, ставшие кластерами
+    ClusteringStage stage(int clusterCount, List<ClusterSplitter.Node> nodes, Callable<ClusteringStage> loader) {
+        BitSet ids = new BitSet();
+        for (ClusterSplitter.Node node : nodes) {
+            ids.set(node.getId());
+        }
+        return memoize(stages, new StageKey(clusterCount, ids), loader);
+    }
+
+    // Ключ - число кластеров (дерево разбиения), номер узла дерева и число секторов
+    ClusterRouter.Sector[] sectors(int clusterCount, int node, int sectorCount,
+                                   Callable<ClusterRouter.Sector[]> loader) {
+        return memoize(sectors, new SectorKey(clusterCount, node, sectorCount), loader);
+    }
+
+    private static <K, V> V memoize(ConcurrentHashMap<K, FutureTask<V>> map, K key, Callable<V> loader) {
+        FutureTask<V> task = new FutureTask<>(loader);
+        FutureTask<V> existing = map.putIfAbsent(key, task);
+        if (existing == null) {
+            task.run();
+            existing = task;
+        }
+        try {
+            return existing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private record StageKey(int clusterCount, BitSet nodes) {
+    }
+
+    private record SectorKey(int clusterCount, int node, int sectors) {
+    }
+
+    // Кластеры после проверки радиуса и маршрут мобильного склада по их центрам
+    @Getter
+    @AllArgsConstructor
+    static class ClusteringStage {
+        // Номера точек и центры кластеров
+        private final List<ClusterSplitter.Node> clusters;
+        // Начальная точка (индекс 0) и центры кластеров
+        private final PointSet stops;
+        private final int[] route;
+        private final List<DoublePoint> optimizedRoute;
+        private final double mobStorageDistance;
+        private final int singleClusters;
+        // Число точек, которые развозят курьеры, по порядку clusters: точки кластеров из нескольких
+        // точек, не совпадающие с центром
+        private final int[] courierPoints;
+        // Время прибытия склада к кластеру (по порядку clusters); null - в запросе нет окон времени
+        private final double[] arrivals;
+        // Склад успевает в окна кластеров из одной точки и точек в центре кластера
+        private final boolean onTime;
+    }
+}
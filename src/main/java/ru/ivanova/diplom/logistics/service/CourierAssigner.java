@@ -0,0 +1,231 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.apache.commons.math3.ml.clustering.DoublePoint;
+import ru.ivanova.diplom.logistics.geometry.ClusterSplitter;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.routing.ClusterRouter;
+import ru.ivanova.diplom.logistics.routing.ImprovementBudget;
+import ru.ivanova.diplom.logistics.routing.RouteSchedule;
+import ru.ivanova.diplom.logistics.routing.TimeWindows;
+import ru.ivanova.diplom.logistics.routing.TourImprover;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Распределение точек кластеров по курьерам динамической модели. Точки кластера делятся
+ * на секторы по числу курьеров (ClusterRouter), каждый сектор - один замкнутый маршрут из центра.
+ * Секторы раздаются от самого длинного курьеру с наименьшим пробегом; пробег и число точек
+ * курьера хранятся в массивах по номеру курьера, очередь курьеров - двоичная куча номеров.
+ * <p>
+ * Секторы не зависят от пробегов курьеров, поэтому строятся один раз на кластер и число секторов
+ * и берутся из кэша запроса; для конфигурации остается только раздача секторов. При оценке
+ * конфигураций маршруты не строятся, они нужны только для лучшей конфигурации.
+ * <p>
+ * С окнами времени курьер выезжает из кластера, когда туда прибывает мобильный склад; распределение
+ * недопустимо, если прибытие склада позже самого позднего выезда по одному из секторов.
+ */
+class CourierAssigner {
+
+    private final PointSet points;
+    private final List<DoublePoint> pointObjects;
+    private final ClusteringCache cache;
+    private final TourImprover improver;
+    private final ImprovementBudget budget;
+    private final TimeWindows windows;
+    private final double courierSpeed;
+
+    CourierAssigner(PointSet points, List<DoublePoint> pointObjects, ClusteringCache cache, TourImprover improver,
+                    ImprovementBudget budget, TimeWindows windows, double courierSpeed) {
+        this.points = points;
+        this.pointObjects = pointObjects;
+        this.cache = cache;
+        this.improver = improver;
+        this.budget = budget;
+        this.windows = windows;
+        this.courierSpeed = courierSpeed;
+    }
+
+    // Расходы и время конфигурации без построения маршрутов; arrivals - прибытие склада к кластерам или null
+    Assignment assign(int clusterCount, List<ClusterSplitter.Node> clusters, double[] arrivals, int couriers) {
+        return new Assignment(couriers, false).run(clusterCount, clusters, arrivals);
+    }
+
+    // То же распределение с маршрутами курьеров: центр кластера, точки сектора, центр
+    Assignment assignWithRoutes(int clusterCount, List<ClusterSplitter.Node> clusters, double[] arrivals,
+                                int couriers) {
+        return new Assignment(couriers, true).run(clusterCount, clusters, arrivals);
+    }
+
+    // Секторы кластера от самого длинного; при числе курьеров не меньше числа точек разбиение одно и то же.
+    // Порядок раздачи сортируется один раз при построении, а не для каждой конфигурации
+    private ClusterRouter.Sector[] sectors(int clusterCount, ClusterSplitter.Node cluster, int couriers) {
+        int sectors = Math.min(couriers, cluster.getMembers().length);
+        return cache.sectors(clusterCount, cluster.getId(), sectors, () -> ClusterRouter.longestFirst(
+                ClusterRouter.route(points, cluster.getMembers(), cluster.getCenterX(), cluster.getCenterY(),
+                        sectors, improver, budget, windows, courierSpeed)));
+    }
+
+    class Assignment {
+        private final int couriers;
+        private final double[] distance;
+        private final int[] count;
+        private final int[] heap;
+        private final List<List<DoublePoint>> routes;
+        private boolean onTime = true;
+
+        private Assignment(int couriers, boolean withRoutes) {
+            this.couriers = couriers;
+            this.distance = new double[couriers];
+            this.count = new int[couriers];
+            this.heap = new int[couriers];
+            this.routes = withRoutes ? new ArrayList<>() : null;
+            // Все пробеги равны нулю, поэтому порядок кучи совпадает с порядком добавления
+            for (int i = 0; i < couriers; i++) {
+                heap[i] = i;
+            }
+        }
+
+        private Assignment run(int clusterCount, List<ClusterSplitter.Node> clusters, double[] arrivals) {
+            for (int k = 0; k < clusters.size(); k++) {
+                ClusterSplitter.Node cluster = clusters.get(k);
+                // Кластер из одной точки обслуживает мобильный склад
+                if (cluster.getMembers().length != 1) {
+                    ClusterRouter.Sector[] sectors = sectors(clusterCount, cluster, couriers);
+                    if (arrivals != null) {
+                        for (ClusterRouter.Sector sector : sectors) {
+                            onTime &= arrivals[k] <= sector.latestStart() + RouteSchedule.EPSILON;
+                        }
+                    }
+                    assignCluster(sectors, cluster);
+                }
+            }
+            return this;
+        }
+
+        private void assignCluster(ClusterRouter.Sector[] sectors, ClusterSplitter.Node cluster) {
+            // Секторы упорядочены от самого длинного: длинные раздаются первыми, пока у курьеров есть разница в пробеге
+            for (ClusterRouter.Sector sector : sectors) {
+                int courier = poll();
+                distance[courier] += sector.length();
+                // В тариф и время обработки входят все точки сектора
+                count[courier] += sector.points().length;
+                add(courier);
+            }
+
+            if (routes != null) {
+                DoublePoint center = new DoublePoint(new double[]{cluster.getCenterX(), cluster.getCenterY()});
+                for (ClusterRouter.Sector sector : sectors) {
+                    List<DoublePoint> route = new ArrayList<>(sector.points().length + 2);
+                    route.add(center);
+                    for (int point : sector.points()) {
+                        route.add(pointObjects.get(point));
+                    }
+                    route.add(center);
+                    routes.add(route);
+                }
+            }
+        }
+
+        // Операции кучи с компаратором по пробегу: курьер извлекается и возвращается с новым пробегом
+        private int poll() {
+            int result = heap[0];
+            int size = couriers - 1;
+            if (size > 0) {
+                siftDown(heap[size], size);
+            }
+            return result;
+        }
+
+        private void add(int courier) {
+            int k = couriers - 1;
+            while (k > 0) {
+                int parent = (k - 1) >>> 1;
+                if (Double.compare(distance[courier], distance[heap[parent]]) >= 0) {
+                    break;
+                }
+                heap[k] = heap[parent];
+                k = parent;
+            }
+            heap[k] = courier;
+        }
+
+        private void siftDown(int courier, int size) {
+            int k = 0;
+            int half = size >>> 1;
+            while (k < half) {
+                int child = (k << 1) + 1;
+                int right = child + 1;
+                if (right < size && Double.compare(distance[heap[child]], distance[heap[right]]) > 0) {
+                    child = right;
+                }
+                if (Double.compare(distance[courier], distance[heap[child]]) <= 0) {
+                    break;
+                }
+                heap[k] = heap[child];
+                k = child;
+            }
+            heap[k] = courier;
+        }
+
+        // Общие расходы, округленные до копеек; курьер без секторов не задействован и не оплачивается
+        double totalExpenses(double mobStorageDistance, Parameters params) {
+            double mobStorageExpenses = params.getFUEL_RATE_MOB_STORAGE() * params.getFUEL_COST() * mobStorageDistance
+                    + params.getDRIVER_SALARY() + params.getMOB_STORAGE_RATE();
+
+            double courierExpenses = 0;
+            for (int courier : heap) {
+                if (count[courier] == 0) {
+                    continue;
+                }
+                double courierDeliveryTime = distance[courier] / params.getCOURIER_SCOOTER_SPEED();
+                courierExpenses += params.getCOURIER_SALARY() +
+                        count[courier] * params.getCOURIER_SCOOTER_RATE() * courierDeliveryTime
+                        + params.getENERGY_CONSUMPTION() * params.getENERGY_CONSUMPTION_COST() * courierDeliveryTime;
+            }
+
+            double totalExpenses = mobStorageExpenses + courierExpenses;
+            return Math.round(totalExpenses * 100.0) / 100.0;
+        }
+
+        // Время склада и самого долгого курьера: проезд и обработка всех его точек; каждый кластер
+        // из одной точки добавляет время обработки
+        double totalTime(double mobStorageDistance, int singleClusters, Parameters params) {
+            double mobStorageTime = mobStorageDistance / params.getMOB_STORAGE_SPEED();
+
+            double maxCourierTime = 0;
+            for (int courier : heap) {
+                double travelTime = distance[courier] / params.getCOURIER_SCOOTER_SPEED();
+                double processingTime = count[courier] * params.getORDER_PROCESSING_TIME();
+                maxCourierTime = Math.max(maxCourierTime, travelTime + processingTime);
+            }
+            for (int i = 0; i < singleClusters; i++) {
+                maxCourierTime += params.getORDER_PROCESSING_TIME();
+            }
+            return mobStorageTime + maxCourierTime;
+        }
+
+        // Номера курьеров в порядке кучи
+        int[] getCourierOrder() {
+            return heap;
+        }
+
+        double getDistance(int courier) {
+            return distance[courier];
+        }
+
+        int getCount(int courier) {
+            return count[courier];
+        }
+
+        List<List<DoublePoint>> getRoutes() {
+            return routes;
+        }
+
+        // Курьеры успевают во все окна времени
+        boolean isOnTime() {
+            return onTime;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.ivanova.diplom.logistics.model.JobStatus;
+import ru.ivanova.diplom.logistics.model.OptimizationJob;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Асинхронные задачи оптимизации. Задачи выполняются в отдельном ограниченном пуле:
+ * если его очередь заполнена, задача не принимается. Готовые результаты хранятся
+ * заданное время, затем удаляются.
+ */
+@Service
+public class OptimizationJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OptimizationJobService.class);
+
+    private final OptimizationService optimizationService;
+    private final StaticModelService staticModelService;
+    private final ExecutorService executor;
+    private final long retentionMillis;
+    private final Map<String, OptimizationJob> jobs = new ConcurrentHashMap<>();
+
+    public OptimizationJobService(OptimizationService optimizationService, StaticModelService staticModelService,
+                                  @Qualifier("jobExecutor") ExecutorService executor,
+                                  @Value("${optimization.jobs.retention-ms:3600000}") long retentionMillis) {
+        this.optimizationService = optimizationService;
+        this.staticModelService = staticModelService;
+        this.executor = executor;
+        this.retentionMillis = retentionMillis;
+    }
+
+    /**
+     * Ставит задачу в очередь и сразу возвращает ее.
+     *
+     * @throws RejectedExecutionException если очередь задач заполнена
+     */
+    public OptimizationJob submit(OptimizationRequest request) {
+        removeExpired();
+        OptimizationJob job = new OptimizationJob(UUID.randomUUID().toString(), System.currentTimeMillis());
+        jobs.put(job.getId(), job);
+        try {
+            job.setTask(executor.submit(() -> run(job, request)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    public OptimizationJob get(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Снимает задачу: задача из очереди не запускается, у выполняемой останавливается перебор.
+     * Завершенная задача не меняется.
+     *
+     * @return задача или null, если ее нет
+     */
+    public OptimizationJob cancel(String id) {
+        OptimizationJob job = jobs.get(id);
+        if (job == null || job.getFinishedAt() > 0) {
+            return job;
+        }
+        Future<?> task = job.getTask();
+        if (task != null) {
+            task.cancel(true);
+        }
+        SweepState state = job.getSweepState();
+        if (state != null) {
+            state.cancel();
+        }
+        if (job.getStatus() == JobStatus.queued) {
+            job.setStatus(JobStatus.cancelled);
+            job.setStaticStatus(JobStatus.cancelled);
+            job.setDynamicStatus(JobStatus.cancelled);
+            job.setFinishedAt(System.currentTimeMillis());
+        }
+        return job;
+    }
+
+    // Модели считаются по очереди, ошибка одной не отменяет результат другой
+    private void run(OptimizationJob job, OptimizationRequest request) {
+        job.setStatus(JobStatus.running);
+        try {
+            job.setStaticStatus(JobStatus.running);
+            try {
+                job.setStaticResult(staticModelService.optimizeCourierRoutes(request));
+                job.setStaticStatus(JobStatus.done);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.warn("Статическая модель задачи {} завершилась с ошибкой", job.getId(), e);
+                job.setStaticError(String.valueOf(e.getMessage()));
+                job.setStaticStatus(JobStatus.failed);
+            }
+
+            job.setDynamicStatus(JobStatus.running);
+            try {
+                job.setDynamicResult(optimizationService.optimizeRoute(request, job::setSweepState));
+                job.setDynamicStatus(JobStatus.done);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                logger.warn("Динамическая модель задачи {} завершилась с ошибкой", job.getId(), e);
+                job.setDynamicError(String.valueOf(e.getMessage()));
+                job.setDynamicStatus(JobStatus.failed);
+            }
+
+            boolean anyDone = job.getStaticStatus() == JobStatus.done || job.getDynamicStatus() == JobStatus.done;
+            job.setStatus(anyDone ? JobStatus.done : JobStatus.failed);
+        } catch (CancellationException e) {
+            // Модель, завершенная до снятия, сохраняет результат или ошибку
+            job.setStaticStatus(cancelled(job.getStaticStatus()));
+            job.setDynamicStatus(cancelled(job.getDynamicStatus()));
+            job.setStatus(JobStatus.cancelled);
+        } finally {
+            job.setFinishedAt(System.currentTimeMillis());
+        }
+    }
+
+    private static JobStatus cancelled(JobStatus status) {
+        return status == JobStatus.queued || status == JobStatus.running ? JobStatus.cancelled : status;
+    }
+
+    private void removeExpired() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> job.getFinishedAt() > 0 && now - job.getFinishedAt() > retentionMillis);
+    }
+}
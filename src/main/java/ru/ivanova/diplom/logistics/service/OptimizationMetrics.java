@@ -0,0 +1,109 @@
+package ru.ivanova.diplom.logistics.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import ru.ivanova.diplom.logistics.model.PipelineStage;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Метрики расчета: время этапов (optimization.stage, теги model и stage), исходы запросов,
+ * размер запросов и ход перебора динамической модели. Пулы потоков описаны в ExecutorConfig,
+ * отправка в RabbitMQ - в PublishPipeline.
+ */
+@Component
+public class OptimizationMetrics {
+
+    public static final String REQUEST = "request";
+    public static final String STATIC = "static";
+    public static final String DYNAMIC = "dynamic";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final DistributionSummary requestPoints;
+    private final AtomicInteger lastRequestPoints = new AtomicInteger();
+    private final Set<SweepState> activeSweeps = ConcurrentHashMap.newKeySet();
+    private final Counter sweepEvaluated;
+    private final Counter sweepPruned;
+
+    public OptimizationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.requestPoints = DistributionSummary.builder("optimization.request.points")
+                .description("Количество точек в запросе")
+                .register(registry);
+        Gauge.builder("optimization.request.points.last", lastRequestPoints, AtomicInteger::get)
+                .description("Количество точек в последнем запросе")
+                .register(registry);
+        this.sweepEvaluated = Counter.builder("optimization.sweep.configurations")
+                .tag("result", "evaluated").register(registry);
+        this.sweepPruned = Counter.builder("optimization.sweep.configurations")
+                .tag("result", "pruned").register(registry);
+
+        // Ход выполняющихся переборов
+        Gauge.builder("optimization.sweep.active", activeSweeps, Set::size).register(registry);
+        sweepGauge("total", SweepState::getTotal);
+        sweepGauge("evaluated", SweepState::getEvaluated);
+        sweepGauge("pruned", SweepState::getPruned);
+    }
+
+    public <T> T record(String model, PipelineStage stage, Supplier<T> action) {
+        return timer(model, stage).record(action);
+    }
+
+    public void record(String model, PipelineStage stage, Runnable action) {
+        timer(model, stage).record(action);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void stop(Timer.Sample sample, String model, PipelineStage stage) {
+        sample.stop(timer(model, stage));
+    }
+
+    public void requestParsed(int points) {
+        requestPoints.record(points);
+        lastRequestPoints.set(points);
+    }
+
+    // Исход расчета модели: success или failure
+    public void outcome(String model, boolean success) {
+        registry.counter("optimization.requests", "model", model, "outcome", success ? "success" : "failure")
+                .increment();
+    }
+
+    public void sweepStarted(SweepState state) {
+        activeSweeps.add(state);
+    }
+
+    public void sweepFinished(SweepState state) {
+        activeSweeps.remove(state);
+        sweepEvaluated.increment(state.getEvaluated());
+        sweepPruned.increment(state.getPruned());
+    }
+
+    private Timer timer(String model, PipelineStage stage) {
+        return timers.computeIfAbsent(model + ':' + stage.name(), key -> Timer.builder("optimization.stage")
+                .tag("model", model)
+                .tag("stage", stage.name())
+                .register(registry));
+    }
+
+    private void sweepGauge(String kind, ToIntFunction<SweepState> value) {
+        Gauge.builder("optimization.sweep.inflight", activeSweeps,
+                        sweeps -> sweeps.stream().mapToInt(value).sum())
+                .tag("kind", kind)
+                .description("Конфигурации выполняющихся переборов")
+                .register(registry);
+    }
+}
@@ -1,431 +1,469 @@
 package ru.ivanova.diplom.logistics.service;
 
-import org.apache.commons.math3.ml.clustering.CentroidCluster;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Timer;
 import org.apache.commons.math3.ml.clustering.DoublePoint;
-import org.apache.commons.math3.ml.clustering.KMeansPlusPlusClusterer;
-import org.apache.commons.math3.ml.distance.EuclideanDistance;
-import org.apache.commons.math3.random.JDKRandomGenerator;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.springframework.amqp.core.MessageProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.ivanova.diplom.logistics.config.RabbitConfig;
-import ru.ivanova.diplom.logistics.model.Courier;
+import ru.ivanova.diplom.logistics.geometry.ClusterSplitter;
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.geometry.KMeans;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.model.ConfigurationCost;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
 import ru.ivanova.diplom.logistics.model.OptimizationResult;
 import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.model.PipelineStage;
+import ru.ivanova.diplom.logistics.model.SweepConfiguration;
 import ru.ivanova.diplom.logistics.model.Time;
-
+import ru.ivanova.diplom.logistics.routing.ImprovementBudget;
+import ru.ivanova.diplom.logistics.routing.NearestNeighbourTour;
+import ru.ivanova.diplom.logistics.routing.RouteSchedule;
+import ru.ivanova.diplom.logistics.routing.TimeWindows;
+import ru.ivanova.diplom.logistics.routing.TourImprover;
+import ru.ivanova.diplom.logistics.service.ClusteringCache.ClusteringStage;
+import ru.ivanova.diplom.logistics.utils.GeoJsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 @Service
 public class OptimizationService {
 
     private static final double MAX_CLUSTER_RADIUS = 5.0;
     private static final int MAX_COUNT_CLUSTERS = 10;
+    private static final long CLUSTERING_SEED = 42;
+    private static final Logger logger = LoggerFactory.getLogger(OptimizationService.class);
     private final RabbitMQSender rabbitMQSender;
+    private final SweepEngine sweepEngine;
+    private final OptimizationMetrics metrics;
+    private final OptimizationTracer tracer;
+    private final ResultCache resultCache;
+    private final KMeans kMeans;
+    private final AtomicBoolean fleetNoticeLogged = new AtomicBoolean();
 
     @Autowired
-    public OptimizationService(RabbitMQSender rabbitMQSender) {
+    public OptimizationService(RabbitMQSender rabbitMQSender, SweepEngine sweepEngine, OptimizationMetrics metrics,
+                               OptimizationTracer tracer, ResultCache resultCache, KMeans kMeans) {
         this.rabbitMQSender = rabbitMQSender;
+        this.sweepEngine = sweepEngine;
+        this.metrics = metrics;
+        this.tracer = tracer;
+        this.resultCache = resultCache;
+        this.kMeans = kMeans;
+    }
+
+    public byte[] optimizeRoute(OptimizationRequest request) {
+        return optimizeRoute(request, state -> { });
     }
 
-    public JSONObject optimizeRoute(JSONObject geoJson, Parameters params, JSONObject requestDataJson) {
+    // onStart получает состояние перебора до его начала - для отображения хода расчета
+    // При результате из кэша перебор не выполняется и onStart не вызывается
+    public byte[] optimizeRoute(OptimizationRequest request, Consumer<SweepState> onStart) {
+        boolean success = false;
         try {
-            List<DoublePoint> points = extractPointsFromGeoJson(geoJson);
-            DoublePoint startPoint = points.remove(0); // Начальная точка - первый элемент
-
-            List<CompletableFuture<OptimizationResult>> futures = new ArrayList<>();
-
-            for (int clusterCount = 2; clusterCount <= MAX_COUNT_CLUSTERS; clusterCount++) {
-                for (int couriers = 3; couriers <= params.getMAX_COUNT_COURIERS(); couriers++) {
-                    for (double clusterRadius = 0.5; clusterRadius <= MAX_CLUSTER_RADIUS; clusterRadius += 0.1) {
-                        final int finalClusterCount = clusterCount;
-                        final int finalCouriers = couriers;
-                        final double finalClusterRadius = clusterRadius;
-
-                        CompletableFuture<OptimizationResult> future = CompletableFuture.supplyAsync(() -> {
-                            Parameters newParams = new Parameters(
-                                    params.getFUEL_RATE_MOB_STORAGE(),
-                                    params.getFUEL_RATE_COURIER_CAR(),
-                                    params.getFUEL_COST(),
-                                    params.getMOB_STORAGE_RATE(),
-                                    params.getCOURIER_CAR_RATE(),
-                                    params.getDRIVER_SALARY(),
-                                    params.getMAX_COUNT_COURIERS(),
-                                    params.getCOURIER_SALARY(),
-                                    params.getCOURIER_SCOOTER_RATE(),
-                                    params.getENERGY_CONSUMPTION(),
-                                    params.getENERGY_CONSUMPTION_COST(),
-                                    params.getMAX_COURIER_CAR_CAPACITY(),
-                                    params.getMAX_DELIVERY_CAPACITY(),
-                                    params.getMAX_TIME(),
-                                    params.getORDER_PROCESSING_TIME(),
-                                    params.getCOURIER_SCOOTER_SPEED(),
-                                    params.getMOB_STORAGE_SPEED()
-                            );
-                            return calculateOptimization(points, startPoint, newParams, finalClusterCount,
-                                    finalClusterRadius, finalCouriers);
-                        });
-                        futures.add(future);
-                    }
-                }
+            byte[] resultJson = buildResult(request, onStart);
+            // Задача снята во время расчета (запрос отклонен) - результат не отправляется
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Dynamic model task was cancelled");
             }
 
-            futures.stream()
-                    .map(CompletableFuture::join)
-                    .sorted(Comparator.comparingDouble(OptimizationResult::getTotalExpenses))
-                    .findFirst().stream().toList().forEach(result ->
-                            System.out.println("Расходы: " + result.getTotalExpenses()
-                            + "\nЗатраченное время: " + Time.convert(result.getTotalTime())
-                            + "\nРасстояние, пройденное мобильным складом: " + result.getDistanceMobStorage()
-                            + "\nРасстояния, пройденные курьерами: "
-                                    + result.getDistanceCouriers().stream().map(String::valueOf)
-                                    .collect(Collectors.joining(", "))));
-
-            OptimizationResult bestResult = futures.stream()
-                    .map(CompletableFuture::join)
-                    .filter(result -> result.getTotalTime() <= params.getMAX_TIME())
-                    .min(Comparator.comparingDouble(OptimizationResult::getTotalExpenses))
-                    .orElse(null);
-
-            if (bestResult != null) {
-                JSONObject resultJson = createResultGeoJson(bestResult, requestDataJson);
-
-                // Подготовка заголовков
-                Map<String, Object> headers = new HashMap<>();
-                headers.put("type", "dynamic");
-
-                // Отправка JSON в RabbitMQ с заголовками
-                rabbitMQSender.send(RabbitConfig.QUEUE_NAME, resultJson.toString(), headers);
-                return resultJson;
-            } else {
-                throw new RuntimeException("No valid optimization result found.");
-            }
-        } catch (JSONException e) {
-            e.printStackTrace();
-            return new JSONObject();
+            // Отправка JSON в RabbitMQ с заголовками
+            metrics.record(OptimizationMetrics.DYNAMIC, PipelineStage.publish,
+                    () -> rabbitMQSender.send(RabbitConfig.QUEUE_NAME, resultJson, headers()));
+            success = true;
+            return resultJson;
+        } finally {
+            metrics.outcome(OptimizationMetrics.DYNAMIC, success);
         }
     }
 
-    private List<DoublePoint> extractPointsFromGeoJson(JSONObject geoJson) throws JSONException {
-        JSONArray features = geoJson.getJSONArray("features");
-        List<DoublePoint> points = new ArrayList<>();
-
-        for (int i = 0; i < features.length(); i++) {
-            JSONObject feature = features.getJSONObject(i);
-            JSONObject geometry = feature.getJSONObject("geometry");
-            JSONArray coordinates = geometry.getJSONArray("coordinates");
-            double x = coordinates.getDouble(0);
-            double y = coordinates.getDouble(1);
-            points.add(new DoublePoint(new double[]{x, y}));
+    // Результат с request_data без отправки в RabbitMQ (пакетный режим отправляет результаты сам)
+    public byte[] buildResult(OptimizationRequest request, Consumer<SweepState> onStart) {
+        try {
+            byte[] result = resultCache.get(OptimizationMetrics.DYNAMIC, request.getFingerprint());
+            if (result == null) {
+                ImprovementBudget budget = new ImprovementBudget(request.getParams().getTOUR_IMPROVEMENT_TIME_LIMIT());
+                result = calculateResult(request, onStart, budget);
+                // Улучшение, прерванное по времени, зависит от скорости расчета - такой результат не кэшируется
+                if (!budget.isExhausted()) {
+                    resultCache.put(OptimizationMetrics.DYNAMIC, request.getFingerprint(), result);
+                }
+            }
+            return GeoJsonWriter.withRequestData(result, request.getRequestData(), "dynamic");
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write optimization result", e);
         }
-
-        return points;
     }
 
-    private OptimizationResult calculateOptimization(List<DoublePoint> points, DoublePoint startPoint, Parameters params,
-                                                     int clusterCount, double clusterRadius, int couriers) {
-        JDKRandomGenerator randomGenerator = new JDKRandomGenerator();
-        randomGenerator.setSeed(42);
-        KMeansPlusPlusClusterer<DoublePoint> clusterer = new KMeansPlusPlusClusterer<>(clusterCount, 1000,
-                new EuclideanDistance(), randomGenerator);
-        List<CentroidCluster<DoublePoint>> clusters = clusterer.cluster(points);
-        clusters = ensureMaxClusterRadius(clusters, clusterer, clusterRadius);
-
-        List<DoublePoint> clusterCenters = clusters.stream()
-                .map(cluster -> new DoublePoint(cluster.getCenter().getPoint()))
-                .collect(Collectors.toList());
-
-        List<DoublePoint> optimizedRoute = calculateRoute(startPoint, clusterCenters);
-        PriorityQueue<Courier> pq = initializeCouriers(couriers);
-
-        List<List<DoublePoint>> courierRoutes = calculateCourierRoutes(clusters, pq);
-
-        double totalExpenses = calculateTotalExpenses(optimizedRoute, pq, params);
-        double totalTime = calculateTotalTime(optimizedRoute, pq, params, clusters);
+    // Заголовки сообщения RabbitMQ с результатом модели
+    public static Map<String, Object> headers() {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("type", "dynamic");
+        return headers;
+    }
 
-        OptimizationResult result =  new OptimizationResult(optimizedRoute, courierRoutes, totalExpenses, totalTime,
-                couriers);
+    // Перебор конфигураций и сериализация лучшего результата без request_data
+    private byte[] calculateResult(OptimizationRequest request, Consumer<SweepState> onStart,
+                                   ImprovementBudget budget) throws IOException {
+        OptimizationTrace trace = tracer.begin(OptimizationMetrics.DYNAMIC);
+        try {
+            Parameters params = request.getParams();
+            boolean fleet = params.getFLEET() != null && !params.getFLEET().isEmpty();
+            if (fleet && fleetNoticeLogged.compareAndSet(false, true)) {
+                // Машины парка развозят заказы только в статической модели, сообщение - один раз
+                logger.debug("Парк машин FLEET относится к статической модели, динамическая модель его не учитывает");
+            }
+            PointSet pointSet = request.getPoints();
+            List<DoublePoint> points = pointSet.toDoublePoints(1, pointSet.size());
+            PointSet deliveryPoints = PointSet.of(points);
+            DoublePoint startPoint = pointSet.toDoublePoint(0); // Начальная точка - первый элемент
+
+            List<SweepConfiguration> configurations = buildSweepConfigurations(params);
+            SweepState state = sweepEngine.newState(configurations.size(), params.getMAX_TIME(),
+                    params.getALTERNATIVES());
+            onStart.accept(state);
+            ClusteringCache cache = new ClusteringCache();
+            // Точки доставки нумеруются с 0, а в запросе - с 1
+            TimeWindows windows = TimeWindows.of(request.getOrders(), deliveryPoints.size(), 1,
+                    params.getORDER_PROCESSING_TIME());
+            CourierAssigner assigner = new CourierAssigner(deliveryPoints, points, cache,
+                    TourImprover.of(params.getTOUR_IMPROVEMENT()), budget, windows,
+                    params.getCOURIER_SCOOTER_SPEED());
+
+            // Первый этап: оценка конфигураций без построения маршрутов курьеров
+            List<ConfigurationCost> alternatives;
+            metrics.sweepStarted(state);
+            try {
+                alternatives = sweepEngine.run(configurations, state,
+                        configuration -> lowerBoundExpenses(configuration, params),
+                        (configuration, sweepState) -> calculateOptimization(deliveryPoints, startPoint, params,
+                                configuration, sweepState, cache, assigner, windows, budget, trace));
+            } finally {
+                metrics.sweepFinished(state);
+            }
 
-        result.setDistanceMobStorage(getTotalMobStorageDistance(optimizedRoute));
-        List<Double> courierDistances = new ArrayList<>();
-        for (Courier courier : pq) {
-            courierDistances.add(courier.getCurrentDistance());
+            if (!alternatives.isEmpty()) {
+                // Второй этап: маршруты только для лучшей конфигурации
+                OptimizationResult bestResult = buildOptimizationResult(deliveryPoints, startPoint, params,
+                        alternatives.get(0).getConfiguration(), cache, assigner, windows, budget);
+                logger.info("Расходы: {}, затраченное время: {}, расстояние мобильного склада: {}, "
+                                + "расстояния курьеров: {}", bestResult.getTotalExpenses(),
+                        Time.convert(bestResult.getTotalTime()), bestResult.getDistanceMobStorage(),
+                        bestResult.getDistanceCouriers());
+
+                Timer.Sample serialization = metrics.start();
+                byte[] result = writeResultGeoJson(bestResult,
+                        params.getALTERNATIVES() > 1 ? alternatives : List.of());
+                metrics.stop(serialization, OptimizationMetrics.DYNAMIC, PipelineStage.serialize);
+                return result;
+            } else {
+                throw new RuntimeException("No valid optimization result found.");
+            }
+        } finally {
+            trace.close();
         }
-
-        result.setDistanceCouriers(courierDistances);
-
-        return result;
     }
 
-    private List<List<DoublePoint>> calculateCourierRoutes(List<CentroidCluster<DoublePoint>> clusters,
-                                                           PriorityQueue<Courier> pq) {
-        List<List<DoublePoint>> courierRoutes = new ArrayList<>();
-        for (CentroidCluster<DoublePoint> cluster : clusters) {
-            List<DoublePoint> clusterPoints = cluster.getPoints();
-            double[] clusterCenter = cluster.getCenter().getPoint();
-
-            List<List<DoublePoint>> routes = calculateCourierRoutes(new DoublePoint(clusterCenter), clusterPoints,
-                    pq.size(), pq);
-            if (!routes.isEmpty()) {
-                courierRoutes.addAll(routes);
+    // Конфигурации перебора в исходном порядке: число кластеров, число курьеров, радиус кластера
+    private List<SweepConfiguration> buildSweepConfigurations(Parameters params) {
+        List<SweepConfiguration> configurations = new ArrayList<>();
+        for (int clusterCount = 2; clusterCount <= MAX_COUNT_CLUSTERS; clusterCount++) {
+            for (int couriers = 3; couriers <= params.getMAX_COUNT_COURIERS(); couriers++) {
+                for (double clusterRadius = 0.5; clusterRadius <= MAX_CLUSTER_RADIUS; clusterRadius += 0.1) {
+                    configurations.add(new SweepConfiguration(configurations.size(), clusterCount, couriers,
+                            clusterRadius));
+                }
             }
         }
-        return courierRoutes;
+        return configurations;
     }
 
-    private PriorityQueue<Courier> initializeCouriers(int count) {
-        PriorityQueue<Courier> pq = new PriorityQueue<>(Comparator.comparingDouble(Courier::getCurrentDistance));
-        for (int i = 0; i < count; i++) {
-            pq.add(new Courier(i, 0, new ArrayList<>()));
-        }
-        return pq;
+    // Нижняя оценка расходов до кластеризации: постоянные расходы склада. Зарплату получают только
+    // задействованные курьеры, а сколько их понадобится, до кластеризации неизвестно
+    private double lowerBoundExpenses(SweepConfiguration configuration, Parameters params) {
+        return params.getDRIVER_SALARY() + params.getMOB_STORAGE_RATE();
     }
 
-    private List<List<DoublePoint>> calculateCourierRoutes(DoublePoint clusterCenter, List<DoublePoint> clusterPoints,
-                                                             int couriers, PriorityQueue<Courier> pq) {
-        List<List<DoublePoint>> courierRoutes = new ArrayList<>();
-
-        if (clusterPoints.size() != 1) {
-
-            for (int i = 0; i < couriers; i++) {
-                courierRoutes.add(new ArrayList<>());
-                courierRoutes.get(i).add(clusterCenter); // Начало маршрута с центра кластера
-            }
-
-            // Распределение точек по курьерам
-            for (DoublePoint point : clusterPoints) {
-                if (point.equals(clusterCenter))
-                    continue;
-                Courier courier = pq.poll();
-                List<DoublePoint> points = courierRoutes.get(courier.getId());
-//                // Логгирование добавление точки
-//                System.out.println("===========================================");
-//                System.out.println("Cluster Center: " + clusterCenter);
-//                System.out.println("Point: " + point);
-//                pq.forEach(System.out::println);
-//                System.out.println("===========================================");
-                if (!points.get(points.size()-1).equals(clusterCenter)) {
-                    addingPointAndDistance(clusterCenter, courier, points);
-                    addingPointAndDistance(clusterCenter, courier, points);
-                } else {
-                    courier.getVisitedPoints().add(point);
-                    courier.setCountPoints(courier.getVisitedPoints().size());
-                }
-                addingPointAndDistance(point, courier, points);
-                pq.add(courier);
+    /**
+     * Число курьеров, которые получат секторы и зарплату. Секторы раздаются курьеру с наименьшим
+     * пробегом, а пробег получившего сектор курьера больше нуля, поэтому сначала секторы получают
+     * все свободные курьеры. У кластера min(couriers, courierPoints[k]) секторов.
+     */
+    static int couriersUsed(int[] courierPoints, int couriers) {
+        int sectors = 0;
+        for (int points : courierPoints) {
+            sectors += Math.min(couriers, points);
+            if (sectors >= couriers) {
+                return couriers;
             }
-
-            for (int i = 0; i < couriers; i++) {
-                List<DoublePoint> points = courierRoutes.get(i);
-                if (!points.get(points.size() - 1).equals(clusterCenter)) {
-                    for (Courier courier : pq) {
-                        if (courier.getId() == i) {
-                            addingPointAndDistance(clusterCenter, courier, points);
-                            DoublePoint point = points.get(points.size() - 2);
-                            List<DoublePoint> courierVisitedPoints = courier.getVisitedPoints();
-                            if (!courierVisitedPoints.contains(point)) {
-                                courierVisitedPoints.add(point);
-                                courier.setCountPoints(courierVisitedPoints.size());
-                            }
-                            break;
-                        }
-                    }
-                }
-                else {
-                    points.remove(points.size()-1);
-                }
-            }
-
-//            // Логгирование курьеров
-//            System.out.println("===========================================");
-//            System.out.println("Cluster Center: " + clusterCenter);
-//            System.out.println("Couriers: " + pq.size());
-//            pq.forEach(System.out::println);
-//            System.out.println("===========================================");
-
-            courierRoutes.removeIf(List::isEmpty);
         }
-
-        return courierRoutes;
+        return sectors;
     }
 
-    private void addingPointAndDistance(DoublePoint point, Courier courier, List<DoublePoint> points) {
-//        // Логгирование добавления точки
-//        System.out.println();
-//        System.out.println("Last point in points: " + points.get(points.size()-1));
-//        System.out.println("Point I'm going to add: " + point);
-//        System.out.println();
-        points.add(point);
-        double distanceToAdd = calculateDistance(points.get(points.size() - 2), point);
-        double newDistance = courier.getCurrentDistance() + distanceToAdd;
-        courier.setCurrentDistance(newDistance);
-
-//        //Логирование дистанции курьера
-//        System.out.println();
-//        System.out.println("Курьер " + courier.getId() + " с новой дистанцией " + distanceToAdd);
-//        System.out.println();
+    /**
+     * Наименьшее число задействованных курьеров, при котором конфигурация укладывается в MAX_TIME:
+     * самый загруженный курьер обрабатывает не меньше courierPoints / u точек за время, оставшееся
+     * после склада (available). 0 - курьеры не нужны.
+     */
+    private static int couriersNeeded(int[] courierPoints, double available, Parameters params) {
+        long total = 0;
+        for (int points : courierPoints) {
+            total += points;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        double needed = total * params.getORDER_PROCESSING_TIME() / available;
+        return needed > Integer.MAX_VALUE ? Integer.MAX_VALUE : Math.max(1, (int) Math.ceil(needed - 1e-9));
     }
 
-    private JSONObject createResultGeoJson(OptimizationResult result, JSONObject requestDataJson) throws JSONException {
-        JSONArray optimizedFeatures = new JSONArray();
+    // Расходы и время конфигурации; пробег склада и курьеров считается один раз, маршруты не строятся
+    private ConfigurationCost calculateOptimization(PointSet points, DoublePoint startPoint, Parameters params,
+                                                    SweepConfiguration configuration, SweepState state,
+                                                    ClusteringCache cache, CourierAssigner assigner,
+                                                    TimeWindows windows, ImprovementBudget budget,
+                                                    OptimizationTrace trace) {
+        int couriers = configuration.getCouriers();
+        ClusteringStage stage = clusteringStage(points, startPoint, params, configuration.getClusterCount(),
+                configuration.getClusterRadius(), cache, windows, budget);
+        // Склад не успевает в окна точек, которые обслуживает сам, при любом числе курьеров
+        if (!stage.isOnTime()) {
+            return null;
+        }
+        double mobStorageDistance = stage.getMobStorageDistance();
+
+        // Отсечение до распределения точек по курьерам: маршрут склада уже известен, зарплата -
+        // только задействованных курьеров, и их должно хватить, чтобы уложиться в MAX_TIME
+        double lowerBoundTime = mobStorageDistance / params.getMOB_STORAGE_SPEED()
+                + stage.getSingleClusters() * params.getORDER_PROCESSING_TIME();
+        if (state.exceedsMaxTime(lowerBoundTime)) {
+            return null;
+        }
+        int used = couriersUsed(stage.getCourierPoints(), couriers);
+        if (couriersNeeded(stage.getCourierPoints(), params.getMAX_TIME() - lowerBoundTime, params) > used) {
+            return null;
+        }
+        double lowerBound = lowerBoundExpenses(configuration, params)
+                + params.getFUEL_RATE_MOB_STORAGE() * params.getFUEL_COST() * mobStorageDistance
+                + used * params.getCOURIER_SALARY();
+        if (state.canPrune(lowerBound)) {
+            return null;
+        }
 
-        JSONArray lineCoordinates = new JSONArray();
-        for (DoublePoint point : result.getOptimizedRoute()) {
-            lineCoordinates.put(new JSONArray().put(point.getPoint()[0]).put(point.getPoint()[1]));
+        CourierAssigner.Assignment assignment = metrics.record(OptimizationMetrics.DYNAMIC, PipelineStage.assign,
+                () -> assigner.assign(configuration.getClusterCount(), stage.getClusters(), stage.getArrivals(),
+                        couriers));
+        if (!assignment.isOnTime()) {
+            return null;
         }
-        lineCoordinates.put(new JSONArray()
-                .put(result.getOptimizedRoute().get(0).getPoint()[0])
-                .put(result.getOptimizedRoute().get(0).getPoint()[1]));
 
-        JSONObject lineFeature = createLineFeature(lineCoordinates, "route", "red");
-        optimizedFeatures.put(lineFeature);
+        Timer.Sample costing = metrics.start();
+        double totalExpenses = assignment.totalExpenses(mobStorageDistance, params);
+        double totalTime = assignment.totalTime(mobStorageDistance, stage.getSingleClusters(), params);
+        metrics.stop(costing, OptimizationMetrics.DYNAMIC, PipelineStage.cost);
 
-        for (List<DoublePoint> courierRoute : result.getCourierRoutes()) {
-            JSONArray courierLineCoordinates = new JSONArray();
-            for (DoublePoint point : courierRoute) {
-                courierLineCoordinates.put(new JSONArray().put(point.getPoint()[0]).put(point.getPoint()[1]));
+        if (trace.isEnabled()) {
+            for (int courier : assignment.getCourierOrder()) {
+                trace.courier(configuration.getIndex(), courier, assignment.getDistance(courier),
+                        assignment.getCount(courier));
             }
-            JSONObject courierLineFeature = createLineFeature(courierLineCoordinates, "courier_route", "#000000");
-            optimizedFeatures.put(courierLineFeature);
+            trace.configuration(configuration.getIndex(), configuration.getClusterCount(),
+                    configuration.getClusterRadius(), couriers, totalExpenses, totalTime);
         }
 
-        JSONObject optimizedGeoJson = new JSONObject();
-        optimizedGeoJson.put("type", "FeatureCollection");
-        optimizedGeoJson.put("features", optimizedFeatures);
-
-        JSONObject parametersJson = new JSONObject();
-        parametersJson.put("total_expenses", result.getTotalExpenses());
-        parametersJson.put("total_time", Time.convert(result.getTotalTime()).toJSON());
-        parametersJson.put("optimal_couriers_count", result.getOptimalCouriersCount());
-
-        JSONObject resultJson = new JSONObject();
-        resultJson.put("dynamic_model", optimizedGeoJson);
-        resultJson.put("dynamic_model_parameters", parametersJson);
-        requestDataJson.put("model_type", "dynamic");
-        resultJson.put("request_data", requestDataJson);
-
-        return resultJson;
-    }
-
-    private JSONObject createLineFeature(JSONArray coordinates, String type, String color) throws JSONException {
-        JSONObject feature = new JSONObject();
-        feature.put("type", "Feature");
-        JSONObject geometry = new JSONObject();
-        geometry.put("type", "LineString");
-        geometry.put("coordinates", coordinates);
-        feature.put("geometry", geometry);
-        JSONObject properties = new JSONObject();
-        properties.put("type", type);
-        properties.put("color", color);
-        feature.put("properties", properties);
-        return feature;
+        return new ConfigurationCost(configuration, totalExpenses, totalTime);
     }
 
-    private double calculateTotalExpenses(List<DoublePoint> optimizedRoute, PriorityQueue<Courier> pq, Parameters params) {
-        double totalMobStorageDistance = getTotalMobStorageDistance(optimizedRoute);
-
-        double mobStorageExpenses = params.getFUEL_RATE_MOB_STORAGE() * params.getFUEL_COST() * totalMobStorageDistance
-                + params.getDRIVER_SALARY() + params.getMOB_STORAGE_RATE();
-
-        double courierExpenses = 0;
-        for (Courier courier : pq) {
-            double courierDeliveryTime = courier.getCurrentDistance() / params.getCOURIER_SCOOTER_SPEED();
-            courierExpenses += params.getCOURIER_SALARY() +
-                    courier.getCountPoints() * params.getCOURIER_SCOOTER_RATE() * courierDeliveryTime
-                    + params.getENERGY_CONSUMPTION() * params.getENERGY_CONSUMPTION_COST() * courierDeliveryTime;
+    // Маршруты склада и курьеров лучшей конфигурации; кластеры и маршрут склада берутся из кэша
+    private OptimizationResult buildOptimizationResult(PointSet points, DoublePoint startPoint, Parameters params,
+                                                       SweepConfiguration configuration, ClusteringCache cache,
+                                                       CourierAssigner assigner, TimeWindows windows,
+                                                       ImprovementBudget budget) {
+        int couriers = configuration.getCouriers();
+        ClusteringStage stage = clusteringStage(points, startPoint, params, configuration.getClusterCount(),
+                configuration.getClusterRadius(), cache, windows, budget);
+        CourierAssigner.Assignment assignment = metrics.record(OptimizationMetrics.DYNAMIC, PipelineStage.assign,
+                () -> assigner.assignWithRoutes(configuration.getClusterCount(), stage.getClusters(),
+                        stage.getArrivals(), couriers));
+
+        double mobStorageDistance = stage.getMobStorageDistance();
+        OptimizationResult result = new OptimizationResult(stage.getOptimizedRoute(), assignment.getRoutes(),
+                assignment.totalExpenses(mobStorageDistance, params),
+                assignment.totalTime(mobStorageDistance, stage.getSingleClusters(), params), couriers);
+
+        result.setDistanceMobStorage(mobStorageDistance);
+        List<Double> courierDistances = new ArrayList<>();
+        for (int courier : assignment.getCourierOrder()) {
+            courierDistances.add(assignment.getDistance(courier));
         }
-
-        double totalExpenses = mobStorageExpenses + courierExpenses;
-
-        return Math.round(totalExpenses * 100.0) / 100.0;
+        result.setDistanceCouriers(courierDistances);
+        return result;
     }
 
-    private double calculateTotalTime(List<DoublePoint> optimizedRoute, PriorityQueue<Courier> pq, Parameters params,
-                                      List<CentroidCluster<DoublePoint>> clusters) {
-        double totalMobStorageDistance = getTotalMobStorageDistance(optimizedRoute);
-
-        double mobStorageTime = totalMobStorageDistance / params.getMOB_STORAGE_SPEED();
-
-        double maxCourierTime = 0;
-        for (Courier courier : pq) {
-            double travelTime = courier.getCurrentDistance() / params.getCOURIER_SCOOTER_SPEED();
-            double processingTime = courier.getCountPoints() * params.getORDER_PROCESSING_TIME();
-            maxCourierTime = Math.max(maxCourierTime, travelTime + processingTime);
-        }
+    // Кластеры и маршрут склада для числа кластеров и радиуса; k-means не зависит от числа курьеров
+    private ClusteringStage clusteringStage(PointSet points, DoublePoint startPoint, Parameters params,
+                                            int clusterCount, double clusterRadius, ClusteringCache cache,
+                                            TimeWindows windows, ImprovementBudget budget) {
+        ClusterSplitter splitter = cache.initial(clusterCount, () -> metrics.record(OptimizationMetrics.DYNAMIC,
+                PipelineStage.cluster, () -> initialClustering(points, clusterCount)));
+
+        // Разбиение зависит от того, какие узлы дерева стали кластерами, а не от самого радиуса
+        List<ClusterSplitter.Node> nodes = metrics.record(OptimizationMetrics.DYNAMIC, PipelineStage.cluster,
+                () -> splitter.split(clusterRadius));
+        return cache.stage(clusterCount, nodes, () -> {
+            double[] xs = new double[nodes.size() + 1];
+            double[] ys = new double[nodes.size() + 1];
+            xs[0] = startPoint.getPoint()[0];
+            ys[0] = startPoint.getPoint()[1];
+            int singleClusters = 0;
+            int[] courierPoints = new int[nodes.size()];
+            for (int i = 0; i < nodes.size(); i++) {
+                ClusterSplitter.Node node = nodes.get(i);
+                xs[i + 1] = node.getCenterX();
+                ys[i + 1] = node.getCenterY();
+                if (node.getMembers().length == 1) {
+                    singleClusters++;
+                    continue;
+                }
+                // Точки в центре кластера обслуживает склад, как и в ClusterRouter
+                for (int point : node.getMembers()) {
+                    if (points.getX(point) != node.getCenterX() || points.getY(point) != node.getCenterY()) {
+                        courierPoints[i]++;
+                    }
+                }
+            }
+            PointSet stops = new PointSet(xs, ys);
+            DistanceMatrix distances = new DistanceMatrix(stops);
+            Timer.Sample routing = metrics.start();
+            int[] route = calculateRoute(stops);
+            budget.improve(TourImprover.of(params.getTOUR_IMPROVEMENT()), route, distances);
+            metrics.stop(routing, OptimizationMetrics.DYNAMIC, PipelineStage.route);
+
+            double[] arrivals = windows == null ? null : new double[nodes.size()];
+            boolean onTime = windows == null
+                    || scheduleMobStorage(points, nodes, route, distances, windows, params, arrivals);
+            return new ClusteringStage(nodes, stops, route, stops.toDoublePoints(route),
+                    getTotalMobStorageDistance(route, distances), singleClusters, courierPoints, arrivals, onTime);
+        });
+    }
 
-        for (CentroidCluster<DoublePoint> cluster : clusters) {
-            if (cluster.getPoints().size() == 1) {
-                maxCourierTime += params.getORDER_PROCESSING_TIME();
+    // Время прибытия склада к кластерам по его маршруту. Кластер из одной точки склад обслуживает сам,
+    // дожидаясь открытия окна; точки в центре кластера получают заказ в момент прибытия склада.
+    // Возвращает false, если склад опаздывает к одной из таких точек
+    private boolean scheduleMobStorage(PointSet points, List<ClusterSplitter.Node> nodes, int[] route,
+                                       DistanceMatrix distances, TimeWindows windows, Parameters params,
+                                       double[] arrivals) {
+        boolean onTime = true;
+        double time = 0;
+        for (int k = 1; k < route.length; k++) {
+            time += distances.get(route[k - 1], route[k]) / params.getMOB_STORAGE_SPEED();
+            if (route[k] == 0) {
+                continue;
+            }
+            ClusterSplitter.Node node = nodes.get(route[k] - 1);
+            arrivals[route[k] - 1] = time;
+            int[] members = node.getMembers();
+            if (members.length == 1) {
+                time = Math.max(time, windows.open(members[0]));
+                onTime &= time <= windows.close(members[0]) + RouteSchedule.EPSILON;
+                time += windows.service(members[0]);
+                continue;
+            }
+            for (int point : members) {
+                if (points.getX(point) == node.getCenterX() && points.getY(point) == node.getCenterY()) {
+                    onTime &= time <= windows.close(point) + RouteSchedule.EPSILON;
+                }
             }
         }
-
-        return mobStorageTime + maxCourierTime;
+        return onTime;
     }
 
-    private double getTotalMobStorageDistance(List<DoublePoint> optimizedRoute) {
-        double totalMobStorageDistance = 0;
-        for (int i = 1; i < optimizedRoute.size(); i++) {
-            totalMobStorageDistance += calculateDistance(optimizedRoute.get(i - 1), optimizedRoute.get(i));
+    // k-means по координатам точек и дерево разбиения полученных кластеров по радиусу
+    ClusterSplitter initialClustering(PointSet points, int clusterCount) {
+        int[] members = new int[points.size()];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = i;
         }
-        return totalMobStorageDistance;
-    }
+        int k = Math.min(clusterCount, points.size());
+        int[] assignment = kMeans.cluster(points, members, k, CLUSTERING_SEED).getAssignment();
 
-    private double calculateDistance(DoublePoint point1, DoublePoint point2) {
-        return Math.sqrt(Math.pow(point2.getPoint()[0] - point1.getPoint()[0], 2)
-                + Math.pow(point2.getPoint()[1] - point1.getPoint()[1], 2));
+        int[] sizes = new int[k];
+        for (int cluster : assignment) {
+            sizes[cluster]++;
+        }
+        List<int[]> clusters = new ArrayList<>(k);
+        for (int c = 0; c < k; c++) {
+            clusters.add(new int[sizes[c]]);
+        }
+        int[] filled = new int[k];
+        for (int i = 0; i < assignment.length; i++) {
+            clusters.get(assignment[i])[filled[assignment[i]]++] = i;
+        }
+        return new ClusterSplitter(points, clusters);
     }
 
-    private List<DoublePoint> calculateRoute(DoublePoint startPoint, List<DoublePoint> points) {
-        List<DoublePoint> route = new ArrayList<>();
-        route.add(startPoint);
-
-        Set<DoublePoint> visited = new HashSet<>();
-        visited.add(startPoint);
+    // alternatives - лучшие конфигурации с расходами и временем; пустой список не выводится
+    byte[] writeResultGeoJson(OptimizationResult result, List<ConfigurationCost> alternatives) throws IOException {
+        int pointCount = result.getOptimizedRoute().size() + 1;
+        for (List<DoublePoint> courierRoute : result.getCourierRoutes()) {
+            pointCount += courierRoute.size();
+        }
+        ByteArrayOutputStream buffer = GeoJsonWriter.newBuffer(pointCount, result.getCourierRoutes().size() + 1);
 
-        while (visited.size() < points.size() + 1) {
-            DoublePoint lastPoint = route.get(route.size() - 1);
-            DoublePoint nextPoint = points.stream()
-                    .filter(p -> !visited.contains(p))
-                    .min(Comparator.comparingDouble(p -> calculateDistance(lastPoint, p)))
-                    .orElse(null);
+        try (JsonGenerator json = GeoJsonWriter.createGenerator(buffer)) {
+            json.writeStartObject();
 
-            if (nextPoint != null) {
-                route.add(nextPoint);
-                visited.add(nextPoint);
+            GeoJsonWriter.startFeatureCollection(json, "dynamic_model");
+            GeoJsonWriter.writeLineFeature(json, result.getOptimizedRoute(), true, "route", "red");
+            for (List<DoublePoint> courierRoute : result.getCourierRoutes()) {
+                GeoJsonWriter.writeLineFeature(json, courierRoute, false, "courier_route", "#000000");
+            }
+            GeoJsonWriter.endFeatureCollection(json);
+
+            json.writeObjectFieldStart("dynamic_model_parameters");
+            json.writeNumberField("total_expenses", result.getTotalExpenses());
+            GeoJsonWriter.writeTime(json, "total_time", Time.convert(result.getTotalTime()));
+            json.writeNumberField("optimal_couriers_count", result.getOptimalCouriersCount());
+            if (!alternatives.isEmpty()) {
+                // Первый вариант - решение, маршруты которого выведены выше
+                json.writeArrayFieldStart("alternatives");
+                for (ConfigurationCost alternative : alternatives) {
+                    SweepConfiguration configuration = alternative.getConfiguration();
+                    json.writeStartObject();
+                    json.writeNumberField("total_expenses", alternative.getTotalExpenses());
+                    GeoJsonWriter.writeTime(json, "total_time", Time.convert(alternative.getTotalTime()));
+                    json.writeNumberField("couriers_count", configuration.getCouriers());
+                    json.writeNumberField("clusters_count", configuration.getClusterCount());
+                    // Радиус перебирается с шагом 0.1 и накапливает ошибку округления
+                    json.writeNumberField("cluster_radius", Math.round(configuration.getClusterRadius() * 10) / 10.0);
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
             }
+            json.writeEndObject();
+            json.writeEndObject();
         }
-
-        route.add(startPoint);
-
-        return route;
+        return buffer.toByteArray();
     }
 
-    private List<CentroidCluster<DoublePoint>> ensureMaxClusterRadius(List<CentroidCluster<DoublePoint>> clusters,
-                                                                      KMeansPlusPlusClusterer<DoublePoint> clusterer,
-                                                                      double maxRadius) {
-        List<CentroidCluster<DoublePoint>> newClusters = new ArrayList<>();
-
-        for (CentroidCluster<DoublePoint> cluster : clusters) {
-            List<DoublePoint> clusterPoints = cluster.getPoints();
-            DoublePoint centroid = new DoublePoint(cluster.getCenter().getPoint());
-
-            double maxDistance = clusterPoints.stream()
-                    .mapToDouble(point -> calculateDistance(centroid, point))
-                    .max()
-                    .orElse(0);
+    private double getTotalMobStorageDistance(int[] route, DistanceMatrix distances) {
+        return distances.routeLength(route);
+    }
 
-            if (maxDistance > maxRadius) {
-                newClusters.addAll(clusterer.cluster(clusterPoints));
-            } else {
-                newClusters.add(cluster);
-            }
+    // Маршрут ближайшего соседа из начальной точки (индекс 0) по всем остальным точкам с возвратом
+    int[] calculateRoute(PointSet stops) {
+        int[] candidates = new int[stops.size() - 1];
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = i + 1;
         }
-
-        return newClusters;
+        return NearestNeighbourTour.build(stops, 0, candidates);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,171 @@
+package ru.ivanova.diplom.logistics.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Трассировка одного запроса: события распределения заказов и построения маршрутов, по одной
+ * JSON-строке на событие. Пишется в память и сохраняется в файл при закрытии. Выключенная
+ * трассировка (DISABLED) ничего не делает; перед формированием данных для события вызывающий
+ * код проверяет isEnabled().
+ */
+public class OptimizationTrace implements AutoCloseable {
+
+    public static final OptimizationTrace DISABLED = new OptimizationTrace();
+
+    private static final Logger logger = LoggerFactory.getLogger(OptimizationTrace.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Path file;
+    private final long startNanos;
+    private final ByteArrayOutputStream buffer;
+    private final JsonGenerator json;
+
+    private OptimizationTrace() {
+        this.file = null;
+        this.startNanos = 0;
+        this.buffer = null;
+        this.json = null;
+    }
+
+    OptimizationTrace(Path file, String model) {
+        this.file = file;
+        this.startNanos = System.nanoTime();
+        this.buffer = new ByteArrayOutputStream(8192);
+        try {
+            this.json = JSON_FACTORY.createGenerator(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        json.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        event("start").field("model", model).end();
+    }
+
+    public boolean isEnabled() {
+        return json != null;
+    }
+
+    // Заказ до распределения по курьерам
+    public void order(int id, double volume, int point) {
+        if (json != null) {
+            synchronized (this) {
+                event("order").field("id", id).field("volume", volume).field("point", point).end();
+            }
+        }
+    }
+
+    // Маршрут курьера (индексы точек запроса) после этапа stage
+    public void route(String stage, int courier, int[] route) {
+        if (json != null) {
+            synchronized (this) {
+                event("route").field("stage", stage).field("courier", courier).points(route).end();
+            }
+        }
+    }
+
+    // Итог распределения для курьера в конфигурации перебора
+    public void courier(int configuration, int courier, double distance, int points) {
+        if (json != null) {
+            synchronized (this) {
+                event("courier").field("configuration", configuration).field("courier", courier)
+                        .field("distance", distance).field("points", points).end();
+            }
+        }
+    }
+
+    // Рассчитанная конфигурация перебора динамической модели
+    public void configuration(int index, int clusterCount, double clusterRadius, int couriers, double expenses,
+                              double time) {
+        if (json != null) {
+            synchronized (this) {
+                event("configuration").field("index", index).field("clusters", clusterCount)
+                        .field("radius", clusterRadius).field("couriers", couriers)
+                        .field("expenses", expenses).field("time", time).end();
+            }
+        }
+    }
+
+    // Сохраняет трассировку в файл; ошибка записи не влияет на результат расчета
+    @Override
+    public void close() {
+        if (json == null) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                event("end").end();
+                json.close();
+                Files.createDirectories(file.getParent());
+                Files.write(file, buffer.toByteArray());
+                logger.debug("Трассировка сохранена: {}", file);
+            } catch (IOException e) {
+                logger.warn("Не удалось сохранить трассировку {}", file, e);
+            }
+        }
+    }
+
+    private OptimizationTrace event(String type) {
+        try {
+            json.writeStartObject();
+            json.writeStringField("event", type);
+            json.writeNumberField("t_us", (System.nanoTime() - startNanos) / 1_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    private OptimizationTrace field(String name, int value) {
+        try {
+            json.writeNumberField(name, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    private OptimizationTrace field(String name, double value) {
+        try {
+            json.writeNumberField(name, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    private OptimizationTrace field(String name, String value) {
+        try {
+            json.writeStringField(name, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    private OptimizationTrace points(int[] route) {
+        try {
+            json.writeFieldName("points");
+            json.writeArray(route, 0, route.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    private void end() {
+        try {
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
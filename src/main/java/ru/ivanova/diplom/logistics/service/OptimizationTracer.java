@@ -0,0 +1,45 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Выбор запросов для трассировки. Трассировка включается уровнем DEBUG логгера
+ * ru.ivanova.diplom.logistics.trace и дополнительно ограничивается долей запросов
+ * (optimization.trace.sample-rate). Каждый выбранный расчет пишется в отдельный файл
+ * в каталоге optimization.trace.dir.
+ */
+@Component
+public class OptimizationTracer {
+
+    private static final Logger traceLogger = LoggerFactory.getLogger("ru.ivanova.diplom.logistics.trace");
+
+    private final double sampleRate;
+    private final Path directory;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public OptimizationTracer(@Value("${optimization.trace.sample-rate:1.0}") double sampleRate,
+                              @Value("${optimization.trace.dir:${java.io.tmpdir}/optimization-traces}") String directory) {
+        this.sampleRate = sampleRate;
+        this.directory = Paths.get(directory);
+    }
+
+    // Трассировка расчета модели model; DISABLED, если логгер выключен или запрос не попал в выборку
+    public OptimizationTrace begin(String model) {
+        if (!traceLogger.isDebugEnabled()) {
+            return OptimizationTrace.DISABLED;
+        }
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return OptimizationTrace.DISABLED;
+        }
+        String name = model + '-' + System.currentTimeMillis() + '-' + sequence.incrementAndGet() + ".ndjson";
+        return new OptimizationTrace(directory.resolve(name), model);
+    }
+}
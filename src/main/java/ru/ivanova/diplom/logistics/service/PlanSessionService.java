@@ -0,0 +1,359 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.geometry.DistanceStore;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.Order;
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.model.PlanSession;
+import ru.ivanova.diplom.logistics.routing.Fleet;
+import ru.ivanova.diplom.logistics.routing.ImprovementBudget;
+import ru.ivanova.diplom.logistics.routing.RouteSchedule;
+import ru.ivanova.diplom.logistics.routing.TimeWindows;
+import ru.ivanova.diplom.logistics.routing.TourImprover;
+import ru.ivanova.diplom.logistics.utils.GeoJsonWriter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Сессии пошагового изменения плана статической модели. План строится один раз полным расчетом,
+ * затем заказы добавляются, удаляются и меняют объем без пересчета всего плана: новый заказ
+ * вставляется в самое дешевое допустимое место, затем улучшается только измененный маршрут.
+ * Окна времени и время обслуживания заказов соблюдаются так же, как в полном расчете.
+ * <p>
+ * Ошибки: IllegalArgumentException - неверные данные заказа, NoSuchElementException - заказ
+ * не найден, IllegalStateException - заказ не помещается ни в один маршрут,
+ * RejectedExecutionException - открыто максимальное число сессий.
+ * <p>
+ * Сессия, к которой не обращались дольше ttl, удаляется: при обращении к ней и при создании
+ * новой сессии.
+ */
+@Service
+public class PlanSessionService {
+
+    private final StaticModelService staticModelService;
+    private final DistanceStore distanceStore;
+    private final long ttlMillis;
+    private final int maxSessions;
+    private final Map<String, PlanSession> sessions = new ConcurrentHashMap<>();
+
+    public PlanSessionService(StaticModelService staticModelService, DistanceStore distanceStore,
+                              @Value("${optimization.sessions.ttl-ms:3600000}") long ttlMillis,
+                              @Value("${optimization.sessions.max-count:256}") int maxSessions) {
+        this.staticModelService = staticModelService;
+        this.distanceStore = distanceStore;
+        this.ttlMillis = ttlMillis;
+        this.maxSessions = maxSessions;
+    }
+
+    // Полный расчет статической модели и сохранение плана
+    public PlanSession create(OptimizationRequest request) {
+        removeExpired();
+        // Проверка до полного расчета, чтобы не считать план, который не будет сохранен
+        checkCapacity();
+        Parameters params = request.getParams();
+        Map<Integer, Order> orders = new LinkedHashMap<>();
+        for (Order order : request.getOrders()) {
+            checkVolume(order.getVolume(), params);
+            orders.put(order.getId(), order);
+        }
+
+        DistanceMatrix distances = distanceStore.matrix(request.getPoints());
+        TimeWindows windows = TimeWindows.of(request.getOrders(), request.getPoints().size(), 0,
+                params.getORDER_PROCESSING_TIME());
+        List<int[]> routes = staticModelService.splitRouteForCouriers(distances, request.getOrders(), params,
+                windows, OptimizationTrace.DISABLED);
+        if (staticModelService.calculateTotalTime(routes, distances, params, windows) > params.getMAX_TIME()) {
+            throw new RuntimeException("No valid optimization result found.");
+        }
+
+        double[] volumeByPoint = new double[request.getPoints().size()];
+        for (Order order : request.getOrders()) {
+            volumeByPoint[order.getPointIndex()] += order.getVolume();
+        }
+        double[] loads = new double[routes.size()];
+        for (int r = 0; r < routes.size(); r++) {
+            for (int point : routes.get(r)) {
+                loads[r] += volumeByPoint[point];
+            }
+        }
+
+        PlanSession session = new PlanSession(UUID.randomUUID().toString(), params, request.getRequestData(),
+                orders, routes, loads, distances, windows);
+        synchronized (sessions) {
+            checkCapacity();
+            sessions.put(session.getId(), session);
+        }
+        return session;
+    }
+
+    // Сессия по id; null - сессии нет или она истекла
+    public PlanSession get(String id) {
+        PlanSession session = sessions.get(id);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (isExpired(session, now)) {
+            sessions.remove(id, session);
+            return null;
+        }
+        session.setLastAccess(now);
+        return session;
+    }
+
+    public void close(String id) {
+        sessions.remove(id);
+    }
+
+    // Новый заказ в новой точке (x, y); окно и время обслуживания заказа необязательны
+    public void addOrder(PlanSession session, Order order, double x, double y) {
+        synchronized (session) {
+            if (session.getOrders().containsKey(order.getId())) {
+                throw new IllegalArgumentException("Order " + order.getId() + " already exists");
+            }
+            checkVolume(order.getVolume(), session.getParams());
+            if (order.getTimeWindowStart() != null && order.getTimeWindowEnd() != null
+                    && order.getTimeWindowStart() > order.getTimeWindowEnd()
+                    || order.getServiceTime() != null && order.getServiceTime() < 0) {
+                throw new IllegalArgumentException("Order " + order.getId()
+                        + " has an invalid time window or service time");
+            }
+
+            DistanceMatrix distances = session.getDistances();
+            TimeWindows windows = session.getWindows();
+            int point = distances.size();
+            order.setPointIndex(point);
+            // Временная точка сессии не регистрируется в хранилище: матрица растет на одну строку
+            session.setDistances(distances.append(x, y));
+            session.setWindows(TimeWindows.append(windows, point, order,
+                    session.getParams().getORDER_PROCESSING_TIME()));
+            try {
+                insert(session, point, order.getVolume());
+            } catch (IllegalStateException e) {
+                session.setDistances(distances);
+                session.setWindows(windows);
+                throw e;
+            }
+            session.getOrders().put(order.getId(), order);
+        }
+    }
+
+    public void removeOrder(PlanSession session, int orderId) {
+        synchronized (session) {
+            Order order = order(session, orderId);
+            remove(session, order.getPointIndex(), order.getVolume());
+            session.getOrders().remove(orderId);
+        }
+    }
+
+    // Новый объем заказа; если машина переполнена, заказ переносится в другой маршрут
+    public void changeVolume(PlanSession session, int orderId, double volume) {
+        synchronized (session) {
+            Order order = order(session, orderId);
+            checkVolume(volume, session.getParams());
+            int route = routeOf(session, order.getPointIndex());
+            double[] loads = session.getLoads();
+            Fleet fleet = Fleet.of(session.getParams());
+            if (loads[route] - order.getVolume() + volume <= fleet.capacity(fleet.typeOf(route))) {
+                loads[route] += volume - order.getVolume();
+                order.setVolume(volume);
+                return;
+            }
+
+            int[] before = session.getRoutes().get(route);
+            remove(session, order.getPointIndex(), order.getVolume());
+            try {
+                insert(session, order.getPointIndex(), volume);
+            } catch (IllegalStateException e) {
+                session.getRoutes().set(route, before);
+                loads[route] += order.getVolume();
+                throw e;
+            }
+            order.setVolume(volume);
+        }
+    }
+
+    // Текущий план в том же формате, что и результат статической модели
+    public byte[] result(PlanSession session) {
+        synchronized (session) {
+            Parameters params = session.getParams();
+            List<int[]> routes = session.getRoutes();
+            DistanceMatrix distances = session.getDistances();
+            double totalExpenses = staticModelService.calculateTotalExpenses(routes, distances, params);
+            double totalTime = staticModelService.calculateTotalTime(routes, distances, params,
+                    session.getWindows());
+            try {
+                byte[] result = staticModelService.writeResultGeoJson(routes, distances.getPoints(), totalExpenses,
+                        totalTime, params);
+                return GeoJsonWriter.withRequestData(result, session.getRequestData(), "static");
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write optimization result", e);
+            }
+        }
+    }
+
+    /**
+     * Вставка точки в самое дешевое по расходам место среди маршрутов, где хватает вместимости
+     * и времени. Незадействованная машина рассматривается как маршрут [склад, склад].
+     * С окнами время маршрута со вставкой проверяется по расписанию ({@link RouteSchedule}).
+     */
+    private void insert(PlanSession session, int point, double volume) {
+        Parameters params = session.getParams();
+        DistanceMatrix distances = session.getDistances();
+        TimeWindows windows = session.getWindows();
+        List<int[]> routes = session.getRoutes();
+        double[] loads = session.getLoads();
+        Fleet fleet = Fleet.of(params);
+
+        int bestRoute = -1;
+        int bestPosition = -1;
+        double bestDelta = Double.POSITIVE_INFINITY;
+        for (int r = 0; r < routes.size(); r++) {
+            int type = fleet.typeOf(r);
+            if (loads[r] + volume > fleet.capacity(type)) {
+                continue;
+            }
+            int[] route = routes.get(r);
+            if (route.length == 0) {
+                // Незадействованная машина добавляет свои постоянные расходы
+                double delta = fleet.cost(type, 2 * distances.get(0, point));
+                if (delta < bestDelta && isOnTime(session, fleet.speed(type), 2 * distances.get(0, point), 3,
+                        windows == null ? null : new int[]{0, point, 0})) {
+                    bestRoute = r;
+                    bestPosition = 1;
+                    bestDelta = delta;
+                }
+                continue;
+            }
+            double length = distances.routeLength(route);
+            for (int k = 1; k < route.length; k++) {
+                double added = distances.get(route[k - 1], point) + distances.get(point, route[k])
+                        - distances.get(route[k - 1], route[k]);
+                double delta = fleet.costPerKm(type) * added;
+                if (delta < bestDelta && isOnTime(session, fleet.speed(type), length + added, route.length + 1,
+                        windows == null ? null : inserted(route, k, point))) {
+                    bestRoute = r;
+                    bestPosition = k;
+                    bestDelta = delta;
+                }
+            }
+        }
+        if (bestRoute < 0) {
+            throw new IllegalStateException("Order does not fit into any courier route");
+        }
+
+        int[] route = routes.get(bestRoute);
+        if (route.length == 0) {
+            route = new int[]{0, 0};
+        }
+        int[] updated = inserted(route, bestPosition, point);
+        improve(session, updated, fleet.speed(fleet.typeOf(bestRoute)));
+        routes.set(bestRoute, updated);
+        loads[bestRoute] += volume;
+    }
+
+    private static int[] inserted(int[] route, int position, int point) {
+        int[] updated = new int[route.length + 1];
+        System.arraycopy(route, 0, updated, 0, position);
+        updated[position] = point;
+        System.arraycopy(route, position, updated, position + 1, route.length - position);
+        return updated;
+    }
+
+    private void remove(PlanSession session, int point, double volume) {
+        int r = routeOf(session, point);
+        int[] route = session.getRoutes().get(r);
+        int[] updated = new int[route.length - 1];
+        int k = 0;
+        for (int p : route) {
+            if (p != point) {
+                updated[k++] = p;
+            }
+        }
+        if (updated.length <= 2) {
+            updated = new int[0];
+        } else {
+            Fleet fleet = Fleet.of(session.getParams());
+            improve(session, updated, fleet.speed(fleet.typeOf(r)));
+        }
+        session.getRoutes().set(r, updated);
+        session.getLoads()[r] -= volume;
+    }
+
+    // Локальное улучшение одного маршрута; удаление точки и вставка не ухудшают время.
+    // С окнами улучшение, нарушающее окно, отменяется, как и в полном расчете
+    private void improve(PlanSession session, int[] route, double speed) {
+        Parameters params = session.getParams();
+        int[] original = session.getWindows() == null ? null : route.clone();
+        new ImprovementBudget(params.getTOUR_IMPROVEMENT_TIME_LIMIT()).improve(
+                TourImprover.of(params.getTOUR_IMPROVEMENT()), route, session.getDistances());
+        if (original != null && RouteSchedule.finishTime(route, session.getDistances(), speed,
+                session.getWindows()) > params.getMAX_TIME()) {
+            System.arraycopy(original, 0, route, 0, route.length);
+        }
+    }
+
+    private int routeOf(PlanSession session, int point) {
+        List<int[]> routes = session.getRoutes();
+        for (int r = 0; r < routes.size(); r++) {
+            int[] route = routes.get(r);
+            for (int k = 1; k < route.length - 1; k++) {
+                if (route[k] == point) {
+                    return r;
+                }
+            }
+        }
+        throw new IllegalStateException("Order point " + point + " is not in the plan");
+    }
+
+    private static Order order(PlanSession session, int orderId) {
+        Order order = session.getOrders().get(orderId);
+        if (order == null) {
+            throw new NoSuchElementException("Order " + orderId + " not found");
+        }
+        return order;
+    }
+
+    private static void checkVolume(double volume, Parameters params) {
+        if (volume < 0 || volume > params.getMAX_DELIVERY_CAPACITY()
+                || volume > Fleet.of(params).maxCapacity()) {
+            throw new IllegalArgumentException("Order volume must be non-negative and fit a courier car");
+        }
+    }
+
+    // Время маршрута как в calculateTotalTime: без окон - проезд длины length со скоростью машины
+    // и обработка positions позиций, с окнами - завершение по расписанию маршрута route
+    private static boolean isOnTime(PlanSession session, double speed, double length, int positions, int[] route) {
+        Parameters params = session.getParams();
+        if (session.getWindows() == null) {
+            return length / speed + positions * params.getORDER_PROCESSING_TIME() <= params.getMAX_TIME();
+        }
+        return RouteSchedule.finishTime(route, session.getDistances(), speed, session.getWindows())
+                <= params.getMAX_TIME();
+    }
+
+    private void removeExpired() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> isExpired(session, now));
+    }
+
+    private boolean isExpired(PlanSession session, long now) {
+        return now - session.getLastAccess() > ttlMillis;
+    }
+
+    private void checkCapacity() {
+        if (sessions.size() >= maxSessions) {
+            throw new RejectedExecutionException("Too many plan sessions, close unused ones or try again later.");
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package ru.ivanova.diplom.logistics.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.ivanova.diplom.logistics.service.RabbitMQSender.OutgoingMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Асинхронная отправка результатов в RabbitMQ. Сообщения кладутся в ограниченный буфер
+ * и сразу возвращают управление потоку расчета; отдельный поток забирает их пачками
+ * до batchSize, при необходимости сжимает тело (gzip, заголовок content-encoding) и отправляет
+ * пачку через один канал. Если у соединения включены подтверждения публикации
+ * (spring.rabbitmq.publisher-confirm-type=simple), пачка считается отправленной после
+ * подтверждения брокера; при ошибке отправка пачки повторяется с растущей паузой
+ * (доставка не менее одного раза: часть пачки может быть отправлена повторно).
+ * <p>
+ * Работает с любым {@link AmqpTemplate}, поэтому вместо брокера можно подставить заглушку.
+ * Метрики: optimization.publish.latency (от постановки в буфер до подтверждения),
+ * optimization.publish.unconfirmed (в буфере и в отправке), optimization.publish.messages
+ * (тег result: confirmed, failed, rejected), optimization.publish.retries.
+ */
+@Component
+public class PublishPipeline implements DisposableBean {
+
+    public static final String GZIP = "gzip";
+
+    private static final Logger logger = LoggerFactory.getLogger(PublishPipeline.class);
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+
+    private final AmqpTemplate amqpTemplate;
+    private final BlockingQueue<Pending> buffer;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final long confirmTimeoutMillis;
+    private final long offerTimeoutMillis;
+    private final String compression;
+    private final int compressionMinBytes;
+    private final AtomicInteger unconfirmed = new AtomicInteger();
+    private final Thread publisher;
+    private volatile boolean running = true;
+
+    private final Timer latency;
+    private final Counter confirmed;
+    private final Counter failed;
+    private final Counter rejected;
+    private final Counter retries;
+
+    public PublishPipeline(AmqpTemplate amqpTemplate, MeterRegistry registry,
+                           @Value("${optimization.publish.buffer-capacity:256}") int bufferCapacity,
+                           @Value("${optimization.publish.batch-size:16}") int batchSize,
+                           @Value("${optimization.publish.max-attempts:5}") int maxAttempts,
+                           @Value("${optimization.publish.retry-backoff-ms:200}") long retryBackoffMillis,
+                           @Value("${optimization.publish.confirm-timeout-ms:10000}") long confirmTimeoutMillis,
+                           @Value("${optimization.publish.offer-timeout-ms:1000}") long offerTimeoutMillis,
+                           @Value("${optimization.publish.compression:none}") String compression,
+                           @Value("${optimization.publish.compression-min-bytes:4096}") int compressionMinBytes) {
+        if (!compression.equals("none") && !compression.equals(GZIP)) {
+            throw new IllegalArgumentException("Unsupported publish compression: " + compression);
+        }
+        this.amqpTemplate = amqpTemplate;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.confirmTimeoutMillis = confirmTimeoutMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.compression = compression;
+        this.compressionMinBytes = compressionMinBytes;
+
+        this.latency = Timer.builder("optimization.publish.latency")
+                .description("Время от постановки сообщения в буфер до подтверждения отправки")
+                .register(registry);
+        Gauge.builder("optimization.publish.unconfirmed", unconfirmed, AtomicInteger::get)
+                .description("Сообщения в буфере и в отправке без подтверждения")
+                .register(registry);
+        this.confirmed = registry.counter("optimization.publish.messages", "result", "confirmed");
+        this.failed = registry.counter("optimization.publish.messages", "result", "failed");
+        this.rejected = registry.counter("optimization.publish.messages", "result", "rejected");
+        this.retries = registry.counter("optimization.publish.retries");
+
+        this.publisher = new Thread(this::run, "rabbit-publisher");
+        this.publisher.setDaemon(true);
+        this.publisher.start();
+    }
+
+    /**
+     * Ставит сообщение в буфер. Если буфер заполнен дольше offerTimeoutMillis, сообщение
+     * не принимается.
+     *
+     * @throws IllegalStateException если буфер заполнен или отправка остановлена
+     */
+    public void submit(OutgoingMessage message) {
+        Pending pending = new Pending(message, System.nanoTime());
+        // Счетчик растет до постановки в буфер, чтобы flush не завершился раньше отправки
+        unconfirmed.incrementAndGet();
+        boolean accepted = false;
+        try {
+            accepted = running && buffer.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!accepted) {
+            unconfirmed.decrementAndGet();
+            rejected.increment();
+            throw new IllegalStateException("Publish buffer is full, message to '" + message.queueName()
+                    + "' rejected");
+        }
+    }
+
+    /**
+     * Ожидает отправки всех принятых сообщений.
+     *
+     * @return true, если все сообщения отправлены (или окончательно не отправлены) за timeoutMillis
+     */
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (unconfirmed.get() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    public int getUnconfirmed() {
+        return unconfirmed.get();
+    }
+
+    // Новые сообщения не принимаются, оставшиеся в буфере отправляются до confirmTimeoutMillis
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (!flush(confirmTimeoutMillis)) {
+            logger.warn("Не отправлено сообщений при остановке: {}", unconfirmed.get());
+            publisher.interrupt();
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !buffer.isEmpty()) {
+                Pending first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                try {
+                    publishWithRetry(batch);
+                } catch (RuntimeException e) {
+                    failed.increment(batch.size());
+                    logger.error("Не удалось подготовить {} сообщений к отправке", batch.size(), e);
+                }
+                unconfirmed.addAndGet(-batch.size());
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // Остановка приложения: неотправленные сообщения теряются
+            buffer.drainTo(batch);
+            failed.increment(batch.size());
+            unconfirmed.addAndGet(-batch.size());
+            logger.warn("Отправка остановлена, потеряно сообщений: {}", batch.size());
+        }
+    }
+
+    private void publishWithRetry(List<Pending> batch) throws InterruptedException {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            messages.add(toMessage(pending.message()));
+        }
+        long backoff = retryBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                publish(batch, messages);
+                long now = System.nanoTime();
+                for (Pending pending : batch) {
+                    latency.record(now - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+                }
+                confirmed.increment(batch.size());
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts) {
+                    failed.increment(batch.size());
+                    logger.error("Не удалось отправить {} сообщений за {} попыток", batch.size(), attempt, e);
+                    return;
+                }
+                retries.increment();
+                logger.warn("Ошибка отправки {} сообщений, попытка {} из {}: {}", batch.size(), attempt,
+                        maxAttempts, e.getMessage());
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    // Пачка отправляется через один канал; подтверждения ожидаются для всей пачки сразу
+    private void publish(List<Pending> batch, List<Message> messages) {
+        if (!(amqpTemplate instanceof RabbitOperations rabbitOperations)) {
+            for (int i = 0; i < batch.size(); i++) {
+                amqpTemplate.send(batch.get(i).message().queueName(), messages.get(i));
+            }
+            return;
+        }
+        boolean confirms = rabbitOperations.getConnectionFactory().isSimplePublisherConfirms();
+        rabbitOperations.invoke(operations -> {
+            for (int i = 0; i < batch.size(); i++) {
+                operations.send(batch.get(i).message().queueName(), messages.get(i));
+            }
+            if (confirms) {
+                operations.waitForConfirmsOrDie(confirmTimeoutMillis);
+            }
+            return null;
+        });
+    }
+
+    private Message toMessage(OutgoingMessage message) {
+        MessageProperties properties = new MessageProperties();
+        message.headers().forEach(properties::setHeader);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        byte[] body = message.body();
+        if (GZIP.equals(compression) && body.length >= compressionMinBytes) {
+            body = gzip(body);
+            properties.setContentEncoding(GZIP);
+        } else {
+            properties.setContentEncoding(StandardCharsets.UTF_8.name());
+        }
+        return MessageBuilder.withBody(body).andProperties(properties).build();
+    }
+
+    // Быстрое сжатие: GeoJSON с координатами сжимается в несколько раз уже на первом уровне
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        }) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private record Pending(OutgoingMessage message, long enqueuedAt) {
+    }
+}
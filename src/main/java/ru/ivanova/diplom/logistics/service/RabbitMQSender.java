@@ -2,38 +2,44 @@ package ru.ivanova.diplom.logistics.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.core.AmqpTemplate;
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageBuilder;
-import org.springframework.amqp.core.MessageProperties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Map;
 
+// Отправка результатов в RabbitMQ через асинхронный конвейер: поток расчета не ждет брокера
 @Service
 public class RabbitMQSender {
 
     private static final Logger logger = LoggerFactory.getLogger(RabbitMQSender.class);
-    private final AmqpTemplate amqpTemplate;
+    private final PublishPipeline pipeline;
 
     @Autowired
-    public RabbitMQSender(AmqpTemplate amqpTemplate) {
-        this.amqpTemplate = amqpTemplate;
+    public RabbitMQSender(PublishPipeline pipeline) {
+        this.pipeline = pipeline;
     }
 
-    public void send(String queueName, String message, Map<String, Object> headers) {
-        MessageProperties messageProperties = new MessageProperties();
-        headers.forEach(messageProperties::setHeader);
-        Message rabbitMessage = MessageBuilder.withBody(message.getBytes())
-                .andProperties(messageProperties)
-                .build();
-
+    /**
+     * Тело сообщения - готовый JSON в UTF-8, тот же массив, что уходит в ответ HTTP.
+     *
+     * @throws IllegalStateException если буфер отправки заполнен
+     */
+    public void send(String queueName, byte[] message, Map<String, Object> headers) {
         // Логирование сообщения
-        logger.debug("Отправка сообщения в очередь '{}': {}", queueName, message);
+        logger.debug("Отправка сообщения в очередь '{}': {} байт", queueName, message.length);
         logger.debug("Заголовки: {}", headers);
 
+        pipeline.submit(new OutgoingMessage(queueName, message, headers));
+    }
+
+    // Сообщения пакета ставятся в буфер подряд и уходят общими пачками
+    public void sendBatch(List<OutgoingMessage> messages) {
+        logger.debug("Отправка пакета из {} сообщений", messages.size());
+        messages.forEach(pipeline::submit);
+    }
 
-        amqpTemplate.convertAndSend(queueName, rabbitMessage);
+    // Сообщение для отправки
+    public record OutgoingMessage(String queueName, byte[] body, Map<String, Object> headers) {
     }
 }
@@ -0,0 +1,96 @@
+package ru.ivanova.diplom.logistics.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Кэш результатов моделей по каноническому хэшу запроса (OptimizationRequest.getFingerprint).
+ * Хранит результат без request_data. Записи вытесняются по давности использования при
+ * превышении max-entries и удаляются по истечении ttl-ms; max-entries = 0 отключает кэш.
+ * Метрики: optimization.cache.requests{model,result=hit|miss}, optimization.cache.evictions,
+ * optimization.cache.size.
+ */
+@Component
+public class ResultCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final MeterRegistry registry;
+    private final Counter evictions;
+    // Порядок доступа: первая запись - давно не использованная
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public ResultCache(@Value("${optimization.cache.max-entries:256}") int maxEntries,
+                       @Value("${optimization.cache.ttl-ms:600000}") long ttlMillis,
+                       MeterRegistry registry) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.registry = registry;
+        this.evictions = Counter.builder("optimization.cache.evictions").register(registry);
+        Gauge.builder("optimization.cache.size", this, ResultCache::size).register(registry);
+    }
+
+    // Результат модели model для запроса с хэшем fingerprint или null
+    public byte[] get(String model, String fingerprint) {
+        if (maxEntries <= 0) {
+            return null;
+        }
+        byte[] result = null;
+        synchronized (entries) {
+            String key = model + ':' + fingerprint;
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (System.currentTimeMillis() - entry.createdAt <= ttlMillis) {
+                    result = entry.result;
+                } else {
+                    entries.remove(key);
+                    evictions.increment();
+                }
+            }
+        }
+        registry.counter("optimization.cache.requests", "model", model, "result", result != null ? "hit" : "miss")
+                .increment();
+        return result;
+    }
+
+    public void put(String model, String fingerprint, byte[] result) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.put(model + ':' + fingerprint, new Entry(result, now));
+            removeExpired(now);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void removeExpired(long now) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().createdAt > ttlMillis) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private record Entry(byte[] result, long createdAt) {
+    }
+}
@@ -1,44 +1,103 @@
 package ru.ivanova.diplom.logistics.service;
 
-import org.apache.commons.math3.ml.clustering.DoublePoint;
-import org.apache.commons.math3.ml.distance.EuclideanDistance;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.ivanova.diplom.logistics.config.RabbitConfig;
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.geometry.DistanceStore;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
 import ru.ivanova.diplom.logistics.model.*;
-import ru.ivanova.diplom.logistics.utils.JsonUtils;
-
+import ru.ivanova.diplom.logistics.routing.Fleet;
+import ru.ivanova.diplom.logistics.routing.ImprovementBudget;
+import ru.ivanova.diplom.logistics.routing.RouteSchedule;
+import ru.ivanova.diplom.logistics.routing.SavingsVrpSolver;
+import ru.ivanova.diplom.logistics.routing.TimeWindows;
+import ru.ivanova.diplom.logistics.routing.TourImprover;
+import ru.ivanova.diplom.logistics.utils.GeoJsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.*;
 
 @Service
 public class StaticModelService {
 
     private final RabbitMQSender rabbitMQSender;
+    private final OptimizationMetrics metrics;
+    private final OptimizationTracer tracer;
+    private final ResultCache resultCache;
+    private final DistanceStore distanceStore;
 
     @Autowired
-    public StaticModelService(RabbitMQSender rabbitMQSender) {
+    public StaticModelService(RabbitMQSender rabbitMQSender, OptimizationMetrics metrics,
+                              OptimizationTracer tracer, ResultCache resultCache, DistanceStore distanceStore) {
         this.rabbitMQSender = rabbitMQSender;
+        this.metrics = metrics;
+        this.tracer = tracer;
+        this.resultCache = resultCache;
+        this.distanceStore = distanceStore;
+    }
+
+    public byte[] optimizeCourierRoutes(OptimizationRequest request) {
+        boolean success = false;
+        try {
+            byte[] resultJson = buildResult(request);
+
+            // Отправка JSON в RabbitMQ с заголовками
+            metrics.record(OptimizationMetrics.STATIC, PipelineStage.publish,
+                    () -> rabbitMQSender.send(RabbitConfig.QUEUE_NAME, resultJson, headers()));
+            success = true;
+            return resultJson;
+        } finally {
+            metrics.outcome(OptimizationMetrics.STATIC, success);
+        }
     }
 
-    public JSONObject optimizeCourierRoutes(JSONObject geoJson, Parameters params, JSONArray ordersArray,
-                                            JSONObject requestDataJson) {
+    // Результат с request_data без отправки в RabbitMQ (пакетный режим отправляет результаты сам)
+    public byte[] buildResult(OptimizationRequest request) {
         try {
-            List<DoublePoint> points = extractPointsFromGeoJson(geoJson);
-            DoublePoint startPoint = points.remove(0); // Начальная точка - первый элемент
+            // Повторный запрос с теми же точками, заказами и параметрами не пересчитывается
+            byte[] result = resultCache.get(OptimizationMetrics.STATIC, request.getFingerprint());
+            if (result == null) {
+                long limit = request.getParams().getTOUR_IMPROVEMENT_TIME_LIMIT();
+                ImprovementBudget solveBudget = new ImprovementBudget(limit);
+                ImprovementBudget routeBudget = new ImprovementBudget(limit);
+                result = calculateResult(request, solveBudget, routeBudget);
+                // Улучшение, прерванное по времени, зависит от скорости расчета - такой результат не кэшируется
+                if (!solveBudget.isExhausted() && !routeBudget.isExhausted()) {
+                    resultCache.put(OptimizationMetrics.STATIC, request.getFingerprint(), result);
+                }
+            }
+            return GeoJsonWriter.withRequestData(result, request.getRequestData(), "static");
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write optimization result", e);
+        }
+    }
+
+    // Заголовки сообщения RabbitMQ с результатом модели
+    public static Map<String, Object> headers() {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("type", "static");
+        return headers;
+    }
+
+    // Расчет и сериализация результата модели без request_data
+    private byte[] calculateResult(OptimizationRequest request, ImprovementBudget solveBudget,
+                                   ImprovementBudget routeBudget) throws IOException {
+        OptimizationTrace trace = tracer.begin(OptimizationMetrics.STATIC);
+        try {
+            Parameters params = request.getParams();
+            PointSet pointSet = request.getPoints(); // Начальная точка - индекс 0
 
             //Получаем список заказов
-            List<Order> orders = JsonUtils.convertJsonArrayToOrderList(ordersArray);
+            List<Order> orders = request.getOrders();
 
             // Связываем заказы с соответствующими пунктами выдачи
-            int i = 0;
             for (Order order : orders) {
-                if (order != null) {
-                    order.setPickupPoint(points.get(i++));
-                }
+                order.setPickupPoint(pointSet.toDoublePoint(order.getPointIndex()));
             }
 
             //Проверка на максимально возможный объем товара для одного пункта выдачи
@@ -47,46 +106,27 @@ public class StaticModelService {
             }
 
             // Разделить маршрут между курьерами с учетом ограничений
-            List<List<DoublePoint>> courierRoutes = splitRouteForCouriers(startPoint, orders, params);
-
-            double totalExpenses = calculateTotalExpenses(courierRoutes, params);
-            double totalTime = calculateTotalTime(courierRoutes, params);
-
-            OptimizationResult result = new OptimizationResult(courierRoutes, totalExpenses, totalTime);
-
-            if (result.getTotalTime() <= params.getMAX_TIME()) {
-                JSONObject resultJson = createResultGeoJson(result, params, requestDataJson);
-
-                // Подготовка заголовков
-                Map<String, Object> headers = new HashMap<>();
-                headers.put("type", "static");
-
-                // Отправка JSON в RabbitMQ с заголовками
-                rabbitMQSender.send(RabbitConfig.QUEUE_NAME, resultJson.toString(), headers);
-                return resultJson;
+            DistanceMatrix distances = distanceStore.matrix(pointSet);
+            TimeWindows windows = TimeWindows.of(orders, pointSet.size(), 0, params.getORDER_PROCESSING_TIME());
+            List<int[]> courierRoutes = splitRouteForCouriers(distances, orders, params, windows, solveBudget,
+                    routeBudget, trace);
+
+            Timer.Sample costing = metrics.start();
+            double totalExpenses = calculateTotalExpenses(courierRoutes, distances, params);
+            double totalTime = calculateTotalTime(courierRoutes, distances, params, windows);
+            metrics.stop(costing, OptimizationMetrics.STATIC, PipelineStage.cost);
+
+            if (totalTime <= params.getMAX_TIME()) {
+                Timer.Sample serialization = metrics.start();
+                byte[] result = writeResultGeoJson(courierRoutes, pointSet, totalExpenses, totalTime, params);
+                metrics.stop(serialization, OptimizationMetrics.STATIC, PipelineStage.serialize);
+                return result;
             } else {
                 throw new RuntimeException("No valid optimization result found.");
             }
-        } catch (JSONException e) {
-            e.printStackTrace();
-            return new JSONObject();
-        }
-    }
-
-    private List<DoublePoint> extractPointsFromGeoJson(JSONObject geoJson) throws JSONException {
-        JSONArray features = geoJson.getJSONArray("features");
-        List<DoublePoint> points = new ArrayList<>();
-
-        for (int i = 0; i < features.length(); i++) {
-            JSONObject feature = features.getJSONObject(i);
-            JSONObject geometry = feature.getJSONObject("geometry");
-            JSONArray coordinates = geometry.getJSONArray("coordinates");
-            double x = coordinates.getDouble(0);
-            double y = coordinates.getDouble(1);
-            points.add(new DoublePoint(new double[]{x, y}));
+        } finally {
+            trace.close();
         }
-
-        return points;
     }
 
     private boolean isEqualOrLessThanMaxDeliveryCapacity(List<Order> orders, Parameters params) {
@@ -98,187 +138,184 @@ public class StaticModelService {
         return true;
     }
 
-    private List<List<DoublePoint>> splitRouteForCouriers(DoublePoint startPoint,
-                                                          List<Order> orders, Parameters params) {
-        int maxCourierCount = params.getMAX_COUNT_COURIERS();
-        double maxCourierCapacity = params.getMAX_COURIER_CAR_CAPACITY();
-
-        // Sort orders by volume in descending order
-        orders.sort((o1, o2) -> Double.compare(o2.getVolume(), o1.getVolume()));
-
-        //Логирование orders
-        for (Order order: orders) {
-            System.out.println("Order " + order.getId());
-            System.out.println("Volume " + order.getVolume());
-            System.out.println("PickupPoint " + order.getPickupPoint());
-        }
-
-        PriorityQueue<Courier> pq = initializeCouriers(params.getMAX_COUNT_COURIERS());
+    List<int[]> splitRouteForCouriers(DistanceMatrix distances, List<Order> orders, Parameters params,
+                                      OptimizationTrace trace) {
+        return splitRouteForCouriers(distances, orders, params, null, trace);
+    }
 
-        // List of courier routes
-        List<List<DoublePoint>> courierRoutes = new ArrayList<>();
+    // Распределение и улучшение маршрутов с отдельными бюджетами TOUR_IMPROVEMENT_TIME_LIMIT
+    List<int[]> splitRouteForCouriers(DistanceMatrix distances, List<Order> orders, Parameters params,
+                                      TimeWindows windows, OptimizationTrace trace) {
+        long limit = params.getTOUR_IMPROVEMENT_TIME_LIMIT();
+        return splitRouteForCouriers(distances, orders, params, windows, new ImprovementBudget(limit),
+                new ImprovementBudget(limit), trace);
+    }
 
-        for (int i = 0; i < maxCourierCount; i++) {
-            courierRoutes.add(new ArrayList<>());
+    /**
+     * Маршруты по номерам машин парка ({@link Fleet}): элемент v - маршрут машины v,
+     * пустой массив - машина не задействована. windows - окна времени по номерам точек
+     * или null, если в запросе их нет. Время локального поиска при распределении заказов
+     * ограничено solveBudget, улучшения маршрутов - routeBudget: один этап не отнимает
+     * время у другого.
+     */
+    List<int[]> splitRouteForCouriers(DistanceMatrix distances, List<Order> orders, Parameters params,
+                                      TimeWindows windows, ImprovementBudget solveBudget,
+                                      ImprovementBudget routeBudget, OptimizationTrace trace) {
+        Fleet fleet = Fleet.of(params);
+
+        // Трассировка заказов (только для запросов, выбранных для трассировки)
+        if (trace.isEnabled()) {
+            for (Order order : orders) {
+                trace.order(order.getId(), order.getVolume(), order.getPointIndex());
+            }
         }
 
-        // Assign orders to couriers
-        for (Order order : orders) {
-            // Логирование очереди курьеров
-            System.out.println();
-            System.out.println("Очередь курьеров для заказа " + order.getId());
-            pq.forEach(System.out::println);
-            assignOrdersToCouriers(maxCourierCapacity, pq, courierRoutes, order);
-            // Логирование очереди курьеров
-            System.out.println();
-            System.out.println("Очередь курьеров после заказа " + order.getId());
-            pq.forEach(System.out::println);
+        int[] customerPoints = new int[orders.size()];
+        double[] volumes = new double[orders.size()];
+        for (int i = 0; i < customerPoints.length; i++) {
+            customerPoints[i] = orders.get(i).getPointIndex();
+            volumes[i] = orders.get(i).getVolume();
         }
 
-        // Solve TSP for each courier route
-        for (List<DoublePoint> route : courierRoutes) {
-            if (!route.isEmpty()) {
-                route.add(0, startPoint); // Add start point at the beginning
-                route.add(startPoint); // Add start point at the end
-                List<DoublePoint> optimizedRoute = solveTSP(route);
-                route.clear();
-                route.addAll(optimizedRoute);
+        // Разделение заказов между курьерами с учетом вместимости машины и максимального времени
+        SavingsVrpSolver solver = new SavingsVrpSolver(distances, 0, customerPoints, volumes, fleet,
+                params.getMAX_TIME(), params.getORDER_PROCESSING_TIME(), windows);
+        List<int[]> solvedRoutes = metrics.record(OptimizationMetrics.STATIC, PipelineStage.assign,
+                () -> solver.solve(solveBudget));
+        int[] types = solver.getRouteTypes();
+        traceRoutes(trace, PipelineStage.assign, solvedRoutes);
+
+        // Улучшение порядка обхода внутри каждого маршрута
+        TourImprover tourImprover = TourImprover.of(params.getTOUR_IMPROVEMENT());
+        metrics.record(OptimizationMetrics.STATIC, PipelineStage.route, () -> {
+            for (int i = 0; i < solvedRoutes.size(); i++) {
+                int[] route = solvedRoutes.get(i);
+                if (windows == null) {
+                    routeBudget.improve(tourImprover, route, distances);
+                    continue;
+                }
+                // Улучшение сокращает длину, но может нарушить окна - тогда порядок остается прежним
+                int[] original = route.clone();
+                routeBudget.improve(tourImprover, route, distances);
+                if (RouteSchedule.finishTime(route, distances, fleet.speed(types[i]), windows)
+                        == Double.POSITIVE_INFINITY) {
+                    System.arraycopy(original, 0, route, 0, route.length);
+                }
             }
+        });
+        traceRoutes(trace, PipelineStage.route, solvedRoutes);
+
+        // Маршрут занимает следующую свободную машину своего типа, незадействованные машины
+        // остаются с пустыми маршрутами
+        List<int[]> courierRoutes = new ArrayList<>(fleet.vehicles());
+        for (int v = 0; v < fleet.vehicles(); v++) {
+            courierRoutes.add(new int[0]);
+        }
+        int[] nextVehicle = new int[fleet.types()];
+        for (int t = 0; t < nextVehicle.length; t++) {
+            nextVehicle[t] = fleet.firstVehicle(t);
+        }
+        for (int i = 0; i < solvedRoutes.size(); i++) {
+            courierRoutes.set(nextVehicle[types[i]]++, solvedRoutes.get(i));
         }
-
         return courierRoutes;
     }
 
-    private void assignOrdersToCouriers(double maxCourierCapacity, PriorityQueue<Courier> pq,
-                                        List<List<DoublePoint>> courierRoutes, Order order) {
-        Courier courier = pq.poll();
-        if (courier.getCurrentDistance() + order.getVolume() <= maxCourierCapacity) {
-            List<DoublePoint> points = courierRoutes.get(courier.getId());
-            DoublePoint point = order.getPickupPoint();
-            points.add(point);
-            courier.setCurrentDistance(courier.getCurrentDistance() + order.getVolume());
-            courier.getVisitedPoints().add(point);
-            courier.setCountPoints(courier.getVisitedPoints().size());
+    private void traceRoutes(OptimizationTrace trace, PipelineStage stage, List<int[]> courierRoutes) {
+        if (trace.isEnabled()) {
+            for (int i = 0; i < courierRoutes.size(); i++) {
+                trace.route(stage.name(), i, courierRoutes.get(i));
+            }
         }
-        pq.add(courier);
     }
 
-    private PriorityQueue<Courier> initializeCouriers(int count) {
-        PriorityQueue<Courier> pq = new PriorityQueue<>(Comparator.comparingDouble(Courier::getCurrentDistance));
-        for (int i = 0; i < count; i++) {
-            pq.add(new Courier(i, 0, new ArrayList<>()));
+    byte[] writeResultGeoJson(List<int[]> courierRoutes, PointSet points, double totalExpenses,
+                              double totalTime, Parameters params) throws IOException {
+        Fleet fleet = Fleet.of(params);
+        int i = 1;
+        String[] colors = {"#FF5733", "#33FF57", "#5733FF", "#33FFFF", "#FF33FF"};
+        int pointCount = 0;
+        for (int[] route : courierRoutes) {
+            pointCount += route.length;
         }
-        return pq;
-    }
+        ByteArrayOutputStream buffer = GeoJsonWriter.newBuffer(pointCount, courierRoutes.size());
 
-    private List<DoublePoint> solveTSP(List<DoublePoint> points) {
-        // Implement a simple greedy TSP algorithm for demonstration purposes
-        List<DoublePoint> tspRoute = new ArrayList<>();
-        tspRoute.add(points.remove(0)); // Start point
-        while (!points.isEmpty()) {
-            DoublePoint lastPoint = tspRoute.get(tspRoute.size() - 1);
-            DoublePoint nearestPoint = findNearestPoint(lastPoint, points);
-            tspRoute.add(nearestPoint);
-            points.remove(nearestPoint);
-        }
-        tspRoute.add(tspRoute.get(0)); // End at start point
-        return tspRoute;
-    }
+        try (JsonGenerator json = GeoJsonWriter.createGenerator(buffer)) {
+            json.writeStartObject();
 
-    private DoublePoint findNearestPoint(DoublePoint fromPoint, List<DoublePoint> points) {
-        DoublePoint nearestPoint = null;
-        double nearestDistance = Double.MAX_VALUE;
-        EuclideanDistance distance = new EuclideanDistance();
-        for (DoublePoint point : points) {
-            double currentDistance = distance.compute(fromPoint.getPoint(), point.getPoint());
-            if (currentDistance < nearestDistance) {
-                nearestDistance = currentDistance;
-                nearestPoint = point;
+            GeoJsonWriter.startFeatureCollection(json, "static_model");
+            for (int[] route : courierRoutes) {
+                String color = colors[(i++) % colors.length]; // Используем цвет из массива в соответствии с индексом
+                GeoJsonWriter.writeLineFeature(json, points, route, "courier_route", color);
+            }
+            GeoJsonWriter.endFeatureCollection(json);
+
+            json.writeObjectFieldStart("static_model_parameters");
+            json.writeNumberField("total_expenses", totalExpenses);
+            GeoJsonWriter.writeTime(json, "total_time", Time.convert(totalTime));
+            json.writeNumberField("couriers_count", usedVehicles(courierRoutes));
+            // Тип машины каждого маршрута в порядке features, если парк задан в запросе
+            if (params.getFLEET() != null && !params.getFLEET().isEmpty()) {
+                json.writeArrayFieldStart("vehicle_types");
+                for (int v = 0; v < courierRoutes.size(); v++) {
+                    json.writeString(fleet.name(fleet.typeOf(v)));
+                }
+                json.writeEndArray();
             }
+            json.writeEndObject();
+            json.writeEndObject();
         }
-        return nearestPoint;
+        return buffer.toByteArray();
     }
 
-    private JSONObject createResultGeoJson(OptimizationResult result, Parameters params, JSONObject requestDataJson) throws JSONException {
-        int i = 1;
-        String[] colors = {"#FF5733", "#33FF57", "#5733FF", "#33FFFF", "#FF33FF"};
-        JSONArray optimizedFeatures = new JSONArray();
-
-        for (List<DoublePoint> courierRoute : result.getCourierRoutes()) {
-            JSONArray courierLineCoordinates = new JSONArray();
-            for (DoublePoint point : courierRoute) {
-                courierLineCoordinates.put(new JSONArray().put(point.getPoint()[0]).put(point.getPoint()[1]));
+    // Расходы только на задействованные машины: постоянные расходы типа и пробег по цене км типа
+    double calculateTotalExpenses(List<int[]> courierRoutes, DistanceMatrix distances, Parameters params) {
+        Fleet fleet = Fleet.of(params);
+        double totalExpenses = 0;
+        for (int v = 0; v < courierRoutes.size(); v++) {
+            int[] route = courierRoutes.get(v);
+            if (route.length > 0) {
+                totalExpenses += fleet.cost(fleet.typeOf(v), distances.routeLength(route));
             }
-            String color = colors[(i++) % colors.length]; // Используем цвет из массива в соответствии с индексом
-            JSONObject courierLineFeature = createLineFeature(courierLineCoordinates, "courier_route", color);
-            optimizedFeatures.put(courierLineFeature);
         }
 
-        JSONObject optimizedGeoJson = new JSONObject();
-        optimizedGeoJson.put("type", "FeatureCollection");
-        optimizedGeoJson.put("features", optimizedFeatures);
-
-        JSONObject parametersJson = new JSONObject();
-        parametersJson.put("total_expenses", result.getTotalExpenses());
-        parametersJson.put("total_time", Time.convert(result.getTotalTime()).toJSON());
-        parametersJson.put("couriers_count", params.getMAX_COUNT_COURIERS());
-
-        JSONObject resultJson = new JSONObject();
-        resultJson.put("static_model", optimizedGeoJson);
-        resultJson.put("static_model_parameters", parametersJson);
-        requestDataJson.put("model_type", "static");
-        resultJson.put("request_data", requestDataJson);
-
-        return resultJson;
+        return Math.round(totalExpenses * 100.0) / 100.0;
     }
 
-    private JSONObject createLineFeature(JSONArray coordinates, String type, String color) throws JSONException {
-        JSONObject feature = new JSONObject();
-        feature.put("type", "Feature");
-        JSONObject geometry = new JSONObject();
-        geometry.put("type", "LineString");
-        geometry.put("coordinates", coordinates);
-        feature.put("geometry", geometry);
-        JSONObject properties = new JSONObject();
-        properties.put("type", type);
-        properties.put("color", color);
-        feature.put("properties", properties);
-        return feature;
+    private static int usedVehicles(List<int[]> courierRoutes) {
+        int used = 0;
+        for (int[] route : courierRoutes) {
+            if (route.length > 0) {
+                used++;
+            }
+        }
+        return used;
     }
 
-    private double calculateTotalExpenses(List<List<DoublePoint>> courierRoutes, Parameters params) {
-
-        double totalCourierDistance = courierRoutes.stream()
-                .mapToDouble(this::getTotalCourierRouteDistance)
-                .sum();
-
-        double totalExpenses = params.getFUEL_RATE_COURIER_CAR() * params.getFUEL_COST() * totalCourierDistance
-                + params.getDRIVER_SALARY() * params.getMAX_COUNT_COURIERS()
-                + params.getMAX_COUNT_COURIERS() * params.getCOURIER_CAR_RATE();
-
-        return Math.round(totalExpenses * 100.0) / 100.0;
+    double calculateTotalTime(List<int[]> courierRoutes, DistanceMatrix distances, Parameters params) {
+        return calculateTotalTime(courierRoutes, distances, params, null);
     }
 
-    private double calculateTotalTime(List<List<DoublePoint>> courierRoutes, Parameters params) {
+    // С окнами время маршрута - время завершения по расписанию с ожиданием, пропуск окна дает бесконечность
+    double calculateTotalTime(List<int[]> courierRoutes, DistanceMatrix distances, Parameters params,
+                              TimeWindows windows) {
+        Fleet fleet = Fleet.of(params);
+        if (windows != null) {
+            double maxFinishTime = 0;
+            for (int v = 0; v < courierRoutes.size(); v++) {
+                maxFinishTime = Math.max(maxFinishTime, RouteSchedule.finishTime(courierRoutes.get(v), distances,
+                        fleet.speed(fleet.typeOf(v)), windows));
+            }
+            return maxFinishTime;
+        }
         double maxCourierTime = 0;
-        for (List<DoublePoint> courierRoute : courierRoutes) {
-            double travelTime = getTotalCourierRouteDistance(courierRoute) / params.getMOB_STORAGE_SPEED();
-            double processingTime = courierRoute.size() * params.getORDER_PROCESSING_TIME();
+        for (int v = 0; v < courierRoutes.size(); v++) {
+            int[] courierRoute = courierRoutes.get(v);
+            double travelTime = distances.routeLength(courierRoute) / fleet.speed(fleet.typeOf(v));
+            double processingTime = courierRoute.length * params.getORDER_PROCESSING_TIME();
             maxCourierTime = Math.max(maxCourierTime, travelTime + processingTime);
         }
 
         return maxCourierTime;
     }
-
-    private double getTotalCourierRouteDistance(List<DoublePoint> route) {
-        double totalDistance = 0;
-        for (int i = 0; i < route.size() - 1; i++) {
-            totalDistance += calculateDistance(route.get(i), route.get(i + 1));
-        }
-        return totalDistance;
-    }
-
-    private double calculateDistance(DoublePoint point1, DoublePoint point2) {
-        return new EuclideanDistance().compute(point1.getPoint(), point2.getPoint());
-    }
 }
@@ -0,0 +1,126 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.ivanova.diplom.logistics.model.ConfigurationCost;
+import ru.ivanova.diplom.logistics.model.SweepConfiguration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.ToDoubleFunction;
+
+// Перебор конфигураций с отсечением по нижней оценке (метод ветвей и границ)
+@Component
+public class SweepEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(SweepEngine.class);
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final long timeBudgetMillis;
+    private final int maxAlternatives;
+
+    public SweepEngine(@Qualifier("sweepExecutor") ExecutorService executor,
+                       @Value("${optimization.sweep.parallelism:0}") int parallelism,
+                       @Value("${optimization.sweep.time-budget-ms:0}") long timeBudgetMillis,
+                       @Value("${optimization.sweep.max-alternatives:10}") int maxAlternatives) {
+        this.executor = executor;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.maxAlternatives = Math.max(1, maxAlternatives);
+    }
+
+    public SweepState newState(int total, double maxTime) {
+        return newState(total, maxTime, 1);
+    }
+
+    // Состояние, сохраняющее alternatives лучших решений (не больше max-alternatives)
+    public SweepState newState(int total, double maxTime, int alternatives) {
+        return new SweepState(total, maxTime, timeBudgetMillis, Math.min(alternatives, maxAlternatives));
+    }
+
+    /**
+     * Перебирает конфигурации в порядке возрастания нижней оценки расходов. Оценка должна быть
+     * монотонна относительно настоящих расходов: как только она хуже лучшего найденного решения,
+     * все оставшиеся конфигурации отбрасываются. Вычислитель возвращает null, если сам отсек
+     * конфигурацию по ходу расчета. Хранятся только оценки лучших конфигураций, поэтому память
+     * не зависит от числа конфигураций.
+     *
+     * @return лучшие допустимые решения от лучшего к худшему, пустой список - решений нет
+     * @throws CancellationException если перебор отменен или поток прерван во время ожидания
+     */
+    public List<ConfigurationCost> run(List<SweepConfiguration> configurations, SweepState state,
+                                 ToDoubleFunction<SweepConfiguration> lowerBound,
+                                 BiFunction<SweepConfiguration, SweepState, ConfigurationCost> evaluator) {
+        List<SweepConfiguration> ordered = new ArrayList<>(configurations);
+        ordered.sort(Comparator.comparingDouble(lowerBound)
+                .thenComparingInt(SweepConfiguration::getIndex));
+        double[] bounds = new double[ordered.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = lowerBound.applyAsDouble(ordered.get(i));
+        }
+
+        // Каждый исполнитель сам забирает следующую конфигурацию, поэтому в очереди пула
+        // не больше parallelism задач на запрос
+        AtomicInteger cursor = new AtomicInteger();
+        int workers = Math.max(1, Math.min(parallelism, ordered.size()));
+        CompletableFuture<?>[] futures = new CompletableFuture[workers];
+        for (int w = 0; w < workers; w++) {
+            futures[w] = CompletableFuture.runAsync(
+                    () -> work(ordered, bounds, cursor, state, evaluator), executor);
+        }
+        try {
+            CompletableFuture.allOf(futures).get();
+        } catch (InterruptedException e) {
+            // Задача запроса снята: исполнители прекращают брать конфигурации
+            state.cancel();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Sweep was cancelled");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new RuntimeException(e.getCause());
+        }
+        // Неполный перебор снятой задачи не должен стать результатом (и попасть в кэш)
+        if (state.isCancelled()) {
+            throw new CancellationException("Sweep was cancelled");
+        }
+
+        logger.info("Перебор завершен: всего {}, рассчитано {}, отсечено {}",
+                state.getTotal(), state.getEvaluated(), state.getPruned());
+        return state.getAlternatives();
+    }
+
+    private void work(List<SweepConfiguration> ordered, double[] bounds, AtomicInteger cursor, SweepState state,
+                      BiFunction<SweepConfiguration, SweepState, ConfigurationCost> evaluator) {
+        int size = ordered.size();
+        int i;
+        while ((i = cursor.getAndIncrement()) < size) {
+            // При заполненной очереди пула работу выполняет поток запроса, его тоже можно прервать
+            if (state.shouldStop() || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            if (state.canPrune(bounds[i])) {
+                // Дальше оценки только больше: забираем все невыданные конфигурации
+                int end = cursor.getAndSet(size);
+                state.markPruned(1 + Math.max(0, size - end));
+                continue;
+            }
+            SweepConfiguration configuration = ordered.get(i);
+            ConfigurationCost result = evaluator.apply(configuration, state);
+            if (result != null) {
+                state.offer(result);
+            } else {
+                state.markPruned(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.ivanova.diplom.logistics.service;
+
+import ru.ivanova.diplom.logistics.model.ConfigurationCost;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Состояние перебора конфигураций одного запроса: лучшие решения, счетчики и признак остановки.
+ * Хранится не больше alternatives лучших допустимых решений (по расходам, при равенстве -
+ * по номеру конфигурации), результаты сворачиваются в них по мере расчета. Отсечение идет
+ * по худшему из сохраненных решений, пока их набралось alternatives, иначе не отсекается ничего.
+ */
+public class SweepState {
+
+    // Порядок решений: дешевле, при равных расходах - раньше в исходном порядке перебора
+    private static final Comparator<ConfigurationCost> ORDER = Comparator
+            .comparingDouble(ConfigurationCost::getTotalExpenses)
+            .thenComparingInt(cost -> cost.getConfiguration().getIndex());
+
+    private final int total;
+    private final double maxTime;
+    private final long deadline;
+    private final AtomicInteger evaluated = new AtomicInteger();
+    private final AtomicInteger pruned = new AtomicInteger();
+    private volatile boolean cancelled;
+
+    private final int alternatives;
+    // Худшее решение - в голове очереди
+    private final PriorityQueue<ConfigurationCost> top;
+    private volatile double incumbentCost = Double.POSITIVE_INFINITY;
+    private volatile double pruneCost = Double.POSITIVE_INFINITY;
+
+    public SweepState(int total, double maxTime, long timeBudgetMillis) {
+        this(total, maxTime, timeBudgetMillis, 1);
+    }
+
+    public SweepState(int total, double maxTime, long timeBudgetMillis, int alternatives) {
+        this.total = total;
+        this.maxTime = maxTime;
+        this.alternatives = Math.max(1, alternatives);
+        this.top = new PriorityQueue<>(this.alternatives + 1, ORDER.reversed());
+        this.deadline = timeBudgetMillis > 0
+                ? System.nanoTime() + timeBudgetMillis * 1_000_000L
+                : Long.MAX_VALUE;
+    }
+
+    // Принимает результат конфигурации; учитываются только решения, укладывающиеся в MAX_TIME
+    public synchronized void offer(ConfigurationCost result) {
+        evaluated.incrementAndGet();
+        if (result.getTotalTime() > maxTime) {
+            return;
+        }
+        if (top.size() == alternatives) {
+            if (ORDER.compare(result, top.peek()) >= 0) {
+                return;
+            }
+            top.poll();
+        }
+        top.add(result);
+        incumbentCost = Math.min(incumbentCost, result.getTotalExpenses());
+        if (top.size() == alternatives) {
+            pruneCost = top.peek().getTotalExpenses();
+        }
+    }
+
+    // Нижняя оценка округляется так же, как и расходы, иначе можно отсечь равноценное решение
+    public boolean canPrune(double lowerBound) {
+        return Math.round(lowerBound * 100.0) / 100.0 > pruneCost;
+    }
+
+    public boolean exceedsMaxTime(double lowerBoundTime) {
+        return lowerBoundTime > maxTime;
+    }
+
+    public void markPruned(int count) {
+        pruned.addAndGet(count);
+    }
+
+    public boolean shouldStop() {
+        return cancelled || System.nanoTime() > deadline;
+    }
+
+    // Остановка перебора снятой задачи: исполнители не берут новые конфигурации
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Сохраненные решения от лучшего к худшему
+    public synchronized List<ConfigurationCost> getAlternatives() {
+        List<ConfigurationCost> result = new ArrayList<>(top);
+        result.sort(ORDER);
+        return result;
+    }
+
+    // Расходы лучшего найденного решения
+
+    public double getIncumbentCost() {
+        return incumbentCost;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getEvaluated() {
+        return evaluated.get();
+    }
+
+    public int getPruned() {
+        return pruned.get();
+    }
+}
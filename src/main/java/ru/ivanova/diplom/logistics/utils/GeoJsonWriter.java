@@ -0,0 +1,136 @@
+package ru.ivanova.diplom.logistics.utils;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.commons.math3.ml.clustering.DoublePoint;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.model.Time;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Потоковая запись результата в GeoJSON без промежуточных JSONObject/JSONArray.
+ * Результат сериализуется один раз в массив байт, который используется и для ответа HTTP,
+ * и как тело сообщения RabbitMQ.
+ */
+public class GeoJsonWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    // Примерный размер одной точки маршрута в UTF-8: "[37.45374569764496,55.854230121081166],"
+    private static final int BYTES_PER_POINT = 40;
+    private static final int BYTES_PER_FEATURE = 160;
+    private static final byte[] REQUEST_DATA_FIELD = ",\"request_data\":".getBytes(StandardCharsets.UTF_8);
+
+    // Буфер с начальной емкостью по оценке размера, чтобы не копировать его при росте
+    public static ByteArrayOutputStream newBuffer(int pointCount, int featureCount) {
+        return new ByteArrayOutputStream(1024 + pointCount * BYTES_PER_POINT + featureCount * BYTES_PER_FEATURE);
+    }
+
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+    }
+
+    public static void startFeatureCollection(JsonGenerator json, String name) throws IOException {
+        json.writeObjectFieldStart(name);
+        json.writeStringField("type", "FeatureCollection");
+        json.writeArrayFieldStart("features");
+    }
+
+    public static void endFeatureCollection(JsonGenerator json) throws IOException {
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+    // Линия по списку точек; closed - повторить первую точку в конце
+    public static void writeLineFeature(JsonGenerator json, List<DoublePoint> route, boolean closed,
+                                        String type, String color) throws IOException {
+        startLineFeature(json);
+        for (DoublePoint point : route) {
+            writeCoordinates(json, point.getPoint()[0], point.getPoint()[1]);
+        }
+        if (closed && !route.isEmpty()) {
+            writeCoordinates(json, route.get(0).getPoint()[0], route.get(0).getPoint()[1]);
+        }
+        endLineFeature(json, type, color);
+    }
+
+    // Линия по маршруту из индексов точек
+    public static void writeLineFeature(JsonGenerator json, PointSet points, int[] route,
+                                        String type, String color) throws IOException {
+        startLineFeature(json);
+        for (int i : route) {
+            writeCoordinates(json, points.getX(i), points.getY(i));
+        }
+        endLineFeature(json, type, color);
+    }
+
+    public static void writeTime(JsonGenerator json, String name, Time time) throws IOException {
+        json.writeObjectFieldStart(name);
+        json.writeNumberField("hours", time.getHours());
+        json.writeNumberField("minutes", time.getMinutes());
+        json.writeNumberField("seconds", time.getSeconds());
+        json.writeEndObject();
+    }
+
+    /**
+     * Добавляет к результату модели (JSON-объекту без request_data) поле request_data запроса
+     * с типом модели. Сам результат от request_data не зависит и может браться из кэша.
+     */
+    public static byte[] withRequestData(byte[] result, String requestData, String modelType) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(result.length + requestData.length() + 64);
+        // Результат пишется без отступов, последний байт - закрывающая скобка объекта
+        buffer.write(result, 0, result.length - 1);
+        buffer.write(REQUEST_DATA_FIELD);
+        try (JsonGenerator json = createGenerator(buffer);
+             JsonParser parser = JSON_FACTORY.createParser(requestData)) {
+            json.writeStartObject();
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                if ("model_type".equals(name)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                json.writeFieldName(name);
+                OptimizationRequestParser.copyValue(parser, json);
+            }
+            json.writeStringField("model_type", modelType);
+            json.writeEndObject();
+        }
+        buffer.write('}');
+        return buffer.toByteArray();
+    }
+
+    private static void startLineFeature(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("type", "Feature");
+        json.writeObjectFieldStart("geometry");
+        json.writeStringField("type", "LineString");
+        json.writeArrayFieldStart("coordinates");
+    }
+
+    private static void endLineFeature(JsonGenerator json, String type, String color) throws IOException {
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeObjectFieldStart("properties");
+        json.writeStringField("type", type);
+        json.writeStringField("color", color);
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    private static void writeCoordinates(JsonGenerator json, double x, double y) throws IOException {
+        json.writeStartArray();
+        json.writeNumber(x);
+        json.writeNumber(y);
+        json.writeEndArray();
+    }
+}
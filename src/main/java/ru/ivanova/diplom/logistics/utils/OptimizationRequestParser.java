@@ -0,0 +1,344 @@
+package ru.ivanova.diplom.logistics.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.Order;
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.model.TourImprovement;
+import ru.ivanova.diplom.logistics.model.VehicleType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Потоковый разбор запроса на оптимизацию за один проход без построения дерева JSON.
+ * Координаты точек читаются сразу в массивы, заказы - в список {@link Order}.
+ */
+public class OptimizationRequestParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Разбирает тело запроса. Возвращает null, если нет одного из разделов
+     * geo_json, parameters, orders, request_data.
+     */
+    public static OptimizationRequest parse(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            return readRequest(parser, parser.nextToken());
+        }
+    }
+
+    /**
+     * Разбирает пакет независимых запросов - массив объектов того же вида, что и одиночный запрос.
+     *
+     * @throws IllegalArgumentException если в одном из запросов нет обязательного раздела
+     */
+    public static List<OptimizationRequest> parseBatch(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            expect(parser.nextToken(), JsonToken.START_ARRAY);
+            List<OptimizationRequest> requests = new ArrayList<>();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                OptimizationRequest request = readRequest(parser, token);
+                if (request == null) {
+                    throw new IllegalArgumentException("Request " + requests.size() + " has no required key");
+                }
+                requests.add(request);
+            }
+            return requests;
+        }
+    }
+
+    private static OptimizationRequest readRequest(JsonParser parser, JsonToken token) throws IOException {
+        expect(token, JsonToken.START_OBJECT);
+
+        PointSet points = null;
+        List<Order> orders = null;
+        Parameters params = null;
+        String requestData = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case "geo_json" -> points = readPoints(parser, value);
+                case "orders" -> orders = readOrders(parser, value);
+                case "parameters" -> params = readParameters(parser, value);
+                case "request_data" -> requestData = copyObject(parser, value);
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (points == null || orders == null || params == null || requestData == null) {
+            return null;
+        }
+        if (points.size() == 0 || orders.size() > points.size() - 1) {
+            throw new IllegalArgumentException("Orders do not match pickup points");
+        }
+        // Заказ i относится к пункту выдачи i + 1 (индекс 0 - начальная точка)
+        for (int i = 0; i < orders.size(); i++) {
+            orders.get(i).setPointIndex(i + 1);
+        }
+        return new OptimizationRequest(points, orders, params, requestData,
+                RequestFingerprint.of(points, orders, params));
+    }
+
+    // geo_json.features[*].geometry.coordinates -> массивы координат
+    private static PointSet readPoints(JsonParser parser, JsonToken token) throws IOException {
+        expect(token, JsonToken.START_OBJECT);
+        double[] xs = null;
+        double[] ys = null;
+        int size = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!"features".equals(name)) {
+                parser.skipChildren();
+                continue;
+            }
+            expect(value, JsonToken.START_ARRAY);
+            xs = new double[INITIAL_CAPACITY];
+            ys = new double[INITIAL_CAPACITY];
+            size = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (size == xs.length) {
+                    xs = Arrays.copyOf(xs, size * 2);
+                    ys = Arrays.copyOf(ys, size * 2);
+                }
+                readFeature(parser, xs, ys, size++);
+            }
+        }
+        if (xs == null) {
+            throw new IllegalArgumentException("geo_json has no features");
+        }
+        return new PointSet(Arrays.copyOf(xs, size), Arrays.copyOf(ys, size));
+    }
+
+    private static void readFeature(JsonParser parser, double[] xs, double[] ys, int index) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT);
+        boolean found = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!"geometry".equals(name)) {
+                parser.skipChildren();
+                continue;
+            }
+            expect(value, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String geometryField = parser.currentName();
+                JsonToken coordinates = parser.nextToken();
+                if (!"coordinates".equals(geometryField)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                expect(coordinates, JsonToken.START_ARRAY);
+                parser.nextToken();
+                xs[index] = readDouble(parser);
+                parser.nextToken();
+                ys[index] = readDouble(parser);
+                // Высота и прочие элементы координат не используются
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    parser.skipChildren();
+                }
+                found = true;
+            }
+        }
+        if (!found) {
+            throw new IllegalArgumentException("Feature " + index + " has no coordinates");
+        }
+    }
+
+    private static List<Order> readOrders(JsonParser parser, JsonToken token) throws IOException {
+        expect(token, JsonToken.START_ARRAY);
+        List<Order> orders = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser.currentToken(), JsonToken.START_OBJECT);
+            Integer id = null;
+            Double volume = null;
+            Double windowStart = null;
+            Double windowEnd = null;
+            Double serviceTime = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                switch (name) {
+                    case "id" -> id = (int) readDouble(parser);
+                    case "volume" -> volume = readDouble(parser);
+                    case "time_window_start" -> windowStart = readOptionalDouble(parser);
+                    case "time_window_end" -> windowEnd = readOptionalDouble(parser);
+                    case "service_time" -> serviceTime = readOptionalDouble(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            if (id == null || volume == null) {
+                throw new IllegalArgumentException("Order " + orders.size() + " has no id or volume");
+            }
+            if (windowStart != null && windowEnd != null && windowStart > windowEnd
+                    || serviceTime != null && serviceTime < 0) {
+                throw new IllegalArgumentException("Order " + id + " has an invalid time window or service time");
+            }
+            Order order = new Order(id, volume);
+            order.setTimeWindowStart(windowStart);
+            order.setTimeWindowEnd(windowEnd);
+            order.setServiceTime(serviceTime);
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private static Parameters readParameters(JsonParser parser, JsonToken token) throws IOException {
+        expect(token, JsonToken.START_OBJECT);
+        Map<String, Double> values = new HashMap<>();
+        String tourImprovement = TourImprovement.two_opt_or_opt.name();
+        List<VehicleType> fleet = List.of();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("tour_improvement".equals(name)) {
+                tourImprovement = parser.getText();
+            } else if ("fleet".equals(name) && value == JsonToken.START_ARRAY) {
+                fleet = readFleet(parser);
+            } else if (value.isNumeric()) {
+                values.put(name, parser.getDoubleValue());
+            } else if (value == JsonToken.VALUE_STRING && isNumber(parser.getText())) {
+                values.put(name, Double.parseDouble(parser.getText()));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        int alternatives = values.getOrDefault("alternatives", 1.0).intValue();
+        if (alternatives < 1) {
+            throw new IllegalArgumentException("Parameter alternatives must be positive");
+        }
+        return new Parameters(
+                required(values, "fuel_rate_mob_storage"),
+                required(values, "fuel_rate_courier_car"),
+                required(values, "fuel_cost"),
+                required(values, "mob_storage_rate"),
+                required(values, "courier_car_rate"),
+                required(values, "driver_salary"),
+                (int) required(values, "max_count_couriers"),
+                required(values, "courier_salary"),
+                required(values, "courier_scooter_rate"),
+                required(values, "energy_consumption"),
+                required(values, "energy_consumption_cost"),
+                required(values, "max_courier_car_capacity"),
+                required(values, "max_delivery_capacity"),
+                required(values, "max_time"),
+                required(values, "order_processing_time"),
+                required(values, "courier_scooter_speed"),
+                required(values, "mob_storage_speed"),
+                TourImprovement.valueOf(tourImprovement),
+                values.getOrDefault("tour_improvement_time_limit", 200.0).longValue(),
+                alternatives,
+                fleet
+        );
+    }
+
+    // parameters.fleet[*]: name, count, capacity, speed, fixed_cost, cost_per_km
+    private static List<VehicleType> readFleet(JsonParser parser) throws IOException {
+        List<VehicleType> fleet = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser.currentToken(), JsonToken.START_OBJECT);
+            String name = "vehicle_" + fleet.size();
+            Map<String, Double> values = new HashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("name".equals(field) && value == JsonToken.VALUE_STRING) {
+                    name = parser.getText();
+                } else if (value.isNumeric() || value == JsonToken.VALUE_STRING) {
+                    values.put(field, readDouble(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            VehicleType type = new VehicleType(name,
+                    (int) required(values, "count"),
+                    required(values, "capacity"),
+                    required(values, "speed"),
+                    values.getOrDefault("fixed_cost", 0.0),
+                    values.getOrDefault("cost_per_km", 0.0));
+            if (type.getCount() < 0 || type.getCapacity() <= 0 || type.getSpeed() <= 0
+                    || type.getFixedCost() < 0 || type.getCostPerKm() < 0) {
+                throw new IllegalArgumentException("Vehicle type " + name + " has invalid parameters");
+            }
+            fleet.add(type);
+        }
+        return fleet;
+    }
+
+    // Копия объекта в строку; числа переносятся в исходной записи
+    private static String copyObject(JsonParser parser, JsonToken token) throws IOException {
+        expect(token, JsonToken.START_OBJECT);
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            copyValue(parser, generator);
+        }
+        return writer.toString();
+    }
+
+    // Копирование текущего значения вместе с вложенными без изменения записи чисел
+    static void copyValue(JsonParser parser, JsonGenerator generator) throws IOException {
+        int depth = 0;
+        do {
+            JsonToken token = parser.currentToken();
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            generator.copyCurrentEventExact(parser);
+        } while (depth > 0 && parser.nextToken() != null);
+    }
+
+    private static double readDouble(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token != null && token.isNumeric()) {
+            return parser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            return Double.parseDouble(parser.getText());
+        }
+        throw new IllegalArgumentException("Number expected at " + parser.currentLocation());
+    }
+
+    // Необязательное число: null в JSON - значение не задано
+    private static Double readOptionalDouble(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : readDouble(parser);
+    }
+
+    private static boolean isNumber(String text) {
+        try {
+            Double.parseDouble(text);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static double required(Map<String, Double> values, String name) {
+        Double value = values.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Parameter " + name + " is missing");
+        }
+        return value;
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) {
+        if (actual != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " but found " + actual);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ru.ivanova.diplom.logistics.utils;
+
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.model.Order;
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.model.VehicleType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Канонический хэш входных данных расчета: точки, заказы и параметры модели в фиксированном
+ * двоичном виде (SHA-256). Не зависит от форматирования JSON, порядка ключей и request_data,
+ * поэтому одинаковые запросы получают одинаковый ключ.
+ */
+public class RequestFingerprint {
+
+    private RequestFingerprint() {
+    }
+
+    public static String of(PointSet points, List<Order> orders, Parameters params) {
+        List<VehicleType> fleet = params.getFLEET();
+        int fleetBytes = 0;
+        for (VehicleType type : fleet) {
+            fleetBytes += 44 + type.getName().length() * 3;
+        }
+        ByteBuffer data = ByteBuffer.allocate(256 + points.size() * 16 + orders.size() * 40 + fleetBytes);
+
+        data.putInt(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            data.putDouble(points.getX(i)).putDouble(points.getY(i));
+        }
+
+        data.putInt(orders.size());
+        for (Order order : orders) {
+            data.putInt(order.getId()).putDouble(order.getVolume()).putInt(order.getPointIndex())
+                    .putDouble(orNaN(order.getTimeWindowStart()))
+                    .putDouble(orNaN(order.getTimeWindowEnd()))
+                    .putDouble(orNaN(order.getServiceTime()));
+        }
+
+        data.putDouble(params.getFUEL_RATE_MOB_STORAGE())
+                .putDouble(params.getFUEL_RATE_COURIER_CAR())
+                .putDouble(params.getFUEL_COST())
+                .putDouble(params.getMOB_STORAGE_RATE())
+                .putDouble(params.getCOURIER_CAR_RATE())
+                .putDouble(params.getDRIVER_SALARY())
+                .putInt(params.getMAX_COUNT_COURIERS())
+                .putDouble(params.getCOURIER_SALARY())
+                .putDouble(params.getCOURIER_SCOOTER_RATE())
+                .putDouble(params.getENERGY_CONSUMPTION())
+                .putDouble(params.getENERGY_CONSUMPTION_COST())
+                .putDouble(params.getMAX_COURIER_CAR_CAPACITY())
+                .putDouble(params.getMAX_DELIVERY_CAPACITY())
+                .putDouble(params.getMAX_TIME())
+                .putDouble(params.getORDER_PROCESSING_TIME())
+                .putDouble(params.getCOURIER_SCOOTER_SPEED())
+                .putDouble(params.getMOB_STORAGE_SPEED())
+                .putLong(params.getTOUR_IMPROVEMENT_TIME_LIMIT())
+                .putInt(params.getALTERNATIVES());
+        data.put(params.getTOUR_IMPROVEMENT().name().getBytes(StandardCharsets.UTF_8));
+
+        data.putInt(fleet.size());
+        for (VehicleType type : fleet) {
+            byte[] name = type.getName().getBytes(StandardCharsets.UTF_8);
+            data.putInt(name.length).put(name)
+                    .putInt(type.getCount())
+                    .putDouble(type.getCapacity())
+                    .putDouble(type.getSpeed())
+                    .putDouble(type.getFixedCost())
+                    .putDouble(type.getCostPerKm());
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data.array(), 0, data.position());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Незаданное значение заказа отличается от любого числа
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+}
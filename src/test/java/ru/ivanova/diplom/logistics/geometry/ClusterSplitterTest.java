@@ -0,0 +1,89 @@
+package ru.ivanova.diplom.logistics.geometry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterSplitterTest {
+
+    private final PointSet points = KMeansTest.blobs(new Random(3));
+
+    @Test
+    void splitRespectsRadiusAndKeepsEveryPointOnce() {
+        ClusterSplitter splitter = splitter();
+        for (double radius : new double[]{5, 1.5, 0.8, 0.3, 0}) {
+            List<ClusterSplitter.Node> nodes = splitter.split(radius);
+            int[] seen = new int[points.size()];
+            for (ClusterSplitter.Node node : nodes) {
+                assertTrue(node.getRadius() <= radius || node.getMembers().length == 1);
+                for (int point : node.getMembers()) {
+                    seen[point]++;
+                    // Радиус - наибольшее расстояние от центра до точки кластера
+                    assertTrue(points.distance(point, node.getCenterX(), node.getCenterY())
+                            <= node.getRadius() + 1e-9);
+                }
+            }
+            for (int count : seen) {
+                assertEquals(1, count);
+            }
+        }
+    }
+
+    @Test
+    void smallerRadiusRefinesLargerOne() {
+        ClusterSplitter splitter = splitter();
+        List<ClusterSplitter.Node> coarse = splitter.split(1.5);
+        List<ClusterSplitter.Node> fine = splitter.split(0.5);
+        int[] coarseOf = new int[points.size()];
+        for (int c = 0; c < coarse.size(); c++) {
+            for (int point : coarse.get(c).getMembers()) {
+                coarseOf[point] = c;
+            }
+        }
+        // Каждый мелкий кластер целиком лежит в одном крупном
+        for (ClusterSplitter.Node node : fine) {
+            int parent = coarseOf[node.getMembers()[0]];
+            for (int point : node.getMembers()) {
+                assertEquals(parent, coarseOf[point]);
+            }
+        }
+        assertTrue(fine.size() >= coarse.size());
+    }
+
+    @Test
+    void repeatedSplitReturnsSameNodes() {
+        ClusterSplitter splitter = splitter();
+        List<ClusterSplitter.Node> first = splitter.split(0.7);
+        List<ClusterSplitter.Node> second = splitter.split(0.7);
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+        }
+    }
+
+    // Начальные кластеры - два k-means кластера из четырех облаков
+    private ClusterSplitter splitter() {
+        KMeans.Clustering clustering = new KMeans(100, 1e-9, 1)
+                .cluster(points, KMeansTest.all(points.size()), 2, 9);
+        List<int[]> clusters = new ArrayList<>();
+        for (int c = 0; c < clustering.getK(); c++) {
+            int size = 0;
+            for (int label : clustering.getAssignment()) {
+                size += label == c ? 1 : 0;
+            }
+            int[] members = new int[size];
+            int k = 0;
+            for (int i = 0; i < clustering.getAssignment().length; i++) {
+                if (clustering.getAssignment()[i] == c) {
+                    members[k++] = i;
+                }
+            }
+            clusters.add(members);
+        }
+        return new ClusterSplitter(points, clusters);
+    }
+}
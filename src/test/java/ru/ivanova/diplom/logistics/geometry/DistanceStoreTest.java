@@ -0,0 +1,106 @@
+package ru.ivanova.diplom.logistics.geometry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceStoreTest {
+
+    private static final PointSet POINTS = new PointSet(new double[]{0, 3, 0, 6}, new double[]{0, 4, 5, 8});
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void distancesSurviveReopen() throws IOException {
+        Path file = dir.resolve("distances.bin");
+        try (DistanceStore store = DistanceStore.open(file, 16)) {
+            assertMatchesCoordinates(store.matrix(POINTS), POINTS);
+            assertEquals(4, store.size());
+        }
+        try (DistanceStore store = DistanceStore.open(file, 16)) {
+            assertEquals(4, store.size());
+            // Известные точки не добавляются повторно
+            assertMatchesCoordinates(store.matrix(POINTS), POINTS);
+            assertEquals(4, store.size());
+        }
+    }
+
+    @Test
+    void fileOfOtherCapacityIsRecreated() throws IOException {
+        Path file = dir.resolve("distances.bin");
+        try (DistanceStore store = DistanceStore.open(file, 16)) {
+            store.matrix(POINTS);
+        }
+        try (DistanceStore store = DistanceStore.open(file, 8)) {
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    void fullStoreFallsBackToCoordinates() throws IOException {
+        try (DistanceStore store = DistanceStore.open(dir.resolve("distances.bin"), 3)) {
+            assertMatchesCoordinates(store.matrix(POINTS), POINTS);
+            assertTrue(store.size() <= 3);
+        }
+    }
+
+    @Test
+    void secondOpenOfSameFileIsRejected() throws IOException {
+        Path file = dir.resolve("distances.bin");
+        try (DistanceStore store = DistanceStore.open(file, 16)) {
+            assertThrows(IOException.class, () -> DistanceStore.open(file, 16));
+            assertTrue(store.isEnabled());
+        }
+        // После закрытия файл снова можно открыть
+        DistanceStore.open(file, 16).close();
+    }
+
+    @Test
+    void appendedPointKeepsRoadDistances() throws IOException {
+        Path road = dir.resolve("road.csv");
+        Files.writeString(road, """
+                # x1,y1,x2,y2,distance
+                0,0,3,4,7.5
+                0,0,6,8,12
+                3,4,6,8,6.5
+                """);
+        try (DistanceStore store = DistanceStore.open(dir.resolve("distances.bin"), 16)) {
+            assertEquals(3, store.loadRoadDistances(road));
+            PointSet points = new PointSet(new double[]{0, 3}, new double[]{0, 4});
+            DistanceMatrix matrix = store.matrix(points);
+            assertEquals(7.5, matrix.get(0, 1));
+
+            // Точка из хранилища получает расстояния по дорожной сети, новая - по координатам
+            DistanceMatrix known = matrix.append(6, 8);
+            assertEquals(12, known.get(2, 0));
+            assertEquals(6.5, known.get(1, 2));
+            DistanceMatrix unknown = known.append(0, 5);
+            assertEquals(5, unknown.get(3, 0), 1e-12);
+            assertEquals(unknown.getPoints().distance(3, 2), unknown.get(2, 3), 1e-12);
+            assertEquals(7.5, unknown.get(1, 0));
+            // Добавленные точки в хранилище не регистрируются
+            assertEquals(3, store.size());
+        }
+    }
+
+    @Test
+    void disabledStoreComputesMatrixFromCoordinates() {
+        DistanceStore store = DistanceStore.disabled();
+        assertFalse(store.isEnabled());
+        assertMatchesCoordinates(store.matrix(POINTS), POINTS);
+    }
+
+    private static void assertMatchesCoordinates(DistanceMatrix matrix, PointSet points) {
+        for (int i = 0; i < points.size(); i++) {
+            for (int j = 0; j < points.size(); j++) {
+                assertEquals(points.distance(i, j), matrix.get(i, j), 1e-12);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.ivanova.diplom.logistics.geometry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KMeansTest {
+
+    private static final double[][] CENTERS = {{0, 0}, {10, 0}, {0, 10}, {10, 10}};
+    private static final int PER_BLOB = 50;
+
+    private final PointSet points = blobs(new Random(1));
+    private final int[] members = all(points.size());
+
+    @Test
+    void separatedBlobsBecomeClusters() {
+        KMeans.Clustering clustering = new KMeans(100, 1e-9, 4).cluster(points, members, 4, 17);
+
+        // Все точки одного облака в одном кластере, разные облака - в разных
+        Set<Integer> labels = new HashSet<>();
+        for (int blob = 0; blob < CENTERS.length; blob++) {
+            int label = clustering.getAssignment()[blob * PER_BLOB];
+            for (int i = 0; i < PER_BLOB; i++) {
+                assertEquals(label, clustering.getAssignment()[blob * PER_BLOB + i]);
+            }
+            labels.add(label);
+            assertEquals(CENTERS[blob][0], clustering.getCenterX()[label], 0.3);
+            assertEquals(CENTERS[blob][1], clustering.getCenterY()[label], 0.3);
+        }
+        assertEquals(CENTERS.length, labels.size());
+    }
+
+    @Test
+    void sameSeedGivesSameClustering() {
+        KMeans kMeans = new KMeans(100, 1e-9, 3);
+        KMeans.Clustering a = kMeans.cluster(points, members, 6, 5);
+        KMeans.Clustering b = kMeans.cluster(points, members, 6, 5);
+        assertArrayEquals(a.getAssignment(), b.getAssignment());
+        assertArrayEquals(a.getCenterX(), b.getCenterX());
+        assertArrayEquals(a.getCenterY(), b.getCenterY());
+    }
+
+    @Test
+    void rejectsMoreClustersThanPoints() {
+        KMeans kMeans = new KMeans(100, 1e-9, 1);
+        assertThrows(IllegalArgumentException.class, () -> kMeans.cluster(points, new int[]{0, 1}, 3, 1));
+    }
+
+    static PointSet blobs(Random random) {
+        double[] xs = new double[CENTERS.length * PER_BLOB];
+        double[] ys = new double[xs.length];
+        for (int blob = 0; blob < CENTERS.length; blob++) {
+            for (int i = 0; i < PER_BLOB; i++) {
+                xs[blob * PER_BLOB + i] = CENTERS[blob][0] + random.nextGaussian() * 0.5;
+                ys[blob * PER_BLOB + i] = CENTERS[blob][1] + random.nextGaussian() * 0.5;
+            }
+        }
+        return new PointSet(xs, ys);
+    }
+
+    static int[] all(int size) {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = i;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,128 @@
+package ru.ivanova.diplom.logistics.geometry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Ответы дерева сравниваются с линейным просмотром неудаленных элементов
+class KdTreeTest {
+
+    private static final int SIZE = 300;
+
+    private final Random random = new Random(42);
+    private final PointSet points = randomPoints(SIZE);
+    private final int[] elements = elements();
+    private final boolean[] removed = new boolean[elements.length];
+
+    @Test
+    void nearestMatchesBruteForceWhileRemoving() {
+        KdTree tree = new KdTree(points, elements);
+        int[] order = shuffledElements();
+        for (int step = 0; step <= order.length; step++) {
+            for (int q = 0; q < 20; q++) {
+                double x = random.nextDouble();
+                double y = random.nextDouble();
+                assertEquals(bruteNearest(x, y), tree.nearest(x, y));
+            }
+            if (step < order.length) {
+                tree.remove(order[step]);
+                removed[order[step]] = true;
+            }
+        }
+        assertTrue(tree.isEmpty());
+        assertEquals(-1, tree.nearest(0.5, 0.5));
+    }
+
+    @Test
+    void nearestKMatchesBruteForce() {
+        KdTree tree = new KdTree(points, elements);
+        for (int e = 0; e < elements.length; e += 3) {
+            tree.remove(e);
+            removed[e] = true;
+        }
+        int[] result = new int[8];
+        for (int q = 0; q < 100; q++) {
+            double x = random.nextDouble();
+            double y = random.nextDouble();
+            int exclude = random.nextInt(elements.length);
+            int found = tree.nearest(x, y, result.length, exclude, result);
+
+            double[] expected = bruteDistances(x, y, exclude);
+            assertEquals(Math.min(result.length, expected.length), found);
+            for (int i = 0; i < found; i++) {
+                assertNotEquals(exclude, result[i]);
+                assertFalse(removed[result[i]]);
+                assertEquals(expected[i], distance(result[i], x, y), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    void repeatedRemoveIsIgnored() {
+        KdTree tree = new KdTree(points, new int[]{3, 7});
+        tree.remove(0);
+        tree.remove(0);
+        assertFalse(tree.isEmpty());
+        assertEquals(1, tree.nearest(points.getX(3), points.getY(3)));
+    }
+
+    // При равных расстояниях - элемент с меньшим номером
+    private int bruteNearest(double x, double y) {
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int e = 0; e < elements.length; e++) {
+            double d = distance(e, x, y);
+            if (!removed[e] && d < bestDistance) {
+                bestDistance = d;
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    private double[] bruteDistances(double x, double y, int exclude) {
+        return java.util.stream.IntStream.range(0, elements.length)
+                .filter(e -> !removed[e] && e != exclude)
+                .mapToDouble(e -> distance(e, x, y))
+                .sorted()
+                .toArray();
+    }
+
+    private double distance(int element, double x, double y) {
+        return points.distance(elements[element], x, y);
+    }
+
+    // Элементы - часть точек набора в произвольном порядке, включая совпадающие координаты
+    private int[] elements() {
+        int[] result = new int[SIZE / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = random.nextInt(SIZE);
+        }
+        return result;
+    }
+
+    private int[] shuffledElements() {
+        int[] order = new int[elements.length];
+        Arrays.setAll(order, i -> i);
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+
+    private PointSet randomPoints(int size) {
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = random.nextDouble();
+            ys[i] = random.nextDouble();
+        }
+        return new PointSet(xs, ys);
+    }
+}
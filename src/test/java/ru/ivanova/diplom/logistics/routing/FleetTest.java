@@ -0,0 +1,95 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.model.TourImprovement;
+import ru.ivanova.diplom.logistics.model.VehicleType;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetTest {
+
+    private static final double SERVICE_TIME = 0.05;
+
+    // small: 2 машины, 4 м3, 30 км/ч; van: 1 машина, 10 м3, 25 км/ч; truck: 25 м3, 20 км/ч, машин нет
+    private final Fleet fleet = Fleet.of(params(List.of(
+            new VehicleType("small", 2, 4, 30, 500, 2),
+            new VehicleType("van", 1, 10, 25, 900, 3),
+            new VehicleType("truck", 0, 25, 20, 1500, 5))));
+
+    @Test
+    void defaultFleetIsBuiltFromCourierParameters() {
+        Fleet single = Fleet.of(params(null));
+        assertEquals(1, single.types());
+        assertEquals(3, single.vehicles());
+        assertEquals(12, single.capacity(0));
+        assertEquals(40, single.speed(0));
+        // Зарплата водителя и обслуживание машины, топливо на км
+        assertEquals(3000 + 500, single.fixedCost(0));
+        assertEquals(0.1 * 50, single.costPerKm(0));
+        assertEquals(3500 + 5 * 10, single.cost(0, 10), 1e-9);
+    }
+
+    @Test
+    void vehiclesAreNumberedByType() {
+        assertEquals(3, fleet.vehicles());
+        assertEquals(0, fleet.typeOf(0));
+        assertEquals(0, fleet.typeOf(1));
+        assertEquals(1, fleet.typeOf(2));
+        assertEquals(2, fleet.firstVehicle(1));
+        assertThrows(IllegalArgumentException.class, () -> fleet.typeOf(3));
+        // Типы без машин не учитываются
+        assertEquals(10, fleet.maxCapacity());
+        assertEquals(25, fleet.minSpeed());
+        assertArrayEquals(new double[]{4, 10}, fleet.capacities());
+        assertEquals(2 * 4 + 10, fleet.totalCapacity());
+    }
+
+    @Test
+    void cheapestTypeFitsLoadAndTime() {
+        assertEquals(0, fleet.cheapest(3, 20, 4, SERVICE_TIME, 8));
+        // Не помещается в small
+        assertEquals(1, fleet.cheapest(6, 20, 4, SERVICE_TIME, 8));
+        // small успевает: 30 / 30 + 6 * 0.05 = 1.3 ч, van - нет: 30 / 25 + 0.3 = 1.5 ч
+        assertEquals(0, fleet.cheapest(3, 30, 4, SERVICE_TIME, 1.4));
+        assertEquals(-1, fleet.cheapest(6, 30, 4, SERVICE_TIME, 1.4));
+        // Машин truck нет
+        assertEquals(-1, fleet.cheapest(12, 20, 4, SERVICE_TIME, 8));
+        assertEquals(1.3, fleet.time(0, 30, 4, SERVICE_TIME), 1e-9);
+        assertEquals(500 + 2 * 30, fleet.cost(0, 30), 1e-9);
+    }
+
+    @Test
+    void assignRespectsVehicleCounts() {
+        // Самый загруженный маршрут занимает van, остальные - small
+        int[] types = fleet.assign(new double[]{3, 8, 2}, new double[]{10, 10, 10}, new int[]{3, 3, 3},
+                SERVICE_TIME, 8);
+        assertArrayEquals(new int[]{0, 1, 0}, types);
+
+        // Третий маршрут на 3 м3 получает оставшийся van, хотя small дешевле
+        types = fleet.assign(new double[]{3, 3, 3}, new double[]{10, 10, 10}, new int[]{3, 3, 3},
+                SERVICE_TIME, 8);
+        assertNotNull(types);
+        assertEquals(2, Arrays.stream(types).filter(type -> type == 0).count());
+        assertEquals(1, Arrays.stream(types).filter(type -> type == 1).count());
+
+        // Двум маршрутам больше 4 м3 не хватает машин
+        assertNull(fleet.assign(new double[]{6, 6}, new double[]{10, 10}, new int[]{3, 3}, SERVICE_TIME, 8));
+    }
+
+    @Test
+    void lateRouteStillGetsVehicleWithRoom() {
+        // Ни один тип не успевает за 0.5 ч, но вместимость подходит
+        int[] types = fleet.assign(new double[]{5}, new double[]{30}, new int[]{4}, SERVICE_TIME, 0.5);
+        assertArrayEquals(new int[]{1}, types);
+    }
+
+    // Без FLEET - 3 машины вместимостью 12 со скоростью мобильного склада 40
+    private static Parameters params(List<VehicleType> fleet) {
+        return new Parameters(0.2, 0.1, 50, 1000, 500, 3000, 3, 2000, 1, 0.5, 5, 12, 2, 8,
+                SERVICE_TIME, 15, 40, TourImprovement.two_opt_or_opt, 200, 1, fleet);
+    }
+}
@@ -0,0 +1,117 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalSearchImproverTest {
+
+    private static final LocalSearchImprover[] IMPROVERS = {
+            LocalSearchImprover.TWO_OPT, LocalSearchImprover.TWO_OPT_OR_OPT};
+
+    @Test
+    void closedTourGetsNoLongerAndKeepsDepot() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 20; trial++) {
+            DistanceMatrix distances = new DistanceMatrix(randomPoints(random, 61));
+            int[] tour = new int[62];
+            // Склад 0 в начале и в конце, точки в случайном порядке
+            int[] shuffled = shuffled(random, 1, 61);
+            System.arraycopy(shuffled, 0, tour, 1, shuffled.length);
+            for (LocalSearchImprover improver : IMPROVERS) {
+                assertImproves(improver, tour.clone(), distances);
+            }
+        }
+    }
+
+    @Test
+    void openPathKeepsBothEndpoints() {
+        Random random = new Random(11);
+        for (int trial = 0; trial < 20; trial++) {
+            DistanceMatrix distances = new DistanceMatrix(randomPoints(random, 40));
+            int[] tour = shuffled(random, 0, 40);
+            for (LocalSearchImprover improver : IMPROVERS) {
+                assertImproves(improver, tour.clone(), distances);
+            }
+        }
+    }
+
+    @Test
+    void expiredDeadlineLeavesTourUnchanged() {
+        DistanceMatrix distances = new DistanceMatrix(randomPoints(new Random(3), 30));
+        int[] tour = shuffled(new Random(5), 0, 30);
+        int[] improved = tour.clone();
+        assertFalse(LocalSearchImprover.TWO_OPT_OR_OPT.improve(improved, distances, System.nanoTime() - 1));
+        assertArrayEquals(tour, improved);
+    }
+
+    @Test
+    void exhaustedBudgetIsReported() {
+        DistanceMatrix distances = new DistanceMatrix(randomPoints(new Random(3), 30));
+        int[] tour = shuffled(new Random(5), 0, 30);
+        ImprovementBudget budget = new ImprovementBudget(0);
+        budget.improve(LocalSearchImprover.TWO_OPT_OR_OPT, tour.clone(), distances);
+        assertTrue(budget.isExhausted());
+
+        // Короткий маршрут не улучшается и бюджет не расходует
+        ImprovementBudget shortTour = new ImprovementBudget(0);
+        shortTour.improve(LocalSearchImprover.TWO_OPT_OR_OPT, new int[]{0, 1, 2, 0}, distances);
+        assertFalse(shortTour.isExhausted());
+    }
+
+    @Test
+    void resultDoesNotDependOnTime() {
+        DistanceMatrix distances = new DistanceMatrix(randomPoints(new Random(13), 200));
+        int[] tour = shuffled(new Random(17), 0, 200);
+        ImprovementBudget budget = ImprovementBudget.unlimited();
+        int[] first = tour.clone();
+        int[] second = tour.clone();
+        budget.improve(LocalSearchImprover.TWO_OPT_OR_OPT, first, distances);
+        budget.improve(LocalSearchImprover.TWO_OPT_OR_OPT, second, distances);
+        assertFalse(budget.isExhausted());
+        assertArrayEquals(first, second);
+    }
+
+    private static void assertImproves(LocalSearchImprover improver, int[] tour, DistanceMatrix distances) {
+        int[] original = tour.clone();
+        double before = distances.routeLength(tour);
+        assertTrue(improver.improve(tour, distances, Long.MAX_VALUE));
+
+        assertTrue(distances.routeLength(tour) <= before + 1e-9);
+        assertEquals(original[0], tour[0]);
+        assertEquals(original[original.length - 1], tour[tour.length - 1]);
+        // Маршрут - перестановка тех же точек
+        int[] sortedBefore = original.clone();
+        int[] sortedAfter = tour.clone();
+        Arrays.sort(sortedBefore);
+        Arrays.sort(sortedAfter);
+        assertArrayEquals(sortedBefore, sortedAfter);
+    }
+
+    private static int[] shuffled(Random random, int from, int to) {
+        int[] values = new int[to - from];
+        Arrays.setAll(values, i -> from + i);
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+        return values;
+    }
+
+    private static PointSet randomPoints(Random random, int size) {
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = random.nextDouble() * 10;
+            ys[i] = random.nextDouble() * 10;
+        }
+        return new PointSet(xs, ys);
+    }
+}
@@ -0,0 +1,95 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.model.Order;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Склад в (0, 0), точки 1 и 2 на расстоянии 10 и 20 км по прямой; при скорости 10 км/ч переезд - час
+class RouteScheduleTest {
+
+    private static final double SPEED = 10;
+    private static final double SERVICE_TIME = 0.1;
+
+    private final PointSet points = new PointSet(new double[]{0, 10, 20}, new double[]{0, 0, 0});
+    private final DistanceMatrix distances = new DistanceMatrix(points);
+
+    @Test
+    void finishTimeIncludesServiceOfEveryStop() {
+        // Без окон: склад 0.1, точка 1 в 1.1-1.2, точка 2 в 2.2-2.3, возврат в 4.3 и обслуживание склада
+        TimeWindows windows = windows(null, null, null, null);
+        assertEquals(4.4, RouteSchedule.finishTime(new int[]{0, 1, 2, 0}, distances, SPEED, windows), 1e-9);
+    }
+
+    @Test
+    void courierWaitsForWindowToOpen() {
+        TimeWindows windows = windows(2.0, null, null, null);
+        // Ожидание в точке 1 до 2.0, дальше на 0.9 ч позже, чем без окна
+        assertEquals(5.3, RouteSchedule.finishTime(new int[]{0, 1, 2, 0}, distances, SPEED, windows), 1e-9);
+    }
+
+    @Test
+    void missedWindowMakesRouteInfeasible() {
+        TimeWindows windows = windows(null, null, null, 2.15);
+        // Через точку 1 до точки 2 доезжаем в 2.2, напрямую - в 2.1
+        assertEquals(Double.POSITIVE_INFINITY,
+                RouteSchedule.finishTime(new int[]{0, 1, 2, 0}, distances, SPEED, windows));
+        assertEquals(4.4, RouteSchedule.finishTime(new int[]{0, 2, 1, 0}, distances, SPEED, windows), 1e-9);
+        // Приезд ровно к закрытию допустим
+        assertEquals(4.4, RouteSchedule.finishTime(new int[]{0, 2, 1, 0}, distances, SPEED,
+                windows(null, null, null, 2.1)), 1e-9);
+    }
+
+    @Test
+    void latestDepartureKeepsAllWindows() {
+        TimeWindows windows = windows(null, 5.0, null, 3.0);
+        // В точке 2 не позже 3.0, значит в точке 1 не позже 1.9, выезд не позже 0.9
+        double latest = RouteSchedule.latestDeparture(points, 0, 0, new int[]{1, 2}, SPEED, windows);
+        assertEquals(0.9, latest, 1e-9);
+        // Обслуживание точки выезда уже закончено
+        assertEquals(2.0, RouteSchedule.latestDeparture(points, 10, 0, new int[]{2}, SPEED, windows), 1e-9);
+        assertEquals(Double.POSITIVE_INFINITY,
+                RouteSchedule.latestDeparture(points, 0, 0, new int[0], SPEED, windows));
+    }
+
+    @Test
+    void latestDepartureDetectsImpossibleOrder() {
+        // Точка 1 открывается в 2.5, а покинуть ее нужно до 1.9, чтобы успеть в точку 2
+        TimeWindows windows = windows(2.5, null, null, 3.0);
+        assertEquals(Double.NEGATIVE_INFINITY,
+                RouteSchedule.latestDeparture(points, 0, 0, new int[]{1, 2}, SPEED, windows));
+        assertTrue(RouteSchedule.latestDeparture(points, 0, 0, new int[]{2, 1}, SPEED, windows) > 0);
+    }
+
+    @Test
+    void orderServiceTimeOverridesDefault() {
+        Order order = new Order(1, 0.1);
+        order.setPointIndex(1);
+        order.setServiceTime(0.5);
+        TimeWindows windows = TimeWindows.of(List.of(order), points.size(), 0, SERVICE_TIME);
+        assertEquals(0.5, windows.service(1));
+        assertEquals(SERVICE_TIME, windows.service(2));
+        assertEquals(4.8, RouteSchedule.finishTime(new int[]{0, 1, 2, 0}, distances, SPEED, windows), 1e-9);
+        // Без окон и времени обслуживания расписание не строится
+        assertNull(TimeWindows.of(List.of(new Order(1, 0.1)), points.size(), 0, SERVICE_TIME));
+    }
+
+    // Окна точек 1 и 2; null - граница не задана
+    private TimeWindows windows(Double open1, Double close1, Double open2, Double close2) {
+        Order first = new Order(1, 0.1);
+        first.setPointIndex(1);
+        first.setTimeWindowStart(open1);
+        first.setTimeWindowEnd(close1);
+        Order second = new Order(2, 0.1);
+        second.setPointIndex(2);
+        second.setTimeWindowStart(open2);
+        second.setTimeWindowEnd(close2);
+        // Явное время обслуживания, чтобы окна строились и без границ
+        second.setServiceTime(SERVICE_TIME);
+        return TimeWindows.of(List.of(first, second), points.size(), 0, SERVICE_TIME);
+    }
+}
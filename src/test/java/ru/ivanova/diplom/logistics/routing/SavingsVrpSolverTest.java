@@ -0,0 +1,193 @@
+package ru.ivanova.diplom.logistics.routing;
+
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.model.Order;
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.model.TourImprovement;
+import ru.ivanova.diplom.logistics.model.VehicleType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Проверка допустимости решений: каждый заказ ровно в одном маршруте, вместимость, число машин, время
+class SavingsVrpSolverTest {
+
+    private static final int CUSTOMERS = 60;
+    private static final double SERVICE_TIME = 0.05;
+
+    private final Random random = new Random(2024);
+    private final PointSet points = randomPoints();
+    private final DistanceMatrix distances = new DistanceMatrix(points);
+    private final int[] customerPoint = customerPoints();
+    private final double[] demand = demands();
+    // Типы машин маршрутов последнего решения
+    private int[] routeTypes;
+
+    @Test
+    void singleTypeRespectsCapacityAndTime() {
+        Fleet fleet = Fleet.of(params(null, 12, 10));
+        List<int[]> routes = solve(fleet, 8, null);
+        assertFeasible(routes, fleet, 8, null);
+    }
+
+    @Test
+    void mixedFleetRespectsTypeCapacityAndCount() {
+        Fleet fleet = Fleet.of(params(List.of(
+                new VehicleType("small", 6, 4, 30, 500, 2),
+                new VehicleType("van", 3, 10, 25, 900, 3),
+                new VehicleType("truck", 1, 25, 20, 1500, 5)), 0, 0));
+        List<int[]> routes = solve(fleet, 8, null);
+        assertFeasible(routes, fleet, 8, null);
+    }
+
+    @Test
+    void routesMeetTimeWindows() {
+        List<Order> orders = new ArrayList<>();
+        for (int c = 0; c < CUSTOMERS; c++) {
+            Order order = new Order(c, demand[c]);
+            order.setPointIndex(customerPoint[c]);
+            // Окна половины точек: утро или вторая половина дня
+            if (c % 2 == 0) {
+                double start = c % 4 == 0 ? 0 : 3;
+                order.setTimeWindowStart(start);
+                order.setTimeWindowEnd(start + 3);
+            }
+            orders.add(order);
+        }
+        TimeWindows windows = TimeWindows.of(orders, points.size(), 0, SERVICE_TIME);
+        Fleet fleet = Fleet.of(params(null, 12, 10));
+        List<int[]> routes = solve(fleet, 8, windows);
+        assertFeasible(routes, fleet, 8, windows);
+    }
+
+    @Test
+    void failsWhenWindowCannotBeMet() {
+        List<Order> orders = new ArrayList<>();
+        for (int c = 0; c < CUSTOMERS; c++) {
+            Order order = new Order(c, demand[c]);
+            order.setPointIndex(customerPoint[c]);
+            orders.add(order);
+        }
+        // Окно закрывается раньше, чем до точки можно доехать со склада
+        orders.get(5).setTimeWindowEnd(0.01);
+        TimeWindows windows = TimeWindows.of(orders, points.size(), 0, SERVICE_TIME);
+        Fleet fleet = Fleet.of(params(null, 12, 10));
+        RuntimeException e = assertThrows(RuntimeException.class, () -> solve(fleet, 8, windows));
+        assertTrue(e.getMessage().contains("point " + customerPoint[5]), e.getMessage());
+    }
+
+    @Test
+    void routesAreReducedToFleetSize() {
+        // Вместимость почти впритык: соседних пар не хватает, лишние маршруты сливаются или расформировываются
+        double total = 0;
+        for (double volume : demand) {
+            total += volume;
+        }
+        Fleet fleet = Fleet.of(params(null, 6, total / 6 * 1.05));
+        List<int[]> routes = solve(fleet, 100, null);
+        assertTrue(routes.size() <= 6);
+        assertFeasible(routes, fleet, 100, null);
+    }
+
+    @Test
+    void failsWhenNoPlanMeetsTimeLimit() {
+        Fleet fleet = Fleet.of(params(null, 12, 10));
+        RuntimeException e = assertThrows(RuntimeException.class, () -> solve(fleet, 0.6, null));
+        assertTrue(e.getMessage().contains("time limit"), e.getMessage());
+    }
+
+    @Test
+    void failsWhenOrdersExceedFleetCapacity() {
+        Fleet fleet = Fleet.of(params(null, 2, 1));
+        RuntimeException e = assertThrows(RuntimeException.class, () -> solve(fleet, 8, null));
+        assertTrue(e.getMessage().contains("capacity"), e.getMessage());
+    }
+
+    private List<int[]> solve(Fleet fleet, double maxTime, TimeWindows windows) {
+        SavingsVrpSolver solver = new SavingsVrpSolver(distances, 0, customerPoint, demand, fleet, maxTime,
+                SERVICE_TIME, windows);
+        List<int[]> routes = solver.solve(ImprovementBudget.unlimited());
+        assertEquals(routes.size(), solver.getRouteTypes().length);
+        this.routeTypes = solver.getRouteTypes();
+        return routes;
+    }
+
+    private void assertFeasible(List<int[]> routes, Fleet fleet, double maxTime, TimeWindows windows) {
+        int[] visits = new int[points.size()];
+        int[] used = new int[fleet.types()];
+        for (int r = 0; r < routes.size(); r++) {
+            int[] route = routes.get(r);
+            int type = routeTypes[r];
+            used[type]++;
+            assertEquals(0, route[0]);
+            assertEquals(0, route[route.length - 1]);
+
+            double load = 0;
+            for (int k = 1; k < route.length - 1; k++) {
+                visits[route[k]]++;
+                load += demandOf(route[k]);
+            }
+            assertTrue(load <= fleet.capacity(type) + 1e-9, "route " + r + " overloaded");
+
+            double time = windows == null
+                    ? fleet.time(type, distances.routeLength(route), route.length - 2, SERVICE_TIME)
+                    : RouteSchedule.finishTime(route, distances, fleet.speed(type), windows);
+            assertTrue(time <= maxTime + RouteSchedule.EPSILON, "route " + r + " is late: " + time);
+        }
+        for (int t = 0; t < fleet.types(); t++) {
+            assertTrue(used[t] <= fleet.count(t), "too many vehicles of type " + fleet.name(t));
+        }
+        for (int c : customerPoint) {
+            assertEquals(1, visits[c], "point " + c + " must be visited once");
+        }
+    }
+
+    private double demandOf(int point) {
+        for (int c = 0; c < customerPoint.length; c++) {
+            if (customerPoint[c] == point) {
+                return demand[c];
+            }
+        }
+        throw new AssertionError("Point " + point + " is not a customer");
+    }
+
+    // Без FLEET - count машин вместимостью capacity со скоростью 25
+    private static Parameters params(List<VehicleType> fleet, int count, double capacity) {
+        return new Parameters(0.2, 0.1, 50, 1000, 500, 3000, count, 2000, 1, 0.5, 5, capacity, 2, 8,
+                SERVICE_TIME, 15, 25, TourImprovement.two_opt_or_opt, 200, 1, fleet);
+    }
+
+    // Склад в точке 0 в центре, заказы - точки 1..CUSTOMERS в квадрате 20 x 20 км
+    private PointSet randomPoints() {
+        double[] xs = new double[CUSTOMERS + 1];
+        double[] ys = new double[CUSTOMERS + 1];
+        xs[0] = 10;
+        ys[0] = 10;
+        for (int i = 1; i <= CUSTOMERS; i++) {
+            xs[i] = random.nextDouble() * 20;
+            ys[i] = random.nextDouble() * 20;
+        }
+        return new PointSet(xs, ys);
+    }
+
+    private static int[] customerPoints() {
+        int[] result = new int[CUSTOMERS];
+        for (int c = 0; c < CUSTOMERS; c++) {
+            result[c] = c + 1;
+        }
+        return result;
+    }
+
+    private double[] demands() {
+        double[] result = new double[CUSTOMERS];
+        for (int c = 0; c < CUSTOMERS; c++) {
+            result[c] = 0.1 + random.nextInt(10) * 0.1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+package ru.ivanova.diplom.logistics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.model.BatchResult;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.service.RabbitMQSender.OutgoingMessage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+// Модели пакета считаются независимо: ошибка одной не отменяет результат другой
+class BatchOptimizationServiceTest {
+
+    private static final byte[] STATIC_RESULT = "{\"static\":1}".getBytes();
+    private static final byte[] DYNAMIC_RESULT = "{\"dynamic\":1}".getBytes();
+
+    private final OptimizationService optimizationService = mock(OptimizationService.class);
+    private final StaticModelService staticModelService = mock(StaticModelService.class);
+    private final RabbitMQSender sender = mock(RabbitMQSender.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final BatchOptimizationService service = new BatchOptimizationService(optimizationService,
+            staticModelService, sender, new OptimizationMetrics(new SimpleMeterRegistry()), executor, 16);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void failedModelKeepsResultOfTheOther() throws InterruptedException {
+        // Окно отправки очищается после вызова, поэтому сообщения копируются сразу
+        List<OutgoingMessage> sent = new ArrayList<>();
+        doAnswer(invocation -> sent.addAll(invocation.getArgument(0))).when(sender).sendBatch(any());
+        OptimizationRequest staticFails = mock(OptimizationRequest.class);
+        OptimizationRequest dynamicFails = mock(OptimizationRequest.class);
+        when(staticModelService.buildResult(same(staticFails))).thenThrow(new RuntimeException("static failed"));
+        when(staticModelService.buildResult(same(dynamicFails))).thenReturn(STATIC_RESULT);
+        when(optimizationService.buildResult(same(staticFails), any())).thenReturn(DYNAMIC_RESULT);
+        when(optimizationService.buildResult(same(dynamicFails), any()))
+                .thenThrow(new RuntimeException("dynamic failed"));
+
+        List<BatchResult> results = new ArrayList<>();
+        service.optimize(List.of(staticFails, dynamicFails), results::add);
+        results.sort(Comparator.comparingInt(BatchResult::getIndex));
+
+        assertNull(results.get(0).getStaticResult());
+        assertEquals("static failed", results.get(0).getStaticError());
+        assertArrayEquals(DYNAMIC_RESULT, results.get(0).getDynamicResult());
+        assertNull(results.get(0).getDynamicError());
+
+        assertArrayEquals(STATIC_RESULT, results.get(1).getStaticResult());
+        assertNull(results.get(1).getStaticError());
+        assertNull(results.get(1).getDynamicResult());
+        assertEquals("dynamic failed", results.get(1).getDynamicError());
+
+        // Отправляются только рассчитанные модели
+        assertEquals(2, sent.size());
+        assertEquals(1, sent.stream().filter(message -> message.body() == STATIC_RESULT).count());
+        assertEquals(1, sent.stream().filter(message -> message.body() == DYNAMIC_RESULT).count());
+    }
+}
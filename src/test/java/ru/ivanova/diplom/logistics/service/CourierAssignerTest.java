@@ -0,0 +1,101 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.apache.commons.math3.ml.clustering.DoublePoint;
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.geometry.ClusterSplitter;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.routing.ImprovementBudget;
+import ru.ivanova.diplom.logistics.routing.TourImprover;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CourierAssignerTest {
+
+    private static final int POINTS = 40;
+
+    @Test
+    void couriersUsedMatchesAssignment() {
+        Random random = new Random(21);
+        for (int trial = 0; trial < 20; trial++) {
+            PointSet points = randomPoints(random);
+            List<int[]> groups = randomGroups(random);
+            List<ClusterSplitter.Node> clusters = new ClusterSplitter(points, groups).split(random.nextDouble() * 3);
+            int[] courierPoints = courierPoints(points, clusters);
+            for (int couriers = 1; couriers <= 12; couriers++) {
+                CourierAssigner assigner = new CourierAssigner(points, toDoublePoints(points), new ClusteringCache(),
+                        TourImprover.NONE, ImprovementBudget.unlimited(), null, 15);
+                CourierAssigner.Assignment assignment = assigner.assign(groups.size(), clusters, null, couriers);
+                int used = 0;
+                for (int courier : assignment.getCourierOrder()) {
+                    if (assignment.getCount(courier) > 0) {
+                        used++;
+                    }
+                }
+                assertEquals(used, OptimizationService.couriersUsed(courierPoints, couriers),
+                        "trial " + trial + ", couriers " + couriers);
+            }
+        }
+    }
+
+    @Test
+    void couriersUsedIsLimitedByCouriersAndPoints() {
+        assertEquals(0, OptimizationService.couriersUsed(new int[]{0, 0}, 5));
+        assertEquals(3, OptimizationService.couriersUsed(new int[]{1, 0, 2}, 5));
+        assertEquals(5, OptimizationService.couriersUsed(new int[]{4, 4}, 5));
+        assertEquals(2, OptimizationService.couriersUsed(new int[]{7}, 2));
+    }
+
+    // Точки кластера, не совпадающие с центром; у кластеров из одной точки - 0
+    private static int[] courierPoints(PointSet points, List<ClusterSplitter.Node> clusters) {
+        int[] result = new int[clusters.size()];
+        for (int k = 0; k < clusters.size(); k++) {
+            ClusterSplitter.Node node = clusters.get(k);
+            if (node.getMembers().length == 1) {
+                continue;
+            }
+            for (int point : node.getMembers()) {
+                if (points.getX(point) != node.getCenterX() || points.getY(point) != node.getCenterY()) {
+                    result[k]++;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Случайное разбиение точек на 1..6 групп
+    private static List<int[]> randomGroups(Random random) {
+        int count = 1 + random.nextInt(6);
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int g = 0; g < count; g++) {
+            groups.add(new ArrayList<>());
+        }
+        for (int i = 0; i < POINTS; i++) {
+            groups.get(random.nextInt(count)).add(i);
+        }
+        List<int[]> result = new ArrayList<>();
+        for (List<Integer> group : groups) {
+            if (!group.isEmpty()) {
+                result.add(group.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        return result;
+    }
+
+    private static PointSet randomPoints(Random random) {
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = random.nextDouble() * 10;
+            ys[i] = random.nextDouble() * 10;
+        }
+        return new PointSet(xs, ys);
+    }
+
+    private static List<DoublePoint> toDoublePoints(PointSet points) {
+        return points.toDoublePoints(0, points.size());
+    }
+}
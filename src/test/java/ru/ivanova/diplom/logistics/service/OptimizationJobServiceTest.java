@@ -0,0 +1,76 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.model.JobStatus;
+import ru.ivanova.diplom.logistics.model.OptimizationJob;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OptimizationJobServiceTest {
+
+    private static final byte[] RESULT = "{}".getBytes();
+
+    private final OptimizationService optimizationService = mock(OptimizationService.class);
+    private final StaticModelService staticModelService = mock(StaticModelService.class);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final OptimizationJobService service = new OptimizationJobService(optimizationService,
+            staticModelService, executor, 3_600_000);
+    private final OptimizationRequest request = mock(OptimizationRequest.class);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void staticErrorDoesNotStopDynamicModel() throws Exception {
+        when(staticModelService.optimizeCourierRoutes(any())).thenThrow(new RuntimeException("static failed"));
+        when(optimizationService.optimizeRoute(any(), any())).thenReturn(RESULT);
+
+        OptimizationJob job = finished(service.submit(request));
+
+        assertEquals(JobStatus.done, job.getStatus());
+        assertEquals(JobStatus.failed, job.getStaticStatus());
+        assertEquals("static failed", job.getStaticError());
+        assertEquals(JobStatus.done, job.getDynamicStatus());
+        assertArrayEquals(RESULT, job.getDynamicResult());
+    }
+
+    @Test
+    void dynamicErrorKeepsStaticResult() throws Exception {
+        when(staticModelService.optimizeCourierRoutes(any())).thenReturn(RESULT);
+        when(optimizationService.optimizeRoute(any(), any())).thenThrow(new RuntimeException("dynamic failed"));
+
+        OptimizationJob job = finished(service.submit(request));
+
+        assertEquals(JobStatus.done, job.getStatus());
+        assertArrayEquals(RESULT, job.getStaticResult());
+        assertEquals(JobStatus.failed, job.getDynamicStatus());
+        assertEquals("dynamic failed", job.getDynamicError());
+    }
+
+    @Test
+    void jobFailsWhenBothModelsFail() throws Exception {
+        when(staticModelService.optimizeCourierRoutes(any())).thenThrow(new RuntimeException("static failed"));
+        when(optimizationService.optimizeRoute(any(), any())).thenThrow(new RuntimeException("dynamic failed"));
+
+        OptimizationJob job = finished(service.submit(request));
+
+        assertEquals(JobStatus.failed, job.getStatus());
+        assertEquals("static failed", job.getStaticError());
+        assertEquals("dynamic failed", job.getDynamicError());
+    }
+
+    private static OptimizationJob finished(OptimizationJob job) throws Exception {
+        job.getTask().get(5, TimeUnit.SECONDS);
+        return job;
+    }
+}
@@ -0,0 +1,243 @@
+package ru.ivanova.diplom.logistics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.geometry.DistanceMatrix;
+import ru.ivanova.diplom.logistics.geometry.DistanceStore;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.Order;
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.model.PlanSession;
+import ru.ivanova.diplom.logistics.model.TourImprovement;
+import ru.ivanova.diplom.logistics.routing.Fleet;
+import ru.ivanova.diplom.logistics.routing.RouteSchedule;
+import ru.ivanova.diplom.logistics.routing.TimeWindows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Проверка плана после каждого изменения: каждый заказ ровно в одном маршруте, загрузка и время
+class PlanSessionServiceTest {
+
+    private static final int ORDERS = 12;
+    private static final double SPEED = 25;
+
+    private final StaticModelService staticModelService = new StaticModelService(null,
+            new OptimizationMetrics(new SimpleMeterRegistry()), null, null, DistanceStore.disabled());
+    private final PlanSessionService service = new PlanSessionService(staticModelService, DistanceStore.disabled(),
+            3_600_000, 4);
+
+    @Test
+    void addRemoveAndChangeVolumeKeepPlanValid() {
+        PlanSession session = service.create(request(params(4, 3, 8), false));
+        assertValid(session);
+
+        service.addOrder(session, new Order(100, 0.4), 3, 3);
+        service.addOrder(session, new Order(101, 0.6), -4, 2);
+        assertValid(session);
+
+        service.removeOrder(session, 3);
+        service.changeVolume(session, 5, 0.9);
+        assertValid(session);
+        assertEquals(ORDERS + 1, session.getOrders().size());
+        assertEquals(0.9, session.getOrders().get(5).getVolume());
+    }
+
+    @Test
+    void rejectedAddLeavesPlanUnchanged() {
+        PlanSession session = service.create(request(params(4, 3, 2), false));
+        List<int[]> routes = copy(session.getRoutes());
+        double[] loads = session.getLoads().clone();
+        int points = session.getDistances().size();
+
+        // До точки и обратно больше MAX_TIME
+        assertThrows(IllegalStateException.class, () -> service.addOrder(session, new Order(100, 0.1), 40, 40));
+
+        assertPlanEquals(routes, loads, session);
+        assertEquals(points, session.getDistances().size());
+        assertFalse(session.getOrders().containsKey(100));
+        assertThrows(IllegalArgumentException.class, () -> service.addOrder(session, new Order(1, 0.1), 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> service.addOrder(session, new Order(100, 5), 1, 1));
+    }
+
+    @Test
+    void changeVolumeRollsBackWhenNoCarHasRoom() {
+        // Две машины вместимостью 1 заполнены заказами по 0.5
+        PlanSession session = service.create(fullFleetRequest(2));
+        List<int[]> routes = copy(session.getRoutes());
+        double[] loads = session.getLoads().clone();
+
+        assertThrows(IllegalStateException.class, () -> service.changeVolume(session, 0, 0.6));
+
+        assertPlanEquals(routes, loads, session);
+        assertEquals(0.5, session.getOrders().get(0).getVolume());
+        assertThrows(NoSuchElementException.class, () -> service.changeVolume(session, 999, 0.1));
+    }
+
+    @Test
+    void changeVolumeMovesOrderToCarWithRoom() {
+        PlanSession session = service.create(fullFleetRequest(3));
+        service.changeVolume(session, 0, 0.9);
+        assertEquals(0.9, session.getOrders().get(0).getVolume());
+        assertValid(session);
+    }
+
+    @Test
+    void timeWindowsAreKeptOnCreateAndInsert() {
+        PlanSession session = service.create(request(params(4, 3, 8), true));
+        assertNotNull(session.getWindows());
+        assertValid(session);
+
+        Order early = new Order(100, 0.2);
+        early.setTimeWindowStart(0.0);
+        early.setTimeWindowEnd(1.5);
+        service.addOrder(session, early, 2, -2);
+        Order late = new Order(101, 0.2);
+        late.setTimeWindowStart(5.0);
+        late.setTimeWindowEnd(6.0);
+        late.setServiceTime(0.2);
+        service.addOrder(session, late, -2, 2);
+        assertValid(session);
+
+        // Окно закрывается раньше, чем до точки можно доехать
+        TimeWindows windows = session.getWindows();
+        Order impossible = new Order(102, 0.2);
+        impossible.setTimeWindowEnd(0.1);
+        assertThrows(IllegalStateException.class, () -> service.addOrder(session, impossible, 9, 9));
+        assertSame(windows, session.getWindows());
+        assertValid(session);
+    }
+
+    @Test
+    void windowsAppearWithFirstWindowedOrder() {
+        PlanSession session = service.create(request(params(4, 3, 8), false));
+        assertNull(session.getWindows());
+        Order order = new Order(100, 0.2);
+        order.setTimeWindowStart(1.0);
+        order.setTimeWindowEnd(2.0);
+        service.addOrder(session, order, 1, 1);
+        assertNotNull(session.getWindows());
+        assertEquals(1.0, session.getWindows().open(order.getPointIndex()));
+        assertValid(session);
+    }
+
+    @Test
+    void sessionCountIsBounded() {
+        PlanSessionService bounded = new PlanSessionService(staticModelService, DistanceStore.disabled(),
+                3_600_000, 1);
+        PlanSession session = bounded.create(request(params(4, 3, 8), false));
+        assertThrows(RejectedExecutionException.class, () -> bounded.create(request(params(4, 3, 8), false)));
+        bounded.close(session.getId());
+        assertNotNull(bounded.create(request(params(4, 3, 8), false)));
+    }
+
+    @Test
+    void expiredSessionIsRemovedOnAccess() {
+        PlanSessionService expiring = new PlanSessionService(staticModelService, DistanceStore.disabled(), -1, 4);
+        PlanSession session = expiring.create(request(params(4, 3, 8), false));
+        assertNull(expiring.get(session.getId()));
+    }
+
+    private void assertValid(PlanSession session) {
+        Fleet fleet = Fleet.of(session.getParams());
+        DistanceMatrix distances = session.getDistances();
+        int[] visits = new int[distances.size()];
+        for (int r = 0; r < session.getRoutes().size(); r++) {
+            int[] route = session.getRoutes().get(r);
+            if (route.length == 0) {
+                continue;
+            }
+            assertEquals(0, route[0]);
+            assertEquals(0, route[route.length - 1]);
+            double load = 0;
+            for (int k = 1; k < route.length - 1; k++) {
+                visits[route[k]]++;
+                load += volumeAt(session, route[k]);
+            }
+            assertEquals(load, session.getLoads()[r], 1e-9);
+            assertTrue(load <= fleet.capacity(fleet.typeOf(r)) + 1e-9);
+
+            double speed = fleet.speed(fleet.typeOf(r));
+            double processing = route.length * session.getParams().getORDER_PROCESSING_TIME();
+            double time = session.getWindows() == null
+                    ? distances.routeLength(route) / speed + processing
+                    : RouteSchedule.finishTime(route, distances, speed, session.getWindows());
+            assertTrue(time <= session.getParams().getMAX_TIME(), "route " + r + " is late: " + time);
+        }
+        for (Order order : session.getOrders().values()) {
+            assertEquals(1, visits[order.getPointIndex()], "order " + order.getId() + " must be planned once");
+        }
+    }
+
+    private static double volumeAt(PlanSession session, int point) {
+        double volume = 0;
+        for (Order order : session.getOrders().values()) {
+            if (order.getPointIndex() == point) {
+                volume += order.getVolume();
+            }
+        }
+        return volume;
+    }
+
+    private static void assertPlanEquals(List<int[]> routes, double[] loads, PlanSession session) {
+        for (int r = 0; r < routes.size(); r++) {
+            assertArrayEquals(routes.get(r), session.getRoutes().get(r));
+        }
+        assertArrayEquals(loads, session.getLoads());
+    }
+
+    private static List<int[]> copy(List<int[]> routes) {
+        List<int[]> copy = new ArrayList<>();
+        for (int[] route : routes) {
+            copy.add(route.clone());
+        }
+        return copy;
+    }
+
+    // Склад в (0, 0), заказы с номерами 0..ORDERS-1 в точках 1..ORDERS в квадрате 10 x 10 км;
+    // с windows у четных заказов утреннее или дневное окно
+    private static OptimizationRequest request(Parameters params, boolean windows) {
+        Random random = new Random(17);
+        double[] xs = new double[ORDERS + 1];
+        double[] ys = new double[ORDERS + 1];
+        List<Order> orders = new ArrayList<>();
+        for (int i = 1; i <= ORDERS; i++) {
+            xs[i] = random.nextDouble() * 10 - 5;
+            ys[i] = random.nextDouble() * 10 - 5;
+            Order order = new Order(i - 1, 0.1 + random.nextInt(5) * 0.1);
+            order.setPointIndex(i);
+            if (windows && i % 2 == 0) {
+                double start = i % 4 == 0 ? 0 : 3;
+                order.setTimeWindowStart(start);
+                order.setTimeWindowEnd(start + 3);
+            }
+            orders.add(order);
+        }
+        return new OptimizationRequest(new PointSet(xs, ys), orders, params, "{}", "test");
+    }
+
+    // Четыре заказа по 0.5 рядом со складом, машины вместимостью 1
+    private static OptimizationRequest fullFleetRequest(int couriers) {
+        double[] xs = {0, 1, -1, 1, -1};
+        double[] ys = {0, 1, 1, -1, -1};
+        List<Order> orders = new ArrayList<>();
+        for (int i = 1; i < xs.length; i++) {
+            Order order = new Order(i - 1, 0.5);
+            order.setPointIndex(i);
+            orders.add(order);
+        }
+        return new OptimizationRequest(new PointSet(xs, ys), orders, params(couriers, 1, 8), "{}", "test");
+    }
+
+    private static Parameters params(int couriers, double capacity, double maxTime) {
+        return new Parameters(0.2, 0.1, 50, 1000, 500, 3000, couriers, 2000, 1, 0.5, 5, capacity, 2, maxTime,
+                0.05, 15, SPEED, TourImprovement.two_opt_or_opt, 200, 1, List.of());
+    }
+
+}
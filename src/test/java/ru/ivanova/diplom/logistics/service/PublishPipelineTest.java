@@ -0,0 +1,166 @@
+package ru.ivanova.diplom.logistics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import ru.ivanova.diplom.logistics.service.RabbitMQSender.OutgoingMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+// Отправка через заглушку AmqpTemplate: простой шаблон без подтверждений брокера
+class PublishPipelineTest {
+
+    private static final String QUEUE = "test-queue";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AmqpTemplate template = mock(AmqpTemplate.class);
+    private PublishPipeline pipeline;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (pipeline != null) {
+            pipeline.destroy();
+        }
+    }
+
+    @Test
+    void retriesWithGrowingBackoffUpToMaxAttempts() throws InterruptedException {
+        List<Long> attempts = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            attempts.add(System.nanoTime());
+            throw new AmqpException("broker unavailable");
+        }).when(template).send(eq(QUEUE), any(Message.class));
+        pipeline = pipeline(16, 3, 30, "none", 4096, 1000);
+
+        pipeline.submit(message(10));
+
+        assertTrue(pipeline.flush(5000));
+        verify(template, times(3)).send(eq(QUEUE), any(Message.class));
+        // Пауза удваивается: 30 мс перед второй попыткой, 60 мс перед третьей
+        assertTrue(attempts.get(1) - attempts.get(0) >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertTrue(attempts.get(2) - attempts.get(1) >= TimeUnit.MILLISECONDS.toNanos(60));
+        assertEquals(2, registry.counter("optimization.publish.retries").count());
+        assertEquals(1, messages("failed"));
+        assertEquals(0, messages("confirmed"));
+        assertEquals(0, pipeline.getUnconfirmed());
+    }
+
+    @Test
+    void confirmsAfterSuccessfulRetry() throws InterruptedException {
+        doThrow(new AmqpException("connection reset"))
+                .doNothing()
+                .when(template).send(eq(QUEUE), any(Message.class));
+        pipeline = pipeline(16, 5, 1, "none", 4096, 1000);
+
+        pipeline.submit(message(10));
+
+        assertTrue(pipeline.flush(5000));
+        verify(template, times(2)).send(eq(QUEUE), any(Message.class));
+        assertEquals(1, registry.counter("optimization.publish.retries").count());
+        assertEquals(1, messages("confirmed"));
+        assertEquals(0, messages("failed"));
+    }
+
+    @Test
+    void compressesLargeBodiesWithGzipHeader() throws Exception {
+        pipeline = pipeline(16, 1, 1, PublishPipeline.GZIP, 100, 1000);
+        byte[] large = body(1000);
+        byte[] small = body(10);
+
+        pipeline.submit(new OutgoingMessage(QUEUE, large, Map.of("type", "static")));
+        pipeline.submit(new OutgoingMessage(QUEUE, small, Map.of("type", "static")));
+
+        assertTrue(pipeline.flush(5000));
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(template, times(2)).send(eq(QUEUE), sent.capture());
+
+        Message compressed = sent.getAllValues().get(0);
+        assertEquals(PublishPipeline.GZIP, compressed.getMessageProperties().getContentEncoding());
+        assertEquals("static", compressed.getMessageProperties().getHeader("type"));
+        assertTrue(compressed.getBody().length < large.length);
+        assertArrayEquals(large, gunzip(compressed.getBody()));
+
+        // Тело меньше порога отправляется без сжатия
+        Message plain = sent.getAllValues().get(1);
+        assertEquals(StandardCharsets.UTF_8.name(), plain.getMessageProperties().getContentEncoding());
+        assertArrayEquals(small, plain.getBody());
+    }
+
+    @Test
+    void rejectsWhenBufferIsFullAndFlushWaitsForAccepted() throws InterruptedException {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return null;
+        }).when(template).send(eq(QUEUE), any(Message.class));
+        pipeline = pipeline(1, 1, 1, "none", 4096, 20);
+
+        // Первое сообщение в отправке, второе занимает буфер, третье не принимается
+        pipeline.submit(message(10));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        pipeline.submit(message(10));
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(message(10)));
+
+        assertEquals(1, messages("rejected"));
+        assertEquals(2, pipeline.getUnconfirmed());
+        assertFalse(pipeline.flush(50));
+
+        release.countDown();
+        assertTrue(pipeline.flush(5000));
+        assertEquals(0, pipeline.getUnconfirmed());
+        assertEquals(2, messages("confirmed"));
+    }
+
+    @Test
+    void rejectsAfterShutdown() throws InterruptedException {
+        pipeline = pipeline(16, 1, 1, "none", 4096, 1000);
+        pipeline.destroy();
+
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(message(10)));
+        assertEquals(0, pipeline.getUnconfirmed());
+        assertEquals(1, messages("rejected"));
+    }
+
+    private PublishPipeline pipeline(int bufferCapacity, int maxAttempts, long backoffMillis, String compression,
+                                     int compressionMinBytes, long offerTimeoutMillis) {
+        return new PublishPipeline(template, registry, bufferCapacity, 16, maxAttempts, backoffMillis, 1000,
+                offerTimeoutMillis, compression, compressionMinBytes);
+    }
+
+    private double messages(String result) {
+        return registry.counter("optimization.publish.messages", "result", result).count();
+    }
+
+    private static OutgoingMessage message(int size) {
+        return new OutgoingMessage(QUEUE, body(size), Map.of());
+    }
+
+    private static byte[] body(int size) {
+        return "{\"a\":1}".repeat(size / 7 + 1).substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.ivanova.diplom.logistics.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    private static final byte[] RESULT = {1, 2, 3};
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void resultsAreKeptPerModel() {
+        ResultCache cache = new ResultCache(4, 60_000, registry);
+        cache.put("static", "a", RESULT);
+        assertSame(RESULT, cache.get("static", "a"));
+        assertNull(cache.get("dynamic", "a"));
+        assertNull(cache.get("static", "b"));
+
+        assertEquals(1, registry.counter("optimization.cache.requests", "model", "static", "result", "hit").count());
+        assertEquals(1, registry.counter("optimization.cache.requests", "model", "static", "result", "miss").count());
+        assertEquals(1, registry.get("optimization.cache.size").gauge().value());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        ResultCache cache = new ResultCache(2, 60_000, registry);
+        cache.put("static", "a", RESULT);
+        cache.put("static", "b", RESULT);
+        // Обращение к a делает давно не использованной запись b
+        assertNotNull(cache.get("static", "a"));
+        cache.put("static", "c", RESULT);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("static", "a"));
+        assertNull(cache.get("static", "b"));
+        assertNotNull(cache.get("static", "c"));
+        assertEquals(1, registry.counter("optimization.cache.evictions").count());
+    }
+
+    @Test
+    void expiredEntriesAreRemoved() throws InterruptedException {
+        ResultCache cache = new ResultCache(4, 50, registry);
+        cache.put("static", "a", RESULT);
+        cache.put("static", "b", RESULT);
+        assertNotNull(cache.get("static", "a"));
+        Thread.sleep(100);
+
+        assertNull(cache.get("static", "a"));
+        assertEquals(1, registry.counter("optimization.cache.evictions").count());
+        // Истекшие записи удаляются и при добавлении новых
+        cache.put("static", "c", RESULT);
+        assertEquals(1, cache.size());
+        assertEquals(2, registry.counter("optimization.cache.evictions").count());
+        assertNotNull(cache.get("static", "c"));
+    }
+
+    @Test
+    void zeroEntriesDisableCache() {
+        ResultCache cache = new ResultCache(0, 60_000, registry);
+        cache.put("static", "a", RESULT);
+        assertNull(cache.get("static", "a"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,143 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.model.ConfigurationCost;
+import ru.ivanova.diplom.logistics.model.SweepConfiguration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SweepEngineTest {
+
+    private static final int CONFIGURATIONS = 200;
+
+    private final ExecutorService sweepExecutor = Executors.newFixedThreadPool(2);
+    private final ExecutorService caller = Executors.newSingleThreadExecutor();
+    private final SweepEngine engine = new SweepEngine(sweepExecutor, 2, 0, 3);
+
+    @AfterEach
+    void tearDown() {
+        sweepExecutor.shutdownNow();
+        caller.shutdownNow();
+    }
+
+    @Test
+    void keepsCheapestAlternativesAndPrunesTheRest() {
+        SweepState state = engine.newState(CONFIGURATIONS, 10, 3);
+        // Расходы равны нижней оценке: после трех лучших остальные отсекаются
+        List<ConfigurationCost> best = engine.run(configurations(), state, SweepConfiguration::getCouriers,
+                (configuration, sweepState) -> new ConfigurationCost(configuration, configuration.getCouriers(), 1));
+
+        assertEquals(List.of(0, 1, 2), best.stream().map(cost -> cost.getConfiguration().getIndex()).toList());
+        assertEquals(CONFIGURATIONS, state.getEvaluated() + state.getPruned());
+        assertTrue(state.getPruned() > 0);
+    }
+
+    @Test
+    void prunedSweepFindsSameAlternativesAsFullSweep() {
+        // Случайные расходы и нижние оценки не выше расходов; часть решений не успевает за MAX_TIME
+        Random random = new Random(7);
+        double[] expenses = new double[CONFIGURATIONS];
+        double[] bounds = new double[CONFIGURATIONS];
+        double[] times = new double[CONFIGURATIONS];
+        for (int i = 0; i < CONFIGURATIONS; i++) {
+            expenses[i] = Math.round(1000 + random.nextDouble() * 1000);
+            bounds[i] = expenses[i] * random.nextDouble();
+            times[i] = random.nextDouble() * 12;
+        }
+        SweepState state = engine.newState(CONFIGURATIONS, 10, 3);
+        List<ConfigurationCost> best = engine.run(configurations(), state,
+                configuration -> bounds[configuration.getIndex()],
+                (configuration, sweepState) -> new ConfigurationCost(configuration,
+                        expenses[configuration.getIndex()], times[configuration.getIndex()]));
+
+        List<Integer> expected = IntStream.range(0, CONFIGURATIONS).boxed()
+                .filter(i -> times[i] <= 10)
+                .sorted(Comparator.<Integer>comparingDouble(i -> expenses[i]).thenComparingInt(i -> i))
+                .limit(3)
+                .toList();
+        assertEquals(expected, best.stream().map(cost -> cost.getConfiguration().getIndex()).toList());
+        assertTrue(state.getPruned() > 0);
+    }
+
+    @Test
+    void cancelStopsWorkersAndDiscardsPartialResult() throws Exception {
+        SweepState state = engine.newState(CONFIGURATIONS, 10);
+        AtomicInteger evaluated = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        Future<List<ConfigurationCost>> sweep = caller.submit(() -> engine.run(configurations(), state,
+                configuration -> 0, (configuration, sweepState) -> {
+                    started.countDown();
+                    evaluated.incrementAndGet();
+                    sleep(5);
+                    return new ConfigurationCost(configuration, 1, 1);
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        state.cancel();
+
+        Exception e = assertThrows(Exception.class, () -> sweep.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, e.getCause());
+        assertTrue(evaluated.get() < CONFIGURATIONS);
+    }
+
+    @Test
+    void interruptedCallerCancelsSweep() throws Exception {
+        SweepState state = engine.newState(CONFIGURATIONS, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        Future<List<ConfigurationCost>> sweep = caller.submit(() -> engine.run(configurations(), state,
+                configuration -> 0, (configuration, sweepState) -> {
+                    started.countDown();
+                    sleep(5);
+                    return new ConfigurationCost(configuration, 1, 1);
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        sweep.cancel(true);
+
+        // Исполнители перебора видят отмену через состояние и освобождают пул
+        assertTrue(waitFor(state::isCancelled));
+        sweepExecutor.shutdown();
+        assertTrue(sweepExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(state.getEvaluated() < CONFIGURATIONS);
+    }
+
+    // Конфигурации с 1..CONFIGURATIONS курьерами
+    private static List<SweepConfiguration> configurations() {
+        List<SweepConfiguration> configurations = new ArrayList<>();
+        for (int i = 0; i < CONFIGURATIONS; i++) {
+            configurations.add(new SweepConfiguration(i, 2, i + 1, 0.5));
+        }
+        return configurations;
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        return condition.getAsBoolean();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
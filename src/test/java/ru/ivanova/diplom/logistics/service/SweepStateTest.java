@@ -0,0 +1,76 @@
+package ru.ivanova.diplom.logistics.service;
+
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.model.ConfigurationCost;
+import ru.ivanova.diplom.logistics.model.SweepConfiguration;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SweepStateTest {
+
+    @Test
+    void keepsBestAlternativesInOrder() {
+        SweepState state = new SweepState(10, 8, 0, 3);
+        double[] expenses = {50, 20, 40, 10, 30, 20};
+        for (int i = 0; i < expenses.length; i++) {
+            state.offer(cost(i, expenses[i], 1));
+        }
+        // При равных расходах раньше идет конфигурация с меньшим номером
+        assertEquals(List.of(3, 1, 5), indexes(state.getAlternatives()));
+        assertEquals(10, state.getIncumbentCost());
+        assertEquals(expenses.length, state.getEvaluated());
+    }
+
+    @Test
+    void lateSolutionsAreNotKept() {
+        SweepState state = new SweepState(10, 8, 0, 2);
+        state.offer(cost(0, 10, 9));
+        state.offer(cost(1, 30, 8));
+        assertEquals(List.of(1), indexes(state.getAlternatives()));
+        assertEquals(30, state.getIncumbentCost());
+        assertEquals(2, state.getEvaluated());
+        assertTrue(state.exceedsMaxTime(8.5));
+        assertFalse(state.exceedsMaxTime(8));
+    }
+
+    @Test
+    void pruningStartsWhenAllAlternativesAreFound() {
+        SweepState state = new SweepState(10, 8, 0, 2);
+        assertFalse(state.canPrune(1e9));
+        state.offer(cost(0, 10, 1));
+        // Одно решение из двух: отсекать нельзя, иначе второе место останется пустым
+        assertFalse(state.canPrune(1e9));
+
+        state.offer(cost(1, 30, 1));
+        assertTrue(state.canPrune(31));
+        assertFalse(state.canPrune(30));
+        // Оценка округляется до копеек, как и расходы
+        assertFalse(state.canPrune(30.004));
+        assertTrue(state.canPrune(30.006));
+
+        // Лучшее решение вытесняет худшее, порог отсечения снижается
+        state.offer(cost(2, 20, 1));
+        assertEquals(List.of(0, 2), indexes(state.getAlternatives()));
+        assertTrue(state.canPrune(21));
+    }
+
+    @Test
+    void singleAlternativeIsTheIncumbent() {
+        SweepState state = new SweepState(10, 8, 0);
+        state.offer(cost(0, 30, 1));
+        state.offer(cost(1, 20, 1));
+        state.offer(cost(2, 20, 1));
+        assertEquals(List.of(1), indexes(state.getAlternatives()));
+        assertTrue(state.canPrune(21));
+    }
+
+    private static ConfigurationCost cost(int index, double expenses, double time) {
+        return new ConfigurationCost(new SweepConfiguration(index, 2, 3, 0.5), expenses, time);
+    }
+
+    private static List<Integer> indexes(List<ConfigurationCost> alternatives) {
+        return alternatives.stream().map(cost -> cost.getConfiguration().getIndex()).toList();
+    }
+}
@@ -0,0 +1,89 @@
+package ru.ivanova.diplom.logistics.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.commons.math3.ml.clustering.DoublePoint;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.model.Time;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoJsonWriterTest {
+
+    private static final PointSet POINTS = new PointSet(new double[]{37.5, 37.6, 37.7}, new double[]{55.7, 55.8, 55.9});
+
+    @Test
+    void featureCollectionIsWrittenInOnePass() throws IOException {
+        JSONObject result = new JSONObject(new String(result(), StandardCharsets.UTF_8));
+
+        JSONArray features = result.getJSONObject("routes").getJSONArray("features");
+        assertEquals("FeatureCollection", result.getJSONObject("routes").getString("type"));
+        assertEquals(2, features.length());
+
+        // Замкнутая линия по точкам повторяет первую точку
+        JSONObject storage = features.getJSONObject(0);
+        assertEquals("Feature", storage.getString("type"));
+        assertEquals("LineString", storage.getJSONObject("geometry").getString("type"));
+        JSONArray coordinates = storage.getJSONObject("geometry").getJSONArray("coordinates");
+        assertEquals(3, coordinates.length());
+        assertEquals(37.5, coordinates.getJSONArray(2).getDouble(0));
+        assertEquals(55.7, coordinates.getJSONArray(2).getDouble(1));
+        assertEquals("storage", storage.getJSONObject("properties").getString("type"));
+        assertEquals("#ff0000", storage.getJSONObject("properties").getString("color"));
+
+        // Линия по индексам точек
+        JSONArray courier = features.getJSONObject(1).getJSONObject("geometry").getJSONArray("coordinates");
+        assertEquals(3, courier.length());
+        assertEquals(37.7, courier.getJSONArray(1).getDouble(0));
+        assertEquals(55.9, courier.getJSONArray(1).getDouble(1));
+
+        JSONObject time = result.getJSONObject("time");
+        assertEquals(2, time.getInt("hours"));
+        assertEquals(30, time.getInt("minutes"));
+        assertEquals(5, time.getInt("seconds"));
+    }
+
+    @Test
+    void requestDataIsAppendedWithModelType() throws IOException {
+        byte[] result = result();
+        byte[] cached = result.clone();
+        String requestData = "{\"client\":\"shop\",\"model_type\":{\"old\":true},\"price\":1.50,\"tags\":[1,2.0]}";
+        String json = new String(GeoJsonWriter.withRequestData(result, requestData, "static"), StandardCharsets.UTF_8);
+
+        // Числа request_data переносятся без изменения записи, прежний model_type заменяется
+        assertTrue(json.endsWith(
+                ",\"request_data\":{\"client\":\"shop\",\"price\":1.50,\"tags\":[1,2.0],\"model_type\":\"static\"}}"),
+                json);
+        JSONObject parsed = new JSONObject(json);
+        assertTrue(parsed.has("routes"));
+        assertEquals("static", parsed.getJSONObject("request_data").getString("model_type"));
+
+        // Результат из кэша не меняется и подходит для другого запроса
+        assertArrayEquals(cached, result);
+        String other = new String(GeoJsonWriter.withRequestData(result, "{}", "dynamic"), StandardCharsets.UTF_8);
+        assertEquals("dynamic", new JSONObject(other).getJSONObject("request_data").getString("model_type"));
+    }
+
+    // Результат модели: маршрут склада по точкам и маршрут курьера по индексам, время
+    private static byte[] result() throws IOException {
+        ByteArrayOutputStream buffer = GeoJsonWriter.newBuffer(POINTS.size(), 2);
+        try (JsonGenerator json = GeoJsonWriter.createGenerator(buffer)) {
+            json.writeStartObject();
+            GeoJsonWriter.startFeatureCollection(json, "routes");
+            GeoJsonWriter.writeLineFeature(json, List.of(new DoublePoint(new double[]{37.5, 55.7}),
+                    new DoublePoint(new double[]{37.6, 55.8})), true, "storage", "#ff0000");
+            GeoJsonWriter.writeLineFeature(json, POINTS, new int[]{0, 2, 0}, "courier", "#00ff00");
+            GeoJsonWriter.endFeatureCollection(json);
+            GeoJsonWriter.writeTime(json, "time", new Time(2, 30, 5));
+            json.writeEndObject();
+        }
+        return buffer.toByteArray();
+    }
+}
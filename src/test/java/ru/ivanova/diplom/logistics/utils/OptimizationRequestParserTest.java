@@ -0,0 +1,171 @@
+package ru.ivanova.diplom.logistics.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.Order;
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.model.TourImprovement;
+import ru.ivanova.diplom.logistics.model.VehicleType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimizationRequestParserTest {
+
+    private static final String GEO_JSON = """
+            {"type": "FeatureCollection", "features": [
+              {"type": "Feature", "geometry": {"type": "Point", "coordinates": [37.5, 55.75]}},
+              {"type": "Feature", "properties": {"name": "a"}, "geometry": {"coordinates": [37.6, 55.7, 150]}},
+              {"geometry": {"coordinates": ["37.7", "55.8"]}}
+            ]}""";
+
+    private static final String ORDERS = """
+            [{"id": 10, "volume": 0.5, "time_window_start": 1, "time_window_end": 3, "service_time": 0.1},
+             {"id": 11, "volume": "1.25", "time_window_start": null, "comment": "door 2"}]""";
+
+    private static final String PARAMETERS = """
+            {"fuel_rate_mob_storage": 0.2, "fuel_rate_courier_car": 0.1, "fuel_cost": 50,
+             "mob_storage_rate": 1000, "courier_car_rate": 500, "driver_salary": 3000,
+             "max_count_couriers": "3", "courier_salary": 2000, "courier_scooter_rate": 1,
+             "energy_consumption": 0.5, "energy_consumption_cost": 5, "max_courier_car_capacity": 12,
+             "max_delivery_capacity": 2, "max_time": 8, "order_processing_time": 0.05,
+             "courier_scooter_speed": 15, "mob_storage_speed": 40, "tour_improvement": "two_opt",
+             "alternatives": 3, "note": "ignored"%s}""";
+
+    private static final String REQUEST_DATA = "{\"client\":\"shop\",\"price\":1.50,\"tags\":[1,2.0]}";
+
+    private static final String REQUEST = request(PARAMETERS.formatted(""));
+
+    @Test
+    void requestIsParsedInOnePass() throws IOException {
+        OptimizationRequest request = OptimizationRequestParser.parse(stream(REQUEST));
+        assertNotNull(request);
+
+        assertEquals(3, request.getPoints().size());
+        assertEquals(37.6, request.getPoints().getX(1));
+        assertEquals(55.8, request.getPoints().getY(2));
+
+        List<Order> orders = request.getOrders();
+        assertEquals(2, orders.size());
+        // Заказ i относится к пункту выдачи i + 1
+        assertEquals(1, orders.get(0).getPointIndex());
+        assertEquals(2, orders.get(1).getPointIndex());
+        assertEquals(1.25, orders.get(1).getVolume());
+        assertEquals(1.0, orders.get(0).getTimeWindowStart());
+        assertEquals(3.0, orders.get(0).getTimeWindowEnd());
+        assertEquals(0.1, orders.get(0).getServiceTime());
+        assertNull(orders.get(1).getTimeWindowStart());
+
+        Parameters params = request.getParams();
+        assertEquals(3, params.getMAX_COUNT_COURIERS());
+        assertEquals(TourImprovement.two_opt, params.getTOUR_IMPROVEMENT());
+        assertEquals(3, params.getALTERNATIVES());
+        // Значения по умолчанию
+        assertEquals(200, params.getTOUR_IMPROVEMENT_TIME_LIMIT());
+        assertTrue(params.getFLEET().isEmpty());
+
+        // request_data переносится без изменения записи чисел
+        assertEquals(REQUEST_DATA, request.getRequestData());
+        assertNotNull(request.getFingerprint());
+    }
+
+    @Test
+    void fleetIsParsed() throws IOException {
+        String fleet = """
+                , "fleet": [{"name": "van", "count": 2, "capacity": 10, "speed": "25", "fixed_cost": 900},
+                            {"count": 1, "capacity": 4, "speed": 30}]""";
+        Parameters params = OptimizationRequestParser.parse(stream(request(PARAMETERS.formatted(fleet))))
+                .getParams();
+        List<VehicleType> types = params.getFLEET();
+        assertEquals(2, types.size());
+        VehicleType van = types.get(0);
+        assertEquals("van", van.getName());
+        assertEquals(2, van.getCount());
+        assertEquals(25, van.getSpeed());
+        assertEquals(900, van.getFixedCost());
+        // Необязательная стоимость километра
+        assertEquals(0, van.getCostPerKm());
+        assertEquals("vehicle_1", types.get(1).getName());
+    }
+
+    @Test
+    void missingSectionGivesNull() throws IOException {
+        String json = """
+                {"geo_json": %s, "orders": %s, "parameters": %s}""".formatted(GEO_JSON, ORDERS,
+                PARAMETERS.formatted(""));
+        assertNull(OptimizationRequestParser.parse(stream(json)));
+        assertThrows(IllegalArgumentException.class,
+                () -> OptimizationRequestParser.parseBatch(stream("[" + json + "]")));
+    }
+
+    @Test
+    void batchIsParsedInOrder() throws IOException {
+        List<OptimizationRequest> requests = OptimizationRequestParser.parseBatch(stream(
+                "[" + REQUEST + ", " + REQUEST.replace("\"id\": 10", "\"id\": 12") + "]"));
+        assertEquals(2, requests.size());
+        assertEquals(10, requests.get(0).getOrders().get(0).getId());
+        assertEquals(12, requests.get(1).getOrders().get(0).getId());
+        assertNotEquals(requests.get(0).getFingerprint(), requests.get(1).getFingerprint());
+        assertThrows(IllegalArgumentException.class,
+                () -> OptimizationRequestParser.parseBatch(stream(REQUEST)));
+    }
+
+    @Test
+    void invalidOrdersAreRejected() {
+        assertInvalid(REQUEST.replace("\"volume\": 0.5, ", ""), "no id or volume");
+        assertInvalid(REQUEST.replace("\"time_window_end\": 3", "\"time_window_end\": 0.5"),
+                "invalid time window");
+        assertInvalid(REQUEST.replace("\"service_time\": 0.1", "\"service_time\": -1"),
+                "invalid time window or service time");
+        assertInvalid(REQUEST.replace("\"volume\": 0.5", "\"volume\": \"half\""), null);
+        // Заказов больше, чем пунктов выдачи
+        String tooMany = ORDERS.replace("]", ", {\"id\": 12, \"volume\": 1}, {\"id\": 13, \"volume\": 1}]");
+        assertInvalid("""
+                {"geo_json": %s, "orders": %s, "parameters": %s, "request_data": %s}""".formatted(GEO_JSON,
+                tooMany, PARAMETERS.formatted(""), REQUEST_DATA), "do not match pickup points");
+    }
+
+    @Test
+    void invalidParametersAreRejected() {
+        assertInvalid(request(PARAMETERS.formatted("").replace("\"max_time\": 8,", "")), "max_time is missing");
+        assertInvalid(request(PARAMETERS.formatted("").replace("\"alternatives\": 3", "\"alternatives\": 0")),
+                "alternatives must be positive");
+        assertInvalid(request(PARAMETERS.formatted(", \"fleet\": [{\"count\": 1, \"capacity\": 0, \"speed\": 30}]")),
+                "invalid parameters");
+        assertInvalid(request(PARAMETERS.formatted(", \"fleet\": [{\"count\": 1, \"speed\": 30}]")),
+                "capacity is missing");
+    }
+
+    @Test
+    void invalidGeometryIsRejected() {
+        String noCoordinates = GEO_JSON.replace("{\"geometry\": {\"coordinates\": [\"37.7\", \"55.8\"]}}",
+                "{\"geometry\": {\"type\": \"Point\"}}");
+        assertInvalid(REQUEST.replace(GEO_JSON, noCoordinates), "Feature 2");
+        assertInvalid(REQUEST.replace(GEO_JSON, "{\"type\": \"FeatureCollection\"}"),
+                "no features");
+        assertInvalid(REQUEST.replace(GEO_JSON, "[]"), "Expected START_OBJECT");
+    }
+
+    private static void assertInvalid(String json, String message) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> OptimizationRequestParser.parse(stream(json)));
+        if (message != null) {
+            assertTrue(e.getMessage().contains(message), e.getMessage());
+        }
+    }
+
+    // Разделы в произвольном порядке, неизвестные ключи пропускаются
+    private static String request(String parameters) {
+        return """
+                {"request_data": %s, "version": {"major": 2}, "orders": %s, "geo_json": %s, "parameters": %s}"""
+                .formatted(REQUEST_DATA, ORDERS, GEO_JSON, parameters);
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,100 @@
+package ru.ivanova.diplom.logistics.utils;
+
+import org.junit.jupiter.api.Test;
+import ru.ivanova.diplom.logistics.geometry.PointSet;
+import ru.ivanova.diplom.logistics.model.OptimizationRequest;
+import ru.ivanova.diplom.logistics.model.Order;
+import ru.ivanova.diplom.logistics.model.Parameters;
+import ru.ivanova.diplom.logistics.model.TourImprovement;
+import ru.ivanova.diplom.logistics.model.VehicleType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestFingerprintTest {
+
+    private static final PointSet POINTS = new PointSet(new double[]{0, 1, 2}, new double[]{0, 1, 3});
+
+    @Test
+    void sameInputsGiveSameFingerprint() {
+        String fingerprint = RequestFingerprint.of(POINTS, orders(null), params(List.of()));
+        assertEquals(fingerprint, RequestFingerprint.of(
+                new PointSet(new double[]{0, 1, 2}, new double[]{0, 1, 3}), orders(null), params(List.of())));
+        assertEquals(64, fingerprint.length());
+    }
+
+    @Test
+    void formattingAndRequestDataDoNotMatter() throws IOException {
+        String first = """
+                {"geo_json": {"features": [{"geometry": {"coordinates": [0, 0]}},
+                                           {"geometry": {"coordinates": [1.0, 1]}}]},
+                 "orders": [{"id": 1, "volume": 0.5}],
+                 "parameters": %s,
+                 "request_data": {"client": "a"}}""".formatted(parameters("\"max_time\": 8, \"alternatives\": 1"));
+        String second = """
+                {"request_data": {"client": "b", "model_type": "static"},
+                 "parameters": %s,
+                 "orders": [{"volume": "0.50", "id": 1}],
+                 "geo_json": {"type": "FeatureCollection", "features": [{"geometry": {"coordinates": ["0", "0"]}},
+                                                                        {"geometry": {"coordinates": [1, 1.0]}}]}}"""
+                .formatted(parameters("\"alternatives\": \"1\", \"max_time\": 8.0"));
+        assertEquals(parse(first).getFingerprint(), parse(second).getFingerprint());
+    }
+
+    @Test
+    void anyInputChangesFingerprint() {
+        String fingerprint = RequestFingerprint.of(POINTS, orders(null), params(List.of()));
+        assertNotEquals(fingerprint, RequestFingerprint.of(
+                new PointSet(new double[]{0, 1, 2}, new double[]{0, 1, 3.001}), orders(null), params(List.of())));
+
+        List<Order> heavier = orders(null);
+        heavier.get(1).setVolume(0.6);
+        assertNotEquals(fingerprint, RequestFingerprint.of(POINTS, heavier, params(List.of())));
+
+        // Незаданное окно отличается от окна, открытого с нуля
+        assertNotEquals(fingerprint, RequestFingerprint.of(POINTS, orders(0.0), params(List.of())));
+
+        Parameters longer = params(List.of());
+        longer.setMAX_TIME(9);
+        assertNotEquals(fingerprint, RequestFingerprint.of(POINTS, orders(null), longer));
+
+        String withFleet = RequestFingerprint.of(POINTS, orders(null),
+                params(List.of(new VehicleType("van", 2, 10, 25, 900, 3))));
+        assertNotEquals(fingerprint, withFleet);
+        assertNotEquals(withFleet, RequestFingerprint.of(POINTS, orders(null),
+                params(List.of(new VehicleType("van", 3, 10, 25, 900, 3)))));
+    }
+
+    private static List<Order> orders(Double windowStart) {
+        List<Order> orders = List.of(new Order(1, 0.5), new Order(2, 0.4));
+        for (int i = 0; i < orders.size(); i++) {
+            orders.get(i).setPointIndex(i + 1);
+            orders.get(i).setTimeWindowStart(windowStart);
+        }
+        return orders;
+    }
+
+    private static Parameters params(List<VehicleType> fleet) {
+        return new Parameters(0.2, 0.1, 50, 1000, 500, 3000, 3, 2000, 1, 0.5, 5, 12, 2, 8,
+                0.05, 15, 40, TourImprovement.two_opt_or_opt, 200, 1, fleet);
+    }
+
+    // Обязательные параметры кроме max_time и alternatives, которые задаются в extra
+    private static String parameters(String extra) {
+        return """
+                {"fuel_rate_mob_storage": 0.2, "fuel_rate_courier_car": 0.1, "fuel_cost": 50,
+                 "mob_storage_rate": 1000, "courier_car_rate": 500, "driver_salary": 3000,
+                 "max_count_couriers": 3, "courier_salary": 2000, "courier_scooter_rate": 1,
+                 "energy_consumption": 0.5, "energy_consumption_cost": 5, "max_courier_car_capacity": 12,
+                 "max_delivery_capacity": 2, "order_processing_time": 0.05, "courier_scooter_speed": 15,
+                 "mob_storage_speed": 40, %s}""".formatted(extra);
+    }
+
+    private static OptimizationRequest parse(String json) throws IOException {
+        return OptimizationRequestParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}